@@ -0,0 +1,34 @@
+-- Migração de bancos criados com o schema anterior (BILLING_DATA sem chave e sem a tabela BILLING_FILE) para o
+-- schema-billing.sql atual. A ingestão passou a gravar com MERGE pela chave (DATA_YEAR, DATA_MONTH, ACCOUNT_ID,
+-- PHONE_NUMBER), por isso as linhas duplicadas por execuções anteriores precisam ser removidas antes de criar a
+-- constraint BILLING_DATA_KEY.
+-- Executar uma única vez, com o job parado: psql -U postgres -f sql/migration-billing-data-key.sql
+begin;
+
+lock table BILLING_DATA in exclusive mode;
+
+-- Mantém, para cada chave, a linha gravada por último (a de maior ctid; a tabela só recebia inserts). Chaves com
+-- valores nulos não violam a constraint e são mantidas como estão.
+delete from BILLING_DATA D
+using BILLING_DATA K
+where D.DATA_YEAR = K.DATA_YEAR
+  and D.DATA_MONTH = K.DATA_MONTH
+  and D.ACCOUNT_ID = K.ACCOUNT_ID
+  and D.PHONE_NUMBER = K.PHONE_NUMBER
+  and D.ctid < K.ctid;
+
+alter table BILLING_DATA
+    add constraint BILLING_DATA_KEY unique (DATA_YEAR, DATA_MONTH, ACCOUNT_ID, PHONE_NUMBER);
+
+create table if not exists BILLING_FILE
+(
+    FILE_NAME  VARCHAR(255),
+    DATA_YEAR  INTEGER,
+    DATA_MONTH INTEGER,
+    FILE_SIZE  BIGINT,
+    FILE_HASH  VARCHAR(64),
+    LOADED_AT  TIMESTAMP,
+    primary key (FILE_NAME, DATA_YEAR, DATA_MONTH)
+);
+
+commit;
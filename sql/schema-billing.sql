@@ -6,5 +6,17 @@ create table BILLING_DATA
     PHONE_NUMBER  VARCHAR(12),
     DATA_USAGE    FLOAT,
     CALL_DURATION INTEGER,
-    SMS_COUNT     INTEGER
+    SMS_COUNT     INTEGER,
+    constraint BILLING_DATA_KEY unique (DATA_YEAR, DATA_MONTH, ACCOUNT_ID, PHONE_NUMBER)
+);
+
+create table BILLING_FILE
+(
+    FILE_NAME  VARCHAR(255),
+    DATA_YEAR  INTEGER,
+    DATA_MONTH INTEGER,
+    FILE_SIZE  BIGINT,
+    FILE_HASH  VARCHAR(64),
+    LOADED_AT  TIMESTAMP,
+    primary key (FILE_NAME, DATA_YEAR, DATA_MONTH)
 );
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.gustavo.billingjob.config;
+
+import org.springframework.test.util.ReflectionTestUtils;
+
+// Cria um PricingService com os preços padrão de application.properties e o snapshot já carregado,
+// como ocorre no início de cada step do job.
+final class BenchmarkPricing {
+
+	private BenchmarkPricing() {
+	}
+
+	static PricingService pricingService() {
+		PricingService pricingService = new PricingService();
+		ReflectionTestUtils.setField(pricingService, "dataPricing", 0.01f);
+		ReflectionTestUtils.setField(pricingService, "callPricing", 0.5f);
+		ReflectionTestUtils.setField(pricingService, "smsPricing", 0.1f);
+		pricingService.refresh();
+		return pricingService;
+	}
+
+}
@@ -0,0 +1,52 @@
+package com.gustavo.billingjob.config;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+// Gera dados sintéticos no mesmo formato e com as mesmas faixas de valores dos arquivos input/billing-*.csv:
+// dataUsage entre 0 e 100 com duas casas decimais, callDuration entre 1 e 999 e smsCount entre 0 e 999.
+// Com os preços padrão, cerca de 78% das linhas atingem o limite de gastos padrão (150), como nos arquivos reais.
+final class BillingDataGenerator {
+
+	private static final long SEED = 42;
+
+	private BillingDataGenerator() {
+	}
+
+	static BillingData[] items(int count) {
+		Random random = new Random(SEED);
+		BillingData[] items = new BillingData[count];
+		for (int i = 0; i < count; i++) {
+			items[i] = new BillingData(2023, 1, 100 + i, phoneNumber(i), random.nextInt(10000) / 100f,
+					1 + random.nextInt(999), random.nextInt(1000));
+		}
+		return items;
+	}
+
+	// Grava "rows" linhas no formato do arquivo de entrada (ex.: 2023,01,100,404-555-1000,24.40,115,323).
+	static Path csvFile(int rows) throws IOException {
+		Path file = Files.createTempFile("billing-benchmark", ".csv");
+		Random random = new Random(SEED);
+		StringBuilder line = new StringBuilder(48);
+		try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+			for (int i = 0; i < rows; i++) {
+				int dataUsage = random.nextInt(10000);
+				line.setLength(0);
+				line.append("2023,01,").append(100 + i).append(',').append(phoneNumber(i)).append(',')
+					.append(dataUsage / 100).append('.').append(dataUsage % 100 < 10 ? "0" : "").append(dataUsage % 100).append(',')
+					.append(1 + random.nextInt(999)).append(',')
+					.append(random.nextInt(1000)).append('\n');
+				writer.append(line);
+			}
+		}
+		return file;
+	}
+
+	private static String phoneNumber(int index) {
+		return String.format("404-555-%04d", index % 10000);
+	}
+
+}
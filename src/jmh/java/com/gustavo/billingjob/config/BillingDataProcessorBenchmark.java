@@ -0,0 +1,124 @@
+package com.gustavo.billingjob.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.step.item.SimpleChunkProcessor;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+// Mede o BillingDataProcessor.process sobre "rows" itens para diferentes limites de gastos. Com os dados sintéticos,
+// cerca de 78% dos itens passam pelo limite padrão 150, 50% pelo limite 300 e 16% pelo limite 450.
+// processChunk mede a precificação por chunk (report.mode=batch) sobre os mesmos itens, em chunks de CHUNK_SIZE.
+// simpleChunkProcessor e batchPricingChunkProcessor medem o processamento dos chunks como no step (report.mode=default
+// e batch), incluindo a montagem do chunk de saída, com um writer que descarta os itens.
+// Resultados de referência (ms/op, limites 150 / 450, 1 CPU):
+//                               1M linhas        10M linhas
+// simpleChunkProcessor          738,6 / 628,7    6154,7 / 6846,4
+// batchPricingChunkProcessor     23,6 /  21,1     252,9 /  226,3
+// process (item a item)          43,6 /  44,3     447,5 /  436,4
+// processChunk                   19,4 /  17,6     202,5 /  188,2
+// A diferença entre simpleChunkProcessor e batchPricingChunkProcessor é o custo do framework por item; o cálculo do
+// preço é o mesmo nos dois e não é vetorizado. process é mais lento que processChunk porque busca o snapshot do step
+// a cada item, e processChunk uma vez por chunk.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BillingDataProcessorBenchmark {
+
+	// Os itens são percorridos de forma circular a partir de um conjunto fixo, para que 10M de linhas não
+	// precisem ficar em memória ao mesmo tempo.
+	private static final int POOL_SIZE = 1 << 20;
+
+	private static final int CHUNK_SIZE = 1000;
+
+	@Param({ "1000000", "10000000" })
+	public int rows;
+
+	@Param({ "150", "300", "450" })
+	public float spendingThreshold;
+
+	private BillingData[] items;
+
+	private List<List<BillingData>> chunks;
+
+	private BillingDataProcessor processor;
+
+	private SimpleChunkProcessor<BillingData, ReportingData> simpleChunkProcessor;
+
+	private BatchPricingChunkProcessor batchPricingChunkProcessor;
+
+	private StepContribution contribution;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.items = BillingDataGenerator.items(POOL_SIZE);
+		this.chunks = new ArrayList<>();
+		for (int i = 0; i + CHUNK_SIZE <= POOL_SIZE; i += CHUNK_SIZE) {
+			this.chunks.add(Arrays.asList(this.items).subList(i, i + CHUNK_SIZE));
+		}
+		PricingService pricingService = BenchmarkPricing.pricingService();
+		this.processor = new BillingDataProcessor(pricingService);
+		ReflectionTestUtils.setField(this.processor, "spendingThreshold", this.spendingThreshold);
+		ItemWriter<ReportingData> writer = chunk -> {
+		};
+		this.simpleChunkProcessor = new SimpleChunkProcessor<>(this.processor, writer);
+		this.batchPricingChunkProcessor = new BatchPricingChunkProcessor(this.processor, writer);
+		this.contribution = new JobExecution(new JobInstance(1L, "BillingJob"), 1L, new JobParameters())
+			.createStepExecution("reportGeneration")
+			.createStepContribution();
+	}
+
+	@Benchmark
+	public void process(Blackhole blackhole) {
+		for (int i = 0; i < this.rows; i++) {
+			blackhole.consume(this.processor.process(this.items[i & (POOL_SIZE - 1)]));
+		}
+	}
+
+	@Benchmark
+	public void processChunk(Blackhole blackhole) {
+		for (int processed = 0, i = 0; processed < this.rows; processed += CHUNK_SIZE, i++) {
+			blackhole.consume(this.processor.process(this.chunks.get(i % this.chunks.size())));
+		}
+	}
+
+	@Benchmark
+	public void simpleChunkProcessor() throws Exception {
+		for (int processed = 0, i = 0; processed < this.rows; processed += CHUNK_SIZE, i++) {
+			this.simpleChunkProcessor.process(this.contribution, new Chunk<>(this.chunks.get(i % this.chunks.size())));
+		}
+	}
+
+	@Benchmark
+	public void batchPricingChunkProcessor() throws Exception {
+		for (int processed = 0, i = 0; processed < this.rows; processed += CHUNK_SIZE, i++) {
+			this.batchPricingChunkProcessor.process(this.contribution, new Chunk<>(this.chunks.get(i % this.chunks.size())));
+		}
+	}
+
+}
@@ -0,0 +1,82 @@
+package com.gustavo.billingjob.config;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
+import org.springframework.core.io.FileSystemResource;
+
+// Compara o tempo de leitura completa de um arquivo de entrada pelo FlatFileItemReader (billingDataFileReader padrão)
+// e pelo MappedBillingDataItemReader (ingestion.reader=mapped).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BillingDataReaderBenchmark {
+
+	@Param({ "1000000", "10000000" })
+	public int rows;
+
+	private Path inputFile;
+
+	@Setup(Level.Trial)
+	public void generateInput() throws IOException {
+		this.inputFile = BillingDataGenerator.csvFile(this.rows);
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteInput() throws IOException {
+		Files.deleteIfExists(this.inputFile);
+	}
+
+	@Benchmark
+	public void flatFileItemReader(Blackhole blackhole) throws Exception {
+		readAll(new FlatFileItemReaderBuilder<BillingData>()
+				.name("billingDataFileReader")
+				.resource(new FileSystemResource(this.inputFile))
+				.delimited()
+				.delimiter(",")
+				.names("dataYear", "dataMonth", "accountId", "phoneNumber", "dataUsage", "callDuration", "smsCount")
+				.targetType(BillingData.class)
+				.build(), blackhole);
+	}
+
+	@Benchmark
+	public void mappedBillingDataItemReader(Blackhole blackhole) throws Exception {
+		readAll(new MappedBillingDataItemReader(this.inputFile.toString()), blackhole);
+	}
+
+	private void readAll(ItemStreamReader<BillingData> reader, Blackhole blackhole) throws Exception {
+		reader.open(new ExecutionContext());
+		try {
+			BillingData item;
+			while ((item = reader.read()) != null) {
+				blackhole.consume(item);
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+}
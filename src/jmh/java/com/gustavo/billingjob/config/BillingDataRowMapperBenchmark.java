@@ -0,0 +1,105 @@
+package com.gustavo.billingjob.config;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.tools.SimpleResultSet;
+import org.h2.tools.SimpleRowSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.springframework.jdbc.core.DataClassRowMapper;
+import org.springframework.jdbc.core.RowMapper;
+
+// Mede o mapeamento das linhas de BILLING_DATA pelo DataClassRowMapper usado no billingDataTableReader, comparado
+// a um mapeamento por posição. As linhas vêm de um ResultSet em memória (SimpleResultSet do H2), sem banco de dados.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BillingDataRowMapperBenchmark {
+
+	private static final int POOL_SIZE = 1 << 20;
+
+	@Param({ "1000000", "10000000" })
+	public int rows;
+
+	private Object[][] pool;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		BillingData[] items = BillingDataGenerator.items(POOL_SIZE);
+		this.pool = new Object[POOL_SIZE][];
+		for (int i = 0; i < POOL_SIZE; i++) {
+			BillingData item = items[i];
+			// DATA_USAGE é FLOAT (double precision) na tabela
+			this.pool[i] = new Object[] { item.dataYear(), item.dataMonth(), item.accountId(), item.phoneNumber(),
+					(double) item.dataUsage(), item.callDuration(), item.smsCount() };
+		}
+	}
+
+	@Benchmark
+	public void dataClassRowMapper(Blackhole blackhole) throws SQLException {
+		mapAll(new DataClassRowMapper<>(BillingData.class), blackhole);
+	}
+
+	@Benchmark
+	public void positionalRowMapper(Blackhole blackhole) throws SQLException {
+		mapAll((rs, rowNum) -> new BillingData(rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getString(4),
+				rs.getFloat(5), rs.getInt(6), rs.getInt(7)), blackhole);
+	}
+
+	// Percorre o ResultSet como o JdbcCursorItemReader: next() seguido de mapRow para cada linha.
+	private void mapAll(RowMapper<BillingData> rowMapper, Blackhole blackhole) throws SQLException {
+		try (ResultSet rs = resultSet()) {
+			int rowNum = 0;
+			while (rs.next()) {
+				blackhole.consume(rowMapper.mapRow(rs, rowNum++));
+			}
+		}
+	}
+
+	private ResultSet resultSet() {
+		SimpleResultSet rs = new SimpleResultSet(new SimpleRowSource() {
+			private int row;
+
+			@Override
+			public Object[] readRow() {
+				return this.row < BillingDataRowMapperBenchmark.this.rows ? pool[this.row++ & (POOL_SIZE - 1)] : null;
+			}
+
+			@Override
+			public void close() {
+			}
+
+			@Override
+			public void reset() {
+				this.row = 0;
+			}
+		});
+		rs.addColumn("DATA_YEAR", Types.INTEGER, 10, 0);
+		rs.addColumn("DATA_MONTH", Types.INTEGER, 10, 0);
+		rs.addColumn("ACCOUNT_ID", Types.INTEGER, 10, 0);
+		rs.addColumn("PHONE_NUMBER", Types.VARCHAR, 12, 0);
+		rs.addColumn("DATA_USAGE", Types.DOUBLE, 17, 0);
+		rs.addColumn("CALL_DURATION", Types.INTEGER, 10, 0);
+		rs.addColumn("SMS_COUNT", Types.INTEGER, 10, 0);
+		return rs;
+	}
+
+}
@@ -0,0 +1,111 @@
+package com.gustavo.billingjob.config;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.file.FlatFileItemWriter;
+import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
+import org.springframework.core.io.FileSystemResource;
+
+// Mede a formatação e gravação do relatório pelo FlatFileItemWriter (billingDataFileWriter) e a codificação
+// CSV dos chunks enviados ao COPY pelo BillingDataCopyItemWriter, ambos em chunks de 100 itens.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ReportWriterBenchmark {
+
+	private static final int CHUNK_SIZE = 100;
+
+	private static final int POOL_SIZE = 1 << 20;
+
+	@Param({ "1000000", "10000000" })
+	public int rows;
+
+	private List<Chunk<ReportingData>> reportChunks;
+
+	private List<Chunk<BillingData>> billingChunks;
+
+	private Path outputFile;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		BillingData[] items = BillingDataGenerator.items(POOL_SIZE);
+		BillingDataProcessor processor = new BillingDataProcessor(BenchmarkPricing.pricingService());
+		this.reportChunks = new ArrayList<>();
+		this.billingChunks = new ArrayList<>();
+		for (int i = 0; i < POOL_SIZE; i += CHUNK_SIZE) {
+			Chunk<ReportingData> reportChunk = new Chunk<>();
+			Chunk<BillingData> billingChunk = new Chunk<>();
+			for (int j = i; j < Math.min(i + CHUNK_SIZE, POOL_SIZE); j++) {
+				// O limite padrão é 0 fora do Spring, então todos os itens são incluídos no relatório
+				reportChunk.add(processor.process(items[j]));
+				billingChunk.add(items[j]);
+			}
+			this.reportChunks.add(reportChunk);
+			this.billingChunks.add(billingChunk);
+		}
+		this.outputFile = Files.createTempFile("billing-report-benchmark", ".csv");
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteOutput() throws IOException {
+		Files.deleteIfExists(this.outputFile);
+	}
+
+	@Benchmark
+	public void flatFileItemWriter() throws Exception {
+		FlatFileItemWriter<ReportingData> writer = new FlatFileItemWriterBuilder<ReportingData>()
+				.resource(new FileSystemResource(this.outputFile))
+				.name("billingDataFileWriter")
+				.delimited()
+				.delimiter(",")
+				.names("billingData.dataYear", "billingData.dataMonth", "billingData.accountId", "billingData.phoneNumber", "billingData.dataUsage", "billingData.callDuration", "billingData.smsCount", "billingTotal")
+				.build();
+		writer.afterPropertiesSet();
+		writer.open(new ExecutionContext());
+		try {
+			for (int written = 0, i = 0; written < this.rows; written += CHUNK_SIZE, i++) {
+				writer.write(this.reportChunks.get(i % this.reportChunks.size()));
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	@Benchmark
+	public void copyCsvEncoding(Blackhole blackhole) {
+		StringBuilder csv = new StringBuilder(CHUNK_SIZE * 48);
+		for (int written = 0, i = 0; written < this.rows; written += CHUNK_SIZE, i++) {
+			csv.setLength(0);
+			for (BillingData item : this.billingChunks.get(i % this.billingChunks.size())) {
+				BillingDataCopyItemWriter.appendCsv(csv, item);
+			}
+			blackhole.consume(csv.length());
+		}
+	}
+
+}
@@ -0,0 +1,79 @@
+package com.gustavo.billingjob.config;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// Divide os registros de um mês em intervalos de ACCOUNT_ID com quantidades de linhas semelhantes.
+// Os limites são calculados com NTILE sobre os ACCOUNT_ID do mês, e cada intervalo [minAccountId, maxAccountId]
+// é gravado em um arquivo parcial próprio (part.file), que depois é concatenado pelo ReportMergeTasklet.
+// São sempre geradas exatamente "partitions" partições (as excedentes ficam vazias), assim o passo de merge
+// sabe quais arquivos parciais esperar, inclusive em um restart.
+public class AccountRangePartitioner implements Partitioner {
+
+	public static final String MIN_ACCOUNT_ID = "minAccountId";
+	public static final String MAX_ACCOUNT_ID = "maxAccountId";
+	public static final String PART_FILE = "part.file";
+
+	private static final String BUCKETS_SQL = """
+			select min(ACCOUNT_ID) from (
+			    select ACCOUNT_ID, ntile(?) over (order by ACCOUNT_ID) as BUCKET
+			    from BILLING_DATA where DATA_YEAR = ? and DATA_MONTH = ?
+			) B group by BUCKET order by BUCKET""";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final int year;
+
+	private final int month;
+
+	private final String outputFile;
+
+	private final int partitions;
+
+	public AccountRangePartitioner(DataSource dataSource, int year, int month, String outputFile, int partitions) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.year = year;
+		this.month = month;
+		this.outputFile = outputFile;
+		this.partitions = Math.max(1, partitions);
+	}
+
+	// Nome do arquivo parcial gravado pela partição de índice "index". Para um output.file compactado, o arquivo
+	// parcial mantém a extensão de compressão (ex.: report.csv.part0.gz), e a concatenação dos membros compactados
+	// das partições forma um arquivo válido.
+	public static String partFile(String outputFile, int index) {
+		return FileCompression.of(outputFile).withSuffix(outputFile, ".part" + index);
+	}
+
+	@Override
+	public Map<String, ExecutionContext> partition(int gridSize) {
+		// Menor ACCOUNT_ID de cada bucket; contas repetidas na fronteira de dois buckets geram o mesmo limite,
+		// por isso os valores repetidos são descartados.
+		List<Integer> lowerBounds = this.jdbcTemplate.queryForList(BUCKETS_SQL, Integer.class,
+				this.partitions, this.year, this.month).stream().distinct().toList();
+
+		Map<String, ExecutionContext> result = new HashMap<>();
+		for (int i = 0; i < this.partitions; i++) {
+			ExecutionContext context = new ExecutionContext();
+			if (i < lowerBounds.size()) {
+				context.putInt(MIN_ACCOUNT_ID, lowerBounds.get(i));
+				context.putInt(MAX_ACCOUNT_ID, i + 1 < lowerBounds.size() ? lowerBounds.get(i + 1) - 1 : Integer.MAX_VALUE);
+			} else {
+				// Partição vazia: nenhum ACCOUNT_ID satisfaz min > max.
+				context.putInt(MIN_ACCOUNT_ID, 0);
+				context.putInt(MAX_ACCOUNT_ID, -1);
+			}
+			context.putString(PART_FILE, partFile(this.outputFile, i));
+			result.put("partition" + i, context);
+		}
+		return result;
+	}
+
+}
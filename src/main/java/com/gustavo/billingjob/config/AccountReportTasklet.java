@@ -0,0 +1,274 @@
+package com.gustavo.billingjob.config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.repeat.RepeatStatus;
+
+// Gera o relatório por conta (report.accounts=true) em uma única leitura dos registros do mês: para cada conta são
+// somados o uso de dados, os minutos de chamadas, os SMS, o billingTotal (calculado como no BillingDataProcessor,
+// mas sem o limite de gastos) e a quantidade de linhas.
+// Os totais ficam em um AccountTotals, alocado no início do step com a capacidade que cabe no orçamento de memória;
+// quando ele fica cheio, as contas são gravadas ordenadas por ACCOUNT_ID em um arquivo temporário (run) e o mapa é
+// esvaziado. Ao final, as runs são
+// intercaladas (merge) e as contas repetidas em mais de uma run são somadas.
+// O arquivo gerado fica ao lado de output.file (ver accountFile), com uma linha por conta em ordem de ACCOUNT_ID:
+// ano, mês, conta, linhas, uso de dados, minutos, SMS e billingTotal (valores decimais com duas casas).
+// Os totais não são salvos no ExecutionContext: em um restart o mês é lido novamente desde o início.
+public class AccountReportTasklet implements Tasklet, StepExecutionListener {
+
+	// Itens lidos por iteração do tasklet (cada iteração é uma transação).
+	private static final int ITEMS_PER_ITERATION = 10_000;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final ItemStreamReader<BillingData> reader;
+
+	private final PricingService pricingService;
+
+	private final int year;
+
+	private final int month;
+
+	private final Path accountFile;
+
+	private final int maxAccounts;
+
+	private final List<Path> runs = new ArrayList<>();
+
+	private PricingSnapshot pricing;
+
+	private AccountTotals totals;
+
+	public AccountReportTasklet(ItemStreamReader<BillingData> reader, PricingService pricingService, int year, int month,
+			String outputFile, long memoryBudget) {
+		this.reader = reader;
+		this.pricingService = pricingService;
+		this.year = year;
+		this.month = month;
+		this.accountFile = Paths.get(accountFile(outputFile));
+		this.maxAccounts = AccountTotals.capacityFor(memoryBudget);
+	}
+
+	// Nome do relatório por conta: billing-report-2023-03.csv -> billing-report-2023-03-accounts.csv. Um output.file
+	// compactado gera o relatório por conta no mesmo formato.
+	public static String accountFile(String outputFile) {
+		FileCompression compression = FileCompression.of(outputFile);
+		String name = compression.strip(outputFile);
+		if (name.toLowerCase().endsWith(".csv")) {
+			name = name.substring(0, name.length() - ".csv".length());
+		}
+		return name + "-accounts.csv" + compression.extension();
+	}
+
+	@Override
+	public void beforeStep(StepExecution stepExecution) {
+		this.pricing = this.pricingService.refresh();
+		this.totals = new AccountTotals(this.maxAccounts);
+		this.runs.clear();
+		this.reader.open(new ExecutionContext());
+	}
+
+	@Override
+	public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+		for (int i = 0; i < ITEMS_PER_ITERATION; i++) {
+			BillingData item = this.reader.read();
+			if (item == null) {
+				writeReport();
+				return RepeatStatus.FINISHED;
+			}
+			contribution.incrementReadCount();
+			double billingTotal = item.dataUsage() * this.pricing.dataPricing() + item.callDuration() * this.pricing.callPricing()
+					+ item.smsCount() * this.pricing.smsPricing();
+			this.totals.add(item.accountId(), item.dataUsage(), item.callDuration(), item.smsCount(), billingTotal, 1);
+			if (this.totals.isFull()) {
+				spill();
+			}
+		}
+		return RepeatStatus.CONTINUABLE;
+	}
+
+	@Override
+	public ExitStatus afterStep(StepExecution stepExecution) {
+		this.reader.close();
+		deleteRuns();
+		stepExecution.getExecutionContext().putInt("accounts.runs", this.runs.size());
+		this.runs.clear();
+		return null;
+	}
+
+	// Grava as contas do mapa, em ordem de ACCOUNT_ID, em uma nova run e esvazia o mapa.
+	private void spill() throws IOException {
+		Path run = Files.createTempFile(this.accountFile.toAbsolutePath().getParent(), "billing-accounts-", ".run");
+		this.runs.add(run);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), BUFFER_SIZE))) {
+			for (int index : this.totals.sortedIndexes()) {
+				out.writeInt(this.totals.accountId(index));
+				out.writeInt(this.totals.lineCount(index));
+				out.writeDouble(this.totals.dataUsage(index));
+				out.writeLong(this.totals.callDuration(index));
+				out.writeLong(this.totals.smsCount(index));
+				out.writeDouble(this.totals.billingTotal(index));
+			}
+		}
+		this.totals.clear();
+	}
+
+	private void writeReport() throws IOException {
+		Path parent = this.accountFile.toAbsolutePath().getParent();
+		Files.createDirectories(parent);
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+				FileCompression.of(this.accountFile.toString()).compress(Files.newOutputStream(this.accountFile)),
+				StandardCharsets.UTF_8), BUFFER_SIZE)) {
+			if (this.runs.isEmpty()) {
+				for (int index : this.totals.sortedIndexes()) {
+					writeLine(writer, this.totals.accountId(index), this.totals.lineCount(index), this.totals.dataUsage(index),
+							this.totals.callDuration(index), this.totals.smsCount(index), this.totals.billingTotal(index));
+				}
+			} else {
+				if (this.totals.size() > 0) {
+					spill();
+				}
+				merge(writer);
+			}
+		}
+	}
+
+	// Intercala as runs, já ordenadas por ACCOUNT_ID, somando os totais de uma mesma conta.
+	private void merge(Writer writer) throws IOException {
+		PriorityQueue<RunCursor> cursors = new PriorityQueue<>(Comparator.comparingInt((RunCursor cursor) -> cursor.accountId));
+		try {
+			for (Path run : this.runs) {
+				RunCursor cursor = new RunCursor(run);
+				if (cursor.next()) {
+					cursors.add(cursor);
+				} else {
+					cursor.close();
+				}
+			}
+			while (!cursors.isEmpty()) {
+				RunCursor cursor = cursors.poll();
+				int accountId = cursor.accountId;
+				int lineCount = 0;
+				double dataUsage = 0;
+				long callDuration = 0;
+				long smsCount = 0;
+				double billingTotal = 0;
+				while (true) {
+					lineCount += cursor.lineCount;
+					dataUsage += cursor.dataUsage;
+					callDuration += cursor.callDuration;
+					smsCount += cursor.smsCount;
+					billingTotal += cursor.billingTotal;
+					if (cursor.next()) {
+						cursors.add(cursor);
+					} else {
+						cursor.close();
+					}
+					if (cursors.isEmpty() || cursors.peek().accountId != accountId) {
+						break;
+					}
+					cursor = cursors.poll();
+				}
+				writeLine(writer, accountId, lineCount, dataUsage, callDuration, smsCount, billingTotal);
+			}
+		} finally {
+			for (RunCursor cursor : cursors) {
+				cursor.close();
+			}
+		}
+	}
+
+	private void writeLine(Writer writer, int accountId, int lineCount, double dataUsage, long callDuration, long smsCount,
+			double billingTotal) throws IOException {
+		writer.append(Integer.toString(this.year)).append(',')
+			.append(Integer.toString(this.month)).append(',')
+			.append(Integer.toString(accountId)).append(',')
+			.append(Integer.toString(lineCount)).append(',')
+			.append(decimal(dataUsage)).append(',')
+			.append(Long.toString(callDuration)).append(',')
+			.append(Long.toString(smsCount)).append(',')
+			.append(decimal(billingTotal)).append('\n');
+	}
+
+	private static String decimal(double value) {
+		return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP).toPlainString();
+	}
+
+	private void deleteRuns() {
+		for (Path run : this.runs) {
+			try {
+				Files.deleteIfExists(run);
+			} catch (IOException e) {
+				// arquivo temporário; a falha na remoção não afeta o relatório
+			}
+		}
+	}
+
+	// Posição de leitura em uma run: os campos contêm a conta corrente.
+	private static class RunCursor {
+
+		private final DataInputStream in;
+
+		private int accountId;
+
+		private int lineCount;
+
+		private double dataUsage;
+
+		private long callDuration;
+
+		private long smsCount;
+
+		private double billingTotal;
+
+		RunCursor(Path run) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), BUFFER_SIZE));
+		}
+
+		boolean next() throws IOException {
+			try {
+				this.accountId = this.in.readInt();
+			} catch (EOFException e) {
+				return false;
+			}
+			this.lineCount = this.in.readInt();
+			this.dataUsage = this.in.readDouble();
+			this.callDuration = this.in.readLong();
+			this.smsCount = this.in.readLong();
+			this.billingTotal = this.in.readDouble();
+			return true;
+		}
+
+		void close() throws IOException {
+			this.in.close();
+		}
+
+	}
+
+}
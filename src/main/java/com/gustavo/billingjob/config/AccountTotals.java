@@ -0,0 +1,161 @@
+package com.gustavo.billingjob.config;
+
+import java.util.Arrays;
+
+// Totais por conta mantidos em arrays primitivos (struct-of-arrays): os valores da conta de índice i estão na
+// posição i de cada array, na ordem em que as contas foram encontradas. Uma tabela hash de endereçamento aberto
+// (sondagem linear) associa o ACCOUNT_ID ao índice, sem criar objetos (Integer, entradas de HashMap) por conta.
+// A capacidade é fixa e todos os arrays são alocados no construtor: a memória usada não passa da calculada por
+// capacityFor, e quem usa os totais deve esvaziá-los (clear) quando estiverem cheios (isFull).
+public class AccountTotals {
+
+	// Bytes ocupados por conta nos seis arrays de valores.
+	private static final int VALUE_BYTES = Integer.BYTES + Double.BYTES + Long.BYTES + Long.BYTES + Double.BYTES
+			+ Integer.BYTES;
+
+	// Bytes ocupados por conta: os arrays de valores mais pelo menos duas posições da tabela hash (fator de carga 0,5).
+	public static final int BYTES_PER_ACCOUNT = VALUE_BYTES + 2 * Integer.BYTES;
+
+	private static final int MAX_CAPACITY = 1 << 28;
+
+	private static final int EMPTY = -1;
+
+	private final int[] table;
+
+	private final int mask;
+
+	private int size;
+
+	private final int[] accountIds;
+
+	private final double[] dataUsage;
+
+	private final long[] callDuration;
+
+	private final long[] smsCount;
+
+	private final double[] billingTotal;
+
+	private final int[] lineCount;
+
+	public AccountTotals(int capacity) {
+		capacity = Math.max(1, Math.min(MAX_CAPACITY, capacity));
+		this.accountIds = new int[capacity];
+		this.dataUsage = new double[capacity];
+		this.callDuration = new long[capacity];
+		this.smsCount = new long[capacity];
+		this.billingTotal = new double[capacity];
+		this.lineCount = new int[capacity];
+		this.table = new int[tableLength(capacity)];
+		this.mask = this.table.length - 1;
+		Arrays.fill(this.table, EMPTY);
+	}
+
+	// Maior capacidade cujos arrays cabem em memoryBudget bytes. A tabela hash tem um tamanho potência de 2 com pelo
+	// menos duas posições por conta; as posições que sobram além disso são descontadas do orçamento.
+	public static int capacityFor(long memoryBudget) {
+		long capacity = Math.max(1, Math.min(MAX_CAPACITY, memoryBudget / BYTES_PER_ACCOUNT));
+		long tableBytes = (long) tableLength((int) capacity) * Integer.BYTES;
+		return (int) Math.max(1, Math.min(capacity, (memoryBudget - tableBytes) / VALUE_BYTES));
+	}
+
+	private static int tableLength(int capacity) {
+		return Math.max(2, Integer.highestOneBit(2 * capacity - 1) << 1);
+	}
+
+	public boolean isFull() {
+		return this.size == this.accountIds.length;
+	}
+
+	// A conta deve já existir ou os totais não podem estar cheios.
+	public void add(int accountId, double dataUsage, long callDuration, long smsCount, double billingTotal, int lineCount) {
+		int index = indexOf(accountId);
+		this.dataUsage[index] += dataUsage;
+		this.callDuration[index] += callDuration;
+		this.smsCount[index] += smsCount;
+		this.billingTotal[index] += billingTotal;
+		this.lineCount[index] += lineCount;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public void clear() {
+		Arrays.fill(this.table, EMPTY);
+		this.size = 0;
+	}
+
+	// Índices das contas em ordem crescente de ACCOUNT_ID. Cada ACCOUNT_ID é combinado com o seu índice em um long
+	// (ACCOUNT_ID nos 32 bits superiores), assim a ordenação é feita em um único array primitivo.
+	public int[] sortedIndexes() {
+		long[] keys = new long[this.size];
+		for (int i = 0; i < this.size; i++) {
+			keys[i] = ((long) this.accountIds[i] << 32) | i;
+		}
+		Arrays.sort(keys);
+		int[] indexes = new int[this.size];
+		for (int i = 0; i < this.size; i++) {
+			indexes[i] = (int) keys[i];
+		}
+		return indexes;
+	}
+
+	public int accountId(int index) {
+		return this.accountIds[index];
+	}
+
+	public double dataUsage(int index) {
+		return this.dataUsage[index];
+	}
+
+	public long callDuration(int index) {
+		return this.callDuration[index];
+	}
+
+	public long smsCount(int index) {
+		return this.smsCount[index];
+	}
+
+	public double billingTotal(int index) {
+		return this.billingTotal[index];
+	}
+
+	public int lineCount(int index) {
+		return this.lineCount[index];
+	}
+
+	// Retorna o índice da conta, criando uma entrada zerada se a conta ainda não existe.
+	private int indexOf(int accountId) {
+		int slot = mix(accountId) & this.mask;
+		while (true) {
+			int index = this.table[slot];
+			if (index == EMPTY) {
+				break;
+			}
+			if (this.accountIds[index] == accountId) {
+				return index;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+		if (isFull()) {
+			throw new IllegalStateException("AccountTotals is full: " + this.size + " accounts");
+		}
+		int index = this.size++;
+		this.table[slot] = index;
+		this.accountIds[index] = accountId;
+		this.dataUsage[index] = 0;
+		this.callDuration[index] = 0;
+		this.smsCount[index] = 0;
+		this.billingTotal[index] = 0;
+		this.lineCount[index] = 0;
+		return index;
+	}
+
+	// Espalha os bits do ACCOUNT_ID, que costuma ser sequencial, pela tabela.
+	private static int mix(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+}
@@ -0,0 +1,145 @@
+package com.gustavo.billingjob.config;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.policy.SimpleCompletionPolicy;
+
+// Política de conclusão de chunk que ajusta o tamanho do chunk durante a execução do step.
+// Ao final de cada chunk confirmado, o tempo médio por item (média móvel exponencial, commit incluído) é usado para
+// escolher o tamanho que leva a transação a durar targetDuration; o crescimento e a redução são limitados a um fator 2
+// por chunk. Cada rollback divide o tamanho por 2, e a taxa de rollbacks recente reduz o tamanho escolhido na mesma
+// proporção. O tamanho fica sempre entre minSize e maxSize.
+// O tamanho atual é gravado no ExecutionContext do step (chunk.size): um restart continua do último valor e uma nova
+// execução do job começa pelo valor da última execução do mesmo step; sem histórico, começa por initialSize.
+// Deve ser criada por execução de step (@StepScope) e registrada também como StepExecutionListener e ChunkListener.
+public class AdaptiveChunkSizePolicy extends SimpleCompletionPolicy implements StepExecutionListener, ChunkListener {
+
+	public static final String CHUNK_SIZE_KEY = "chunk.size";
+
+	// Quantidade de instâncias anteriores do job consultadas em busca do último tamanho usado pelo step.
+	private static final int HISTORY_SIZE = 10;
+
+	// Peso da última medição nas médias móveis.
+	private static final double ALPHA = 0.5;
+
+	private final JobExplorer jobExplorer;
+
+	private final int initialSize;
+
+	private final int minSize;
+
+	private final int maxSize;
+
+	private final long targetNanos;
+
+	private StepExecution stepExecution;
+
+	private long chunkStart;
+
+	private long itemsBefore;
+
+	private double itemNanos;
+
+	private double rollbackRate;
+
+	public AdaptiveChunkSizePolicy(JobExplorer jobExplorer, int initialSize, int minSize, int maxSize,
+			Duration targetDuration) {
+		if (minSize <= 0 || maxSize < minSize) {
+			throw new IllegalArgumentException("Invalid chunk size bounds: min=" + minSize + ", max=" + maxSize);
+		}
+		if (targetDuration.isNegative() || targetDuration.isZero()) {
+			throw new IllegalArgumentException("The target chunk duration must be positive");
+		}
+		this.jobExplorer = jobExplorer;
+		this.initialSize = initialSize;
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.targetNanos = targetDuration.toNanos();
+	}
+
+	@Override
+	public void beforeStep(StepExecution stepExecution) {
+		this.stepExecution = stepExecution;
+		ExecutionContext executionContext = stepExecution.getExecutionContext();
+		int size = executionContext.containsKey(CHUNK_SIZE_KEY) ? executionContext.getInt(CHUNK_SIZE_KEY)
+				: previousChunkSize(stepExecution);
+		resize(size);
+	}
+
+	@Override
+	public ExitStatus afterStep(StepExecution stepExecution) {
+		return null;
+	}
+
+	@Override
+	public void beforeChunk(ChunkContext context) {
+		this.itemsBefore = processedItems();
+		this.chunkStart = System.nanoTime();
+	}
+
+	// Chamado depois do commit do chunk, por isso a duração medida inclui o commit.
+	@Override
+	public void afterChunk(ChunkContext context) {
+		long elapsed = System.nanoTime() - this.chunkStart;
+		long items = processedItems() - this.itemsBefore;
+		this.rollbackRate = (1 - ALPHA) * this.rollbackRate;
+		if (items == 0) {
+			return;
+		}
+		double perItem = (double) elapsed / items;
+		this.itemNanos = this.itemNanos == 0 ? perItem : ALPHA * perItem + (1 - ALPHA) * this.itemNanos;
+		long ideal = (long) (this.targetNanos / this.itemNanos * (1 - this.rollbackRate));
+		int current = getChunkSize();
+		resize((int) Math.max(current / 2, Math.min(2L * current, ideal)));
+	}
+
+	@Override
+	public void afterChunkError(ChunkContext context) {
+		this.rollbackRate = (1 - ALPHA) * this.rollbackRate + ALPHA;
+		resize(getChunkSize() / 2);
+	}
+
+	private void resize(int size) {
+		int bounded = Math.max(this.minSize, Math.min(this.maxSize, size));
+		setChunkSize(bounded);
+		this.stepExecution.getExecutionContext().putInt(CHUNK_SIZE_KEY, bounded);
+	}
+
+	// Itens consumidos do reader, incluindo os que foram pulados na leitura.
+	private long processedItems() {
+		return this.stepExecution.getReadCount() + this.stepExecution.getReadSkipCount();
+	}
+
+	// Procura, da instância mais recente para a mais antiga, a última execução do mesmo step em que o tamanho foi gravado.
+	private int previousChunkSize(StepExecution stepExecution) {
+		JobInstance current = stepExecution.getJobExecution().getJobInstance();
+		List<JobInstance> instances = this.jobExplorer.getJobInstances(current.getJobName(), 0, HISTORY_SIZE);
+		for (JobInstance instance : instances) {
+			if (instance.getInstanceId() == current.getInstanceId()) {
+				continue;
+			}
+			JobExecution jobExecution = this.jobExplorer.getLastJobExecution(instance);
+			if (jobExecution == null) {
+				continue;
+			}
+			for (StepExecution previous : jobExecution.getStepExecutions()) {
+				if (previous.getStepName().equals(stepExecution.getStepName())
+						&& previous.getExecutionContext().containsKey(CHUNK_SIZE_KEY)) {
+					return previous.getExecutionContext().getInt(CHUNK_SIZE_KEY);
+				}
+			}
+		}
+		return this.initialSize;
+	}
+
+}
@@ -0,0 +1,82 @@
+package com.gustavo.billingjob.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
+import org.springframework.batch.core.step.item.ChunkOrientedTasklet;
+import org.springframework.batch.core.step.item.SimpleChunkProcessor;
+import org.springframework.batch.core.step.item.SimpleChunkProvider;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+
+// Processador de chunks do report.mode=batch: em vez de chamar o BillingDataProcessor item a item, o chunk lido é
+// precificado de uma vez (BillingDataProcessor.process(List)). Os itens abaixo do limite de gastos continuam sendo
+// contados como filtrados (a diferença entre os itens lidos e os gravados, calculada pelo SimpleChunkProcessor).
+// Os ItemProcessListeners não são chamados, pois não há processamento por item; apenas os StepMetricsListeners
+// recebem uma amostra de processamento por chunk (o chunk de entrada e o de saída no lugar do item e do resultado),
+// para que a fase process do billing.chunk.phase continue sendo medida.
+public class BatchPricingChunkProcessor extends SimpleChunkProcessor<BillingData, ReportingData> {
+
+	private final BillingDataProcessor billingDataProcessor;
+
+	private List<StepMetricsListener> metricsListeners = List.of();
+
+	public BatchPricingChunkProcessor(BillingDataProcessor billingDataProcessor, ItemWriter<? super ReportingData> itemWriter) {
+		super(billingDataProcessor, itemWriter);
+		this.billingDataProcessor = billingDataProcessor;
+	}
+
+	public void setMetricsListeners(List<StepMetricsListener> metricsListeners) {
+		this.metricsListeners = metricsListeners;
+	}
+
+	@Override
+	protected Chunk<ReportingData> transform(StepContribution contribution, Chunk<BillingData> inputs) throws Exception {
+		Chunk<ReportingData> outputs;
+		this.metricsListeners.forEach(listener -> listener.beforeProcess(inputs));
+		try {
+			outputs = new Chunk<>(this.billingDataProcessor.process(inputs.getItems()));
+		} catch (Exception e) {
+			this.metricsListeners.forEach(listener -> listener.onProcessError(inputs, e));
+			// Assim como no SimpleChunkProcessor, os itens do chunk não são reprocessados.
+			inputs.clear();
+			throw e;
+		}
+		this.metricsListeners.forEach(listener -> listener.afterProcess(inputs, outputs));
+		if (inputs.isEnd()) {
+			outputs.setEnd();
+		}
+		return outputs;
+	}
+
+	// SimpleStepBuilder que monta o step com o BatchPricingChunkProcessor no lugar do SimpleChunkProcessor; reader,
+	// writer, listeners e política de chunks são os configurados no builder de origem.
+	public static class BatchPricingStepBuilder extends SimpleStepBuilder<BillingData, ReportingData> {
+
+		private final BillingDataProcessor billingDataProcessor;
+
+		public BatchPricingStepBuilder(SimpleStepBuilder<BillingData, ReportingData> parent, BillingDataProcessor billingDataProcessor) {
+			super(parent);
+			this.billingDataProcessor = billingDataProcessor;
+			processor(billingDataProcessor);
+		}
+
+		@Override
+		protected Tasklet createTasklet() {
+			SimpleChunkProvider<BillingData> chunkProvider = new SimpleChunkProvider<>(getReader(), createChunkOperations());
+			BatchPricingChunkProcessor chunkProcessor = new BatchPricingChunkProcessor(this.billingDataProcessor, getWriter());
+			chunkProvider.setListeners(new ArrayList<>(getItemListeners()));
+			chunkProcessor.setListeners(new ArrayList<>(getItemListeners()));
+			chunkProcessor.setMetricsListeners(getItemListeners().stream()
+					.filter(StepMetricsListener.class::isInstance)
+					.map(StepMetricsListener.class::cast)
+					.toList());
+			return new ChunkOrientedTasklet<>(chunkProvider, chunkProcessor);
+		}
+
+	}
+
+}
@@ -0,0 +1,150 @@
+package com.gustavo.billingjob.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import javax.sql.DataSource;
+
+import org.postgresql.PGConnection;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Grava os itens na tabela BILLING_DATA usando o comando COPY do PostgreSQL, enviando cada chunk como um único
+// fluxo CSV em vez de um insert por linha.
+// Para manter a semântica de upsert do JdbcBatchItemWriter, o COPY carrega uma tabela temporária
+// (BILLING_DATA_STAGE) e um MERGE leva as linhas para BILLING_DATA: chaves novas são inseridas e chaves existentes
+// são atualizadas apenas quando os valores mudaram. Se uma chave aparece mais de uma vez no chunk, vale a última linha.
+// A conexão é obtida por meio do DataSourceUtils para participar da transação do chunk, assim o COPY e o MERGE são
+// confirmados ou desfeitos junto com o restante do chunk.
+// A tabela temporária existe por sessão do banco, por isso é criada uma única vez em cada conexão física (e não a
+// cada chunk); como o create é desfeito se a transação em que foi executado for desfeita, nesse caso a tabela é
+// criada novamente no próximo chunk gravado pela conexão.
+public class BillingDataCopyItemWriter implements ItemWriter<BillingData> {
+
+	static final String CREATE_STAGE_SQL = """
+			create temp table if not exists BILLING_DATA_STAGE
+			(
+			    DATA_YEAR     INTEGER,
+			    DATA_MONTH    INTEGER,
+			    ACCOUNT_ID    INTEGER,
+			    PHONE_NUMBER  VARCHAR(12),
+			    DATA_USAGE    FLOAT,
+			    CALL_DURATION INTEGER,
+			    SMS_COUNT     INTEGER
+			) on commit delete rows""";
+
+	static final String COPY_SQL = "COPY BILLING_DATA_STAGE (DATA_YEAR, DATA_MONTH, ACCOUNT_ID, PHONE_NUMBER, DATA_USAGE, CALL_DURATION, SMS_COUNT) FROM STDIN WITH (FORMAT csv)";
+
+	static final String MERGE_SQL = """
+			merge into BILLING_DATA B using BILLING_DATA_STAGE S
+			on (B.DATA_YEAR = S.DATA_YEAR and B.DATA_MONTH = S.DATA_MONTH and B.ACCOUNT_ID = S.ACCOUNT_ID
+			    and B.PHONE_NUMBER = S.PHONE_NUMBER)
+			when matched and (B.DATA_USAGE is distinct from S.DATA_USAGE or B.CALL_DURATION is distinct from S.CALL_DURATION
+			    or B.SMS_COUNT is distinct from S.SMS_COUNT) then
+			    update set DATA_USAGE = S.DATA_USAGE, CALL_DURATION = S.CALL_DURATION, SMS_COUNT = S.SMS_COUNT
+			when not matched then insert (DATA_YEAR, DATA_MONTH, ACCOUNT_ID, PHONE_NUMBER, DATA_USAGE, CALL_DURATION, SMS_COUNT)
+			    values (S.DATA_YEAR, S.DATA_MONTH, S.ACCOUNT_ID, S.PHONE_NUMBER, S.DATA_USAGE, S.CALL_DURATION, S.SMS_COUNT)""";
+
+	static final String CLEAR_STAGE_SQL = "delete from BILLING_DATA_STAGE";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final DataSource dataSource;
+
+	// Conexões físicas (sem o proxy do pool) nas quais a tabela temporária já foi criada.
+	private final Set<Connection> stagedConnections = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+	public BillingDataCopyItemWriter(DataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	@Override
+	public void write(Chunk<? extends BillingData> chunk) throws Exception {
+		if (chunk.isEmpty()) {
+			return;
+		}
+		// O MERGE não aceita duas linhas de origem para a mesma linha de destino.
+		Map<BillingDataKey, BillingData> latest = new LinkedHashMap<>();
+		for (BillingData item : chunk) {
+			latest.put(new BillingDataKey(item.dataYear(), item.dataMonth(), item.accountId(), item.phoneNumber()), item);
+		}
+		StringBuilder csv = new StringBuilder(latest.size() * 48);
+		for (BillingData item : latest.values()) {
+			appendCsv(csv, item);
+		}
+		Connection connection = DataSourceUtils.getConnection(this.dataSource);
+		try (Statement statement = connection.createStatement()) {
+			ensureStageTable(connection, statement);
+			copyIn(connection, COPY_SQL, new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)));
+			statement.executeUpdate(MERGE_SQL);
+			statement.executeUpdate(CLEAR_STAGE_SQL);
+		} finally {
+			DataSourceUtils.releaseConnection(connection, this.dataSource);
+		}
+	}
+
+	private void ensureStageTable(Connection connection, Statement statement) throws SQLException {
+		Connection physicalConnection = connection.unwrap(Connection.class);
+		if (!this.stagedConnections.add(physicalConnection)) {
+			return;
+		}
+		try {
+			createStageTable(statement);
+		} catch (SQLException e) {
+			this.stagedConnections.remove(physicalConnection);
+			throw e;
+		}
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					if (status != STATUS_COMMITTED) {
+						BillingDataCopyItemWriter.this.stagedConnections.remove(physicalConnection);
+					}
+				}
+			});
+		}
+	}
+
+	protected void createStageTable(Statement statement) throws SQLException {
+		statement.execute(CREATE_STAGE_SQL);
+	}
+
+	private record BillingDataKey(int dataYear, int dataMonth, int accountId, String phoneNumber) {
+	}
+
+	// Envia os dados em formato CSV para o servidor por meio do CopyManager do driver do PostgreSQL.
+	protected void copyIn(Connection connection, String sql, InputStream data) throws SQLException, IOException {
+		connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql, data, BUFFER_SIZE);
+	}
+
+	// O dataUsage é gravado com a mesma precisão que o JdbcBatchItemWriter produz ao converter o float para a
+	// coluna FLOAT (double precision), assim os dois writers carregam exatamente os mesmos valores.
+	static void appendCsv(StringBuilder csv, BillingData item) {
+		csv.append(item.dataYear()).append(',')
+			.append(item.dataMonth()).append(',')
+			.append(item.accountId()).append(',');
+		// Um campo vazio sem aspas é interpretado como NULL pelo COPY
+		if (item.phoneNumber() != null) {
+			csv.append('"').append(item.phoneNumber().replace("\"", "\"\"")).append('"');
+		}
+		csv.append(',')
+			.append((double) item.dataUsage()).append(',')
+			.append(item.callDuration()).append(',')
+			.append(item.smsCount()).append('\n');
+	}
+
+}
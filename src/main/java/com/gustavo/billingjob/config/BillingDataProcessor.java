@@ -1,26 +1,105 @@
 package com.gustavo.billingjob.config;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.beans.factory.annotation.Value;
 
 //A interface ItemProcessor no Spring Batch é usada para definir a lógica de processamento de itens durante a execução de um Step.
-public class BillingDataProcessor implements ItemProcessor<BillingData, ReportingData> {
+// Os preços vêm de um PricingSnapshot carregado no início de cada execução de step (ver beforeStep), assim nenhum item
+// depende de uma chamada ao serviço de tarifas nem precisa ser reprocessado por causa de uma PricingException.
+// O snapshot carregado em beforeStep é guardado para a execução do step, e todos os seus itens são precificados com
+// ele (a versão registrada em pricing.version), mesmo que outro step executado ao mesmo tempo (partições, meses)
+// carregue um novo snapshot no PricingService. Fora de um step, os itens usam o snapshot atual do PricingService.
+public class BillingDataProcessor implements ItemProcessor<BillingData, ReportingData>, StepExecutionListener {
     
 	@Value("${spring.cellular.spending.threshold:150}")
     private float spendingThreshold;
     
 	private final PricingService pricingService;
 
+	// Valores dos contadores do PricingService no início de cada step em execução, pelo id do StepExecution.
+	private final Map<Long, long[]> startCounters = new ConcurrentHashMap<>();
+
+	// Snapshot de preços de cada step em execução, pelo id do StepExecution.
+	private final Map<Long, PricingSnapshot> snapshots = new ConcurrentHashMap<>();
+
     public BillingDataProcessor(PricingService pricingService) {
         this.pricingService = pricingService;
     }
 
+	@Override
+	public void beforeStep(StepExecution stepExecution) {
+		this.startCounters.put(stepExecution.getId(), new long[] { this.pricingService.getHitCount(),
+				this.pricingService.getRefreshCount(), this.pricingService.getFailureCount() });
+		PricingSnapshot snapshot = this.pricingService.refresh();
+		this.snapshots.put(stepExecution.getId(), snapshot);
+		stepExecution.getExecutionContext().putLong("pricing.version", snapshot.version());
+	}
+
+	// Registra no contexto do step quanto os contadores do PricingService (acumulados desde o início da aplicação)
+	// avançaram durante o step. Em steps executados ao mesmo tempo (ex.: partições), os valores também incluem as
+	// chamadas feitas pelos outros steps nesse intervalo.
+	@Override
+	public ExitStatus afterStep(StepExecution stepExecution) {
+		this.snapshots.remove(stepExecution.getId());
+		long[] start = this.startCounters.remove(stepExecution.getId());
+		if (start == null) {
+			return null;
+		}
+		stepExecution.getExecutionContext().putLong("pricing.hits", this.pricingService.getHitCount() - start[0]);
+		stepExecution.getExecutionContext().putLong("pricing.refreshes", this.pricingService.getRefreshCount() - start[1]);
+		stepExecution.getExecutionContext().putLong("pricing.failures", this.pricingService.getFailureCount() - start[2]);
+		return null;
+	}
+
 	@Override
 	public ReportingData process(BillingData item) {
-		double billingTotal = item.dataUsage() * pricingService.getDataPricing() + item.callDuration() * pricingService.getCallPricing() + item.smsCount() * pricingService.getSmsPricing();
+		return price(item, snapshot());
+	}
+
+	// Precifica um chunk inteiro (report.mode=batch) com um único snapshot e os mesmos resultados de process.
+	// O ganho do modo batch vem de não passar cada item pelo SimpleChunkProcessor (listeners, amostras de tempo por
+	// item e remoção dos itens filtrados do Chunk), e não do cálculo: copiar os campos para arrays primitivos, para
+	// que o laço fosse vetorizado, foi mais lento que este laço (ver BillingDataProcessorBenchmark).
+	public List<ReportingData> process(List<? extends BillingData> items) {
+		PricingSnapshot pricing = snapshot();
+		List<ReportingData> outputs = new ArrayList<>(items.size());
+		for (BillingData item : items) {
+			ReportingData output = price(item, pricing);
+			if (output != null) {
+				outputs.add(output);
+			}
+		}
+		return outputs;
+	}
+
+	// O total é calculado em float e convertido para double, e o limite é comparado com o total convertido.
+	private ReportingData price(BillingData item, PricingSnapshot pricing) {
+		double billingTotal = item.dataUsage() * pricing.dataPricing() + item.callDuration() * pricing.callPricing() + item.smsCount() * pricing.smsPricing();
 		if (billingTotal < spendingThreshold) {
 			return null;
 		}
 		return new ReportingData(item, billingTotal);
 	}
-}
\ No newline at end of file
+
+	// Snapshot do step em execução na thread atual (registrado pelo StepSynchronizationManager, inclusive nas threads
+	// do OrderedAsyncItemProcessor).
+	private PricingSnapshot snapshot() {
+		StepContext context = StepSynchronizationManager.getContext();
+		PricingSnapshot snapshot = context == null ? null : this.snapshots.get(context.getStepExecution().getId());
+		if (snapshot == null) {
+			return this.pricingService.getSnapshot();
+		}
+		this.pricingService.recordHit();
+		return snapshot;
+	}
+}
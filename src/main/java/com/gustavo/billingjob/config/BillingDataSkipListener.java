@@ -1,40 +1,107 @@
 package com.gustavo.billingjob.config;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
 import org.springframework.batch.core.SkipListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
 import org.springframework.batch.item.file.FlatFileParseException;
 
 // SkipListener é usado para monitorar eventos de "skip" durante o processamento de um job
 // Nesse caso ele vai gravar as linhas puladas em um determinado arquivo
-// <BillingData,BillingData> correspondem ao tipo de itens de entrada e saída do step em que esse listener será registrado
-public class BillingDataSkipListener implements SkipListener<BillingData, BillingData> {
-		
+// <BillingData,Object> correspondem ao tipo de itens de entrada e saída do step em que esse listener será registrado;
+// como apenas os skips de leitura são tratados, o listener pode ser usado tanto na ingestão quanto no modo streaming.
+// As linhas puladas de um chunk são acumuladas em memória e gravadas de uma vez, por um único canal aberto durante a
+// execução do step, depois que a transação do chunk é confirmada (afterChunk). Assim as linhas de um chunk confirmado
+// já estão no arquivo mesmo que o processo seja interrompido antes do fim do step, e um restart, que não lê esse chunk
+// novamente, não as perde. Se a transação for desfeita (afterChunkError), as linhas acumuladas são descartadas: o
+// Spring Batch repete o chunk e notifica os mesmos skips outra vez.
+// Por isso o listener também deve ser registrado como ChunkListener e como StepExecutionListener (o canal é fechado
+// em afterStep).
+// Os métodos são sincronizados e cada lote é gravado com o arquivo em modo APPEND, assim várias threads ou partições
+// podem registrar skips no mesmo arquivo ao mesmo tempo sem misturar as linhas.
+public class BillingDataSkipListener implements SkipListener<BillingData, Object>, StepExecutionListener, ChunkListener {
+
 	Path skippedItemsFile;
-	
+
+	private final StringBuilder buffer = new StringBuilder();
+
+	private FileChannel channel;
+
 	// Caminho para o arquivo no qual os itens ignorados devem ser gravados
 	public BillingDataSkipListener(String skippedItemsFile) {
 		this.skippedItemsFile = Paths.get(skippedItemsFile);
 	}
-	
+
 	@Override
-	public void onSkipInRead(Throwable throwable) {
+	public synchronized void onSkipInRead(Throwable throwable) {
 		if(throwable instanceof FlatFileParseException exception) {
 			String rawLine = exception.getInput();
 			int lineNumber = exception.getLineNumber();
-			String skippedLine = lineNumber + "|" + rawLine + System.lineSeparator();
-			try {
+			this.buffer.append(lineNumber).append('|').append(rawLine).append(System.lineSeparator());
+		}
+	}
+
+	@Override
+	public synchronized void afterChunk(ChunkContext context) {
+		flush();
+	}
+
+	@Override
+	public synchronized void afterChunkError(ChunkContext context) {
+		this.buffer.setLength(0);
+	}
+
+	@Override
+	public synchronized ExitStatus afterStep(StepExecution stepExecution) {
+		try {
+			flush();
+		} finally {
+			close();
+		}
+		return null;
+	}
+
+	private void flush() {
+		if(this.buffer.isEmpty()) {
+			return;
+		}
+		try {
+			if(this.channel == null) {
 				// StandardOpenOption.APPEND: Faz com que o conteúdo seja adicionado ao final do arquivo.
 				// StandardOpenOption.CREATE: Cria o arquivo se ele não existir.
-				Files.writeString(this.skippedItemsFile, skippedLine, StandardOpenOption.APPEND, StandardOpenOption.CREATE);				
+				this.channel = FileChannel.open(this.skippedItemsFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND, StandardOpenOption.CREATE);
+			}
+			ByteBuffer bytes = ByteBuffer.wrap(this.buffer.toString().getBytes(StandardCharsets.UTF_8));
+			while(bytes.hasRemaining()) {
+				this.channel.write(bytes);
+			}
+			this.buffer.setLength(0);
+		} catch(IOException e) {
+			throw new UncheckedIOException("Unable to write skipped items to " + this.skippedItemsFile, e);
+		}
+	}
+
+	private void close() {
+		if(this.channel != null) {
+			try {
+				this.channel.close();
 			} catch(IOException e) {
-				throw new RuntimeException("Unable to write skipped item " + skippedLine);
+				throw new UncheckedIOException("Unable to close skipped items file " + this.skippedItemsFile, e);
+			} finally {
+				this.channel = null;
 			}
-		}	
+		}
 	}
 
 }
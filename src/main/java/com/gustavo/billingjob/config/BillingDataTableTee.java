@@ -0,0 +1,148 @@
+package com.gustavo.billingjob.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Copia os registros lidos do arquivo para a tabela BILLING_DATA em segundo plano, durante o modo streaming
+// (job.mode=streaming), no qual o relatório é gerado diretamente a partir do arquivo.
+// Os itens lidos em um chunk são enviados para a thread de gravação somente depois que o chunk é confirmado e
+// descartados se o chunk falhar. A fila de gravação é limitada: quando está cheia, a thread do step aguarda.
+// Uma falha na gravação interrompe o step no próximo chunk (ou ao final do step) e o marca como FAILED. Como os
+// chunks já confirmados pelo step podem não ter sido copiados, o contexto de execução do step é descartado: o restart
+// gera o relatório e a cópia desde o início do arquivo (o MERGE torna idempotente a regravação das linhas já copiadas).
+public class BillingDataTableTee implements ItemReadListener<BillingData>, ChunkListener, StepExecutionListener {
+
+	private static final int QUEUE_CAPACITY = 8;
+
+	private final ItemWriter<BillingData> delegate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+	private List<BillingData> buffer = new ArrayList<>();
+
+	private ThreadPoolExecutor executor;
+
+	// Com delegate nulo a cópia para a tabela fica desabilitada.
+	public BillingDataTableTee(ItemWriter<BillingData> delegate, PlatformTransactionManager transactionManager) {
+		this.delegate = delegate;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+	}
+
+	@Override
+	public void beforeStep(StepExecution stepExecution) {
+		if (this.delegate == null) {
+			return;
+		}
+		this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+				new CustomizableThreadFactory("billingDataTableTee-"), (task, executor) -> {
+					try {
+						executor.getQueue().put(task);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new RejectedExecutionException(e);
+					}
+				});
+	}
+
+	@Override
+	public void afterRead(BillingData item) {
+		if (this.delegate != null) {
+			this.buffer.add(item);
+		}
+	}
+
+	@Override
+	public void afterChunk(ChunkContext context) {
+		if (this.delegate == null) {
+			return;
+		}
+		Throwable error = this.failure.get();
+		if (error != null) {
+			throw new IllegalStateException("Unable to copy billing data to table", error);
+		}
+		if (!this.buffer.isEmpty()) {
+			List<BillingData> items = this.buffer;
+			this.buffer = new ArrayList<>();
+			this.executor.execute(() -> write(items));
+		}
+	}
+
+	@Override
+	public void afterChunkError(ChunkContext context) {
+		this.buffer.clear();
+	}
+
+	// Aguarda a gravação dos chunks pendentes antes de concluir o step. O status FAILED é necessário também quando o
+	// step termina sem erro: um step COMPLETED não é executado novamente no restart.
+	@Override
+	public ExitStatus afterStep(StepExecution stepExecution) {
+		if (this.executor == null) {
+			return null;
+		}
+		this.executor.shutdown();
+		try {
+			while (!this.executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				// continua aguardando a gravação dos chunks pendentes
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			this.executor.shutdownNow();
+			this.failure.compareAndSet(null, e);
+		}
+		Throwable error = this.failure.get();
+		if (error != null) {
+			stepExecution.upgradeStatus(BatchStatus.FAILED);
+			stepExecution.addFailureException(error);
+			ExecutionContext executionContext = stepExecution.getExecutionContext();
+			for (String key : executionContext.entrySet().stream().map(Map.Entry::getKey).toList()) {
+				executionContext.remove(key);
+			}
+			return ExitStatus.FAILED;
+		}
+		return null;
+	}
+
+	private void write(List<BillingData> items) {
+		if (this.failure.get() != null) {
+			return;
+		}
+		try {
+			this.transactionTemplate.executeWithoutResult(status -> {
+				try {
+					this.delegate.write(new Chunk<>(items));
+				} catch (RuntimeException e) {
+					throw e;
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			});
+		} catch (RuntimeException e) {
+			this.failure.compareAndSet(null, e);
+		}
+	}
+
+}
@@ -0,0 +1,47 @@
+package com.gustavo.billingjob.config;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// Registra na tabela BILLING_FILE o FileFingerprint de cada arquivo de entrada cuja ingestão foi concluída,
+// identificado pelo nome do arquivo (sem o diretório) e pelo mês carregado (data.year e data.month): um arquivo com
+// o mesmo nome carregado para outro mês tem um registro próprio.
+public class BillingFileRegistry {
+
+	private static final String SELECT_SQL = "select FILE_SIZE, FILE_HASH from BILLING_FILE where FILE_NAME = ? and DATA_YEAR = ? and DATA_MONTH = ?";
+
+	private static final String MERGE_SQL = """
+			merge into BILLING_FILE F
+			using (values (cast(? as varchar(255)), cast(? as integer), cast(? as integer), cast(? as bigint),
+			    cast(? as varchar(64)), cast(? as timestamp)))
+			    as V (FILE_NAME, DATA_YEAR, DATA_MONTH, FILE_SIZE, FILE_HASH, LOADED_AT)
+			on (F.FILE_NAME = V.FILE_NAME and F.DATA_YEAR = V.DATA_YEAR and F.DATA_MONTH = V.DATA_MONTH)
+			when matched then update set FILE_SIZE = V.FILE_SIZE, FILE_HASH = V.FILE_HASH, LOADED_AT = V.LOADED_AT
+			when not matched then insert (FILE_NAME, DATA_YEAR, DATA_MONTH, FILE_SIZE, FILE_HASH, LOADED_AT)
+			    values (V.FILE_NAME, V.DATA_YEAR, V.DATA_MONTH, V.FILE_SIZE, V.FILE_HASH, V.LOADED_AT)""";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	public BillingFileRegistry(DataSource dataSource) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	// Retorna o fingerprint da última ingestão concluída do arquivo para o mês, ou null se o arquivo ainda não foi
+	// carregado para esse mês.
+	public FileFingerprint find(String fileName, int year, int month) {
+		List<FileFingerprint> fingerprints = this.jdbcTemplate.query(SELECT_SQL,
+				(rs, rowNum) -> new FileFingerprint(rs.getLong("FILE_SIZE"), rs.getString("FILE_HASH")), fileName, year, month);
+		return fingerprints.isEmpty() ? null : fingerprints.get(0);
+	}
+
+	public void save(String fileName, int year, int month, FileFingerprint fingerprint) {
+		this.jdbcTemplate.update(MERGE_SQL, fileName, year, month, fingerprint.size(), fingerprint.hash(),
+				Timestamp.from(Instant.now()));
+	}
+
+}
@@ -1,99 +1,481 @@
 package com.gustavo.billingjob.config;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Future;
+
 import javax.sql.DataSource;
 
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ItemProcessListener;
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.core.ItemWriteListener;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.JobParametersValidator;
+import org.springframework.batch.core.SkipListener;
 import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecutionListener;
 import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.job.builder.FlowBuilder;
 import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.job.flow.Flow;
+import org.springframework.batch.core.job.flow.JobExecutionDecider;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.partition.PartitionHandler;
+import org.springframework.batch.core.partition.support.TaskExecutorPartitionHandler;
 import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
 import org.springframework.batch.core.step.builder.StepBuilder;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemStreamWriter;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.item.database.JdbcBatchItemWriter;
 import org.springframework.batch.item.database.JdbcCursorItemReader;
 import org.springframework.batch.item.database.builder.JdbcBatchItemWriterBuilder;
 import org.springframework.batch.item.database.builder.JdbcCursorItemReaderBuilder;
 import org.springframework.batch.item.file.FlatFileItemReader;
-import org.springframework.batch.item.file.FlatFileItemWriter;
 import org.springframework.batch.item.file.FlatFileParseException;
 import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
 import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
+import org.springframework.batch.item.file.transform.BeanWrapperFieldExtractor;
+import org.springframework.batch.item.file.transform.DelimitedLineAggregator;
+import org.springframework.batch.item.support.CompositeItemWriter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.jdbc.core.DataClassRowMapper;
 import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.util.unit.DataSize;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.logging.LoggingMeterRegistry;
+import io.micrometer.core.instrument.logging.LoggingRegistryConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 @Configuration
 public class BillingJobConfiguration {
 	
+  // Upsert pela chave (DATA_YEAR, DATA_MONTH, ACCOUNT_ID, PHONE_NUMBER): reexecutar a ingestão do mesmo arquivo não
+  // duplica linhas, e uma linha existente só é atualizada quando algum valor mudou.
+  // O MERGE padrão (e não o ON CONFLICT do PostgreSQL) permite usar o mesmo comando no H2.
+  static final String BILLING_DATA_UPSERT_SQL = """
+		  merge into BILLING_DATA B
+		  using (values (cast(:dataYear as integer), cast(:dataMonth as integer), cast(:accountId as integer),
+		      cast(:phoneNumber as varchar(12)), cast(:dataUsage as float), cast(:callDuration as integer),
+		      cast(:smsCount as integer)))
+		      as V (DATA_YEAR, DATA_MONTH, ACCOUNT_ID, PHONE_NUMBER, DATA_USAGE, CALL_DURATION, SMS_COUNT)
+		  on (B.DATA_YEAR = V.DATA_YEAR and B.DATA_MONTH = V.DATA_MONTH and B.ACCOUNT_ID = V.ACCOUNT_ID
+		      and B.PHONE_NUMBER = V.PHONE_NUMBER)
+		  when matched and (B.DATA_USAGE is distinct from V.DATA_USAGE or B.CALL_DURATION is distinct from V.CALL_DURATION
+		      or B.SMS_COUNT is distinct from V.SMS_COUNT) then
+		      update set DATA_USAGE = V.DATA_USAGE, CALL_DURATION = V.CALL_DURATION, SMS_COUNT = V.SMS_COUNT
+		  when not matched then insert (DATA_YEAR, DATA_MONTH, ACCOUNT_ID, PHONE_NUMBER, DATA_USAGE, CALL_DURATION, SMS_COUNT)
+		      values (V.DATA_YEAR, V.DATA_MONTH, V.ACCOUNT_ID, V.PHONE_NUMBER, V.DATA_USAGE, V.CALL_DURATION, V.SMS_COUNT)""";
+	
   // O método JobBuilder.start que cria um fluxo de trabalho sequencial (sequential job flow) 
   // e espera o primeiro step da sequência
+  // Após a preparação do arquivo, o job executa o fluxo de ingestão e em seguida o fluxo de geração do relatório.
+  // Cada fluxo escolhe, por meio de um ModeDecider, entre o step padrão e suas variações.
+  // Com job.mode=streaming, o relatório é gerado diretamente a partir do arquivo em um único step (streamingStep).
+  // Se o arquivo de entrada já foi carregado com o mesmo conteúdo (status UNCHANGED do step1), a ingestão é dispensada.
+  // Uma falha na preparação do arquivo encerra o job com status FAILED, permitindo o restart.
+  // Com report.accounts=true, o relatório é seguido do relatório por conta (accountReportStep), gerado apenas se o
+  // relatório for concluído; uma falha no relatório encerra o job com status FAILED.
+  // Ao final, as métricas da execução são gravadas em metrics.file, quando informado.
+  // BillingJob é o job padrão (spring.batch.job.name); o MultiMonthBillingJob o executa uma vez por mês.
   @Bean
-  public Job job(JobRepository jobRepository, Step step1, Step step2, Step step3) {
+  @Primary
+  public Job job(JobRepository jobRepository, Step step1, Flow ingestionFlow, Flow reportFlow, Step streamingStep,
+		  Step accountReportStep, MetricsFileWriter metricsFileWriter) {
+    JobExecutionDecider jobModeDecider = new ModeDecider("job.mode");
+    JobExecutionDecider accountReportDecider = new ModeDecider("report.accounts");
     return new JobBuilder("BillingJob", jobRepository)
     		.validator(parametersValidator())
-    		.start(step1)
-    		.next(step2)
-    		.next(step3)
+    		.listener(metricsFileWriter)
+    		.flow(step1)
+    			.on(FilePreparationTasklet.UNCHANGED).to(reportFlow)
+    		.from(step1)
+    			.on("COMPLETED").to(jobModeDecider)
+    		.from(step1)
+    			.on("FAILED").fail()
+    		.from(jobModeDecider)
+    			.on("STREAMING").to(streamingStep)
+    		.from(jobModeDecider)
+    			.on("*").to(ingestionFlow).next(reportFlow)
+    		.from(reportFlow)
+    			.on("COMPLETED").to(accountReportDecider)
+    		.from(reportFlow)
+    			.on("FAILED").fail()
+    		.from(accountReportDecider)
+    			.on("TRUE").to(accountReportStep)
+    		.from(accountReportDecider)
+    			.on("*").end()
+    		.end()
     		.build();
   }
   
+  // Processa vários meses em uma única execução: input.files recebe uma lista ou um padrão glob de arquivos
+  // (ex.: input/billing-2023-*.csv), e cada mês é processado por um BillingJob próprio (preparação, ingestão e
+  // relatório), com relatório e arquivo de skips próprios em output.dir. Os meses são executados em paralelo,
+  // limitados a months.threads.
+  // Executado com --spring.batch.job.name=MultiMonthBillingJob.
+  @Bean
+  public Job multiMonthJob(JobRepository jobRepository, Step monthlyBillingStep, MetricsFileWriter metricsFileWriter) {
+	  return new JobBuilder("MultiMonthBillingJob", jobRepository)
+			  .validator(new MultiMonthParametersValidator())
+			  .listener(metricsFileWriter)
+			  .start(monthlyBillingStep)
+			  .build();
+  }
+  
+  // Step gerenciador do MultiMonthBillingJob: o MonthPartitioner cria uma partição por mês e o PartitionHandler
+  // executa um monthlyBillingWorker por partição. No restart, apenas os meses que não foram concluídos são
+  // executados novamente.
+  @Bean
+  public Step monthlyBillingStep(JobRepository jobRepository, Step monthlyBillingWorker,
+		  MonthPartitioner monthPartitioner, PartitionHandler monthlyBillingPartitionHandler) {
+	  return new StepBuilder("monthlyBilling", jobRepository)
+			  .partitioner(monthlyBillingWorker.getName(), monthPartitioner)
+			  .partitionHandler(monthlyBillingPartitionHandler)
+			  .build();
+  }
+  
+  // Executa o BillingJob do mês na thread da partição; o step falha se o BillingJob falhar.
+  @Bean
+  public Step monthlyBillingWorker(JobRepository jobRepository, JobLauncher jobLauncher, Job job) {
+	  return new StepBuilder("monthlyBillingWorker", jobRepository)
+			  .job(job)
+			  .launcher(jobLauncher)
+			  .parametersExtractor(new MonthJobParametersExtractor())
+			  .build();
+  }
+  
+  @Bean
+  @StepScope
+  public MonthPartitioner monthPartitioner(@Value("#{jobParameters['input.files']}") String inputFiles,
+		  @Value("#{jobParameters['output.dir']}") String outputDir) {
+	  return new MonthPartitioner(inputFiles, outputDir);
+  }
+  
+  @Bean
+  @StepScope
+  public TaskExecutorPartitionHandler monthlyBillingPartitionHandler(Step monthlyBillingWorker,
+		  @Value("#{jobParameters['months.threads'] ?: '4'}") int threads) {
+	  SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor("monthlyBilling-");
+	  taskExecutor.setConcurrencyLimit(threads);
+	  TaskExecutorPartitionHandler partitionHandler = new TaskExecutorPartitionHandler();
+	  partitionHandler.setStep(monthlyBillingWorker);
+	  partitionHandler.setTaskExecutor(taskExecutor);
+	  return partitionHandler;
+  }
+  
+  // ingestion.mode=partitioned executa partitionedStep2; qualquer outro valor executa step2.
+  // Ao final, o fingerprint do arquivo carregado é registrado (fileRegistrationStep).
+  @Bean
+  public Flow ingestionFlow(Step step2, Step partitionedStep2, Step fileRegistrationStep) {
+	  JobExecutionDecider ingestionModeDecider = new ModeDecider("ingestion.mode");
+	  return new FlowBuilder<Flow>("ingestionFlow")
+			  .start(ingestionModeDecider)
+			  	.on("PARTITIONED").to(partitionedStep2).next(fileRegistrationStep)
+			  .from(ingestionModeDecider)
+			  	.on("*").to(step2).next(fileRegistrationStep)
+			  .build();
+  }
+  
+  // report.mode=partitioned executa partitionedStep3 seguido do merge dos arquivos parciais, report.mode=sql executa
+  // sqlStep3, report.mode=async executa asyncStep3 e qualquer outro valor executa step3.
+  @Bean
+  public Flow reportFlow(Step step3, Step partitionedStep3, Step reportMergeStep, Step sqlStep3, Step asyncStep3,
+		  Step batchStep3) {
+	  JobExecutionDecider reportModeDecider = new ModeDecider("report.mode");
+	  return new FlowBuilder<Flow>("reportFlow")
+			  .start(reportModeDecider)
+			  	.on("PARTITIONED").to(partitionedStep3).next(reportMergeStep)
+			  .from(reportModeDecider)
+			  	.on("SQL").to(sqlStep3)
+			  .from(reportModeDecider)
+			  	.on("ASYNC").to(asyncStep3)
+			  .from(reportModeDecider)
+			  	.on("BATCH").to(batchStep3)
+			  .from(reportModeDecider)
+			  	.on("*").to(step3)
+			  .build();
+  }
+  
   // Este gerenciador de transações é configurado automaticamente pelo Spring Boot e podemos 
   // usá-lo aqui para definir o TaskletStep. Ele controla diretamente o commit e o rollback 
   // das transações no nível de conexão JDBC.
   // Um TaskletStep requer um gerenciador de transações para gerenciar a transação em torno 
   // de cada iteração do Tasklet, associadas às operações de leitura, processamento e gravação de dados.
   @Bean
-  public Step step1(JobRepository jobRepository, JdbcTransactionManager transactionManager) {
+  public Step step1(JobRepository jobRepository, JdbcTransactionManager transactionManager,
+		  BillingFileRegistry billingFileRegistry) {
 	  return new StepBuilder("filePreparation", jobRepository)
-			  .tasklet(new FilePreparationTasklet(), transactionManager)
+			  .tasklet(new FilePreparationTasklet(billingFileRegistry), transactionManager)
 			  .build();
   }
   
+  @Bean
+  public Step fileRegistrationStep(JobRepository jobRepository, JdbcTransactionManager transactionManager,
+		  BillingFileRegistry billingFileRegistry) {
+	  return new StepBuilder("fileRegistration", jobRepository)
+			  .tasklet(new FileRegistrationTasklet(billingFileRegistry), transactionManager)
+			  .build();
+  }
+  
+  @Bean
+  public BillingFileRegistry billingFileRegistry(DataSource dataSource) {
+	  return new BillingFileRegistry(dataSource);
+  }
+  
   @Bean
   public Step step2(
      JobRepository jobRepository, JdbcTransactionManager transactionManager,
      ItemReader<BillingData> billingDataFileReader, ItemWriter<BillingData> billingDataTableWriter,
-     BillingDataSkipListener skipListener) {
-      return new StepBuilder("fileIngestion", jobRepository)
+     ColumnarBillingDataItemWriter billingDataColumnarWriter,
+     BillingDataSkipListener skipListener, StepMetricsListener stepMetricsListener, AdaptiveChunkSizePolicy chunkSizePolicy,
+     @Value("${spring.cellular.skip.limit:10}") int skipLimit) {
+      return withMetrics(new StepBuilder("fileIngestion", jobRepository)
     		  // Informa ao Spring Bath que o leitor retornará itens do tipo BillingData e que o escritor escreverá itens do tipo 
     		  // BillingData também.
     		  // Um chunk de tamanho 100 significa que 100 itens serão lidos, processados e gravados de uma vez (dentro de uma transação)
     		  // O Transaction Manager assegura que todas as operações em um chunk sejam tratadas como uma única unidade atômica.
-              .<BillingData, BillingData>chunk(100, transactionManager)
+    		  // O tamanho do chunk é ajustado durante a execução pelo AdaptiveChunkSizePolicy (ver chunkSizePolicy).
+              .<BillingData, BillingData>chunk(chunkSizePolicy, transactionManager)
+              .listener((StepExecutionListener) chunkSizePolicy)
+              .listener((ChunkListener) chunkSizePolicy)
               .reader(billingDataFileReader)
-              .writer(billingDataTableWriter)
+              // Com ingestion.columnar=true, os chunks também são gravados no arquivo colunar do mês (ver billingDataColumnarWriter).
+              // O CompositeItemWriter abre, atualiza e fecha o billingDataColumnarWriter junto com o step.
+              .writer(new CompositeItemWriter<>(billingDataTableWriter, billingDataColumnarWriter))
+              .listener((StepExecutionListener) billingDataColumnarWriter)
               // Habilita a tolerância a falhas no Step
               .faultTolerant()
               // Especifica a FlatFileParseException como uma exceção ignorável
               .skip(FlatFileParseException.class)
-              .skipLimit(10)
+              .skipLimit(skipLimit)
               // Adiciona um listener para monitorar e reagir a eventos durante o processamento, como skips
-              .listener(skipListener)
+              .listener((SkipListener<BillingData, Object>) skipListener)
+              // O mesmo listener grava as linhas puladas após o commit de cada chunk e fecha o arquivo de skips ao final do step
+              .listener((ChunkListener) skipListener)
+              .listener((StepExecutionListener) skipListener), stepMetricsListener)
+              .build();
+  }
+  
+  // Step gerenciador da ingestão particionada: o LineRangePartitioner divide o arquivo em intervalos de bytes
+  // e o PartitionHandler executa um fileIngestionWorker por intervalo, em paralelo.
+  @Bean
+  public Step partitionedStep2(JobRepository jobRepository, Step fileIngestionWorker,
+     LineRangePartitioner fileIngestionPartitioner, PartitionHandler fileIngestionPartitionHandler) {
+      return new StepBuilder("partitionedFileIngestion", jobRepository)
+              .partitioner(fileIngestionWorker.getName(), fileIngestionPartitioner)
+              .partitionHandler(fileIngestionPartitionHandler)
               .build();
   }
   
+  @Bean
+  public Step fileIngestionWorker(
+     JobRepository jobRepository, JdbcTransactionManager transactionManager,
+     ItemReader<BillingData> billingDataRangeReader, ItemWriter<BillingData> billingDataTableWriter,
+     BillingDataSkipListener skipListener, StepMetricsListener stepMetricsListener, AdaptiveChunkSizePolicy chunkSizePolicy,
+     @Value("${spring.cellular.skip.limit:10}") int skipLimit) {
+      return withMetrics(new StepBuilder("fileIngestionWorker", jobRepository)
+              .<BillingData, BillingData>chunk(chunkSizePolicy, transactionManager)
+              .listener((StepExecutionListener) chunkSizePolicy)
+              .listener((ChunkListener) chunkSizePolicy)
+              .reader(billingDataRangeReader)
+              .writer(billingDataTableWriter)
+              .faultTolerant()
+              .skip(FlatFileParseException.class)
+              .skipLimit(skipLimit)
+              .listener((SkipListener<BillingData, Object>) skipListener)
+              .listener((ChunkListener) skipListener)
+              .listener((StepExecutionListener) skipListener), stepMetricsListener)
+              .build();
+  }
+  
+  // Lê o arquivo de entrada, precifica e grava o relatório em um único passo, sem passar pela tabela BILLING_DATA.
+  // Com streaming.tee=true os registros lidos também são copiados para a tabela em segundo plano (BillingDataTableTee).
+  @Bean
+  public Step streamingStep(JobRepository jobRepository, JdbcTransactionManager transactionManager,
+                             ItemReader<BillingData> billingDataFileReader,
+                             ItemProcessor<BillingData, ReportingData> billingDataProcessor,
+                             ItemWriter<ReportingData> billingDataFileWriter,
+                             BillingDataSkipListener skipListener, BillingDataTableTee billingDataTableTee,
+                             StepMetricsListener stepMetricsListener, AdaptiveChunkSizePolicy chunkSizePolicy,
+                             @Value("${spring.cellular.skip.limit:10}") int skipLimit) {
+      return withMetrics(new StepBuilder("streamingReportGeneration", jobRepository)
+              .<BillingData, ReportingData>chunk(chunkSizePolicy, transactionManager)
+              .listener((StepExecutionListener) chunkSizePolicy)
+              .listener((ChunkListener) chunkSizePolicy)
+              .reader(billingDataFileReader)
+              .processor(billingDataProcessor)
+              .writer(billingDataFileWriter)
+              .faultTolerant()
+              .skip(FlatFileParseException.class)
+              .skipLimit(skipLimit)
+              .listener((SkipListener<BillingData, Object>) skipListener)
+              .listener((ChunkListener) skipListener)
+              .listener((StepExecutionListener) skipListener)
+              .listener((StepExecutionListener) billingDataTableTee)
+              .listener((ChunkListener) billingDataTableTee)
+              .listener((ItemReadListener<BillingData>) billingDataTableTee), stepMetricsListener)
+              .build();
+  }
+  
+  // O BillingDataProcessor precifica os itens a partir de um PricingSnapshot carregado no início do step,
+  // por isso não há retry por item: as falhas do serviço de tarifas são tratadas na carga do snapshot.
   @Bean
   public Step step3(JobRepository jobRepository, JdbcTransactionManager transactionManager,
                              ItemReader<BillingData> billingDataTableReader,
                              ItemProcessor<BillingData, ReportingData> billingDataProcessor,
-                             ItemWriter<ReportingData> billingDataFileWriter) {
-      return new StepBuilder("reportGeneration", jobRepository)
-              .<BillingData, ReportingData>chunk(100, transactionManager)
+                             ItemWriter<ReportingData> billingDataFileWriter,
+                             StepMetricsListener stepMetricsListener, AdaptiveChunkSizePolicy chunkSizePolicy) {
+      return withMetrics(new StepBuilder("reportGeneration", jobRepository)
+              .<BillingData, ReportingData>chunk(chunkSizePolicy, transactionManager)
+              .listener((StepExecutionListener) chunkSizePolicy)
+              .listener((ChunkListener) chunkSizePolicy)
               .reader(billingDataTableReader)
               .processor(billingDataProcessor)
-              .writer(billingDataFileWriter)
-              .faultTolerant()
-              .retry(PricingException.class)
-              .retryLimit(100)
+              .writer(billingDataFileWriter), stepMetricsListener)
+              .build();
+  }
+  
+  // Variação do step3 em que cada item é precificado em segundo plano (OrderedAsyncItemProcessor) e o relatório é
+  // gravado na ordem de leitura (OrderedAsyncItemWriter). O OrderedAsyncChunkProcessor conta os itens filtrados
+  // no filterCount do step, como no step3.
+  @Bean
+  public Step asyncStep3(JobRepository jobRepository, JdbcTransactionManager transactionManager,
+                             ItemReader<BillingData> billingDataTableReader,
+                             OrderedAsyncItemProcessor<BillingData, ReportingData> asyncBillingDataProcessor,
+                             OrderedAsyncItemWriter<ReportingData> asyncBillingDataFileWriter,
+                             StepMetricsListener stepMetricsListener, AdaptiveChunkSizePolicy chunkSizePolicy) {
+      return withMetrics(new OrderedAsyncChunkProcessor.OrderedAsyncStepBuilder<>(new StepBuilder("asyncReportGeneration", jobRepository)
+              .<BillingData, Future<ReportingData>>chunk(chunkSizePolicy, transactionManager)
+              .listener((StepExecutionListener) chunkSizePolicy)
+              .listener((ChunkListener) chunkSizePolicy)
+              .reader(billingDataTableReader)
+              .processor(asyncBillingDataProcessor)
+              .writer(asyncBillingDataFileWriter)), stepMetricsListener)
+              .build();
+  }
+  
+  // Variação do step3 em que cada chunk é precificado de uma vez (BatchPricingChunkProcessor), com os mesmos
+  // valores de billingTotal do processamento item a item.
+  @Bean
+  public Step batchStep3(JobRepository jobRepository, JdbcTransactionManager transactionManager,
+                             ItemReader<BillingData> billingDataTableReader,
+                             BillingDataProcessor billingDataProcessor,
+                             ItemWriter<ReportingData> billingDataFileWriter,
+                             StepMetricsListener stepMetricsListener, AdaptiveChunkSizePolicy chunkSizePolicy) {
+      return withMetrics(new BatchPricingChunkProcessor.BatchPricingStepBuilder(new StepBuilder("batchReportGeneration", jobRepository)
+              .<BillingData, ReportingData>chunk(chunkSizePolicy, transactionManager)
+              .listener((StepExecutionListener) chunkSizePolicy)
+              .listener((ChunkListener) chunkSizePolicy)
+              .reader(billingDataTableReader)
+              .writer(billingDataFileWriter), billingDataProcessor), stepMetricsListener)
               .build();
   }
   
+  // Geração do relatório com o cálculo do billingTotal e o filtro pelo limite de gastos feitos no banco:
+  // apenas as linhas que entram no relatório são transferidas e mapeadas, sem a etapa de processamento.
+  @Bean
+  public Step sqlStep3(JobRepository jobRepository, JdbcTransactionManager transactionManager,
+                             ItemReader<ReportingData> billingReportTableReader,
+                             ItemWriter<ReportingData> billingDataFileWriter,
+                             StepMetricsListener stepMetricsListener, AdaptiveChunkSizePolicy chunkSizePolicy) {
+      return withMetrics(new StepBuilder("sqlReportGeneration", jobRepository)
+              .<ReportingData, ReportingData>chunk(chunkSizePolicy, transactionManager)
+              .listener((StepExecutionListener) chunkSizePolicy)
+              .listener((ChunkListener) chunkSizePolicy)
+              .reader(billingReportTableReader)
+              .writer(billingDataFileWriter), stepMetricsListener)
+              .build();
+  }
+  
+  // Step gerenciador da geração de relatório particionada: cada reportGenerationWorker lê, precifica e grava
+  // um intervalo de ACCOUNT_ID em seu próprio arquivo parcial.
+  @Bean
+  public Step partitionedStep3(JobRepository jobRepository, Step reportGenerationWorker,
+     AccountRangePartitioner reportGenerationPartitioner, PartitionHandler reportGenerationPartitionHandler) {
+      return new StepBuilder("partitionedReportGeneration", jobRepository)
+              .partitioner(reportGenerationWorker.getName(), reportGenerationPartitioner)
+              .partitionHandler(reportGenerationPartitionHandler)
+              .build();
+  }
+  
+  @Bean
+  public Step reportGenerationWorker(JobRepository jobRepository, JdbcTransactionManager transactionManager,
+                             ItemReader<BillingData> billingDataRangeTableReader,
+                             ItemProcessor<BillingData, ReportingData> billingDataProcessor,
+                             ItemWriter<ReportingData> billingDataPartFileWriter,
+                             StepMetricsListener stepMetricsListener, AdaptiveChunkSizePolicy chunkSizePolicy) {
+      return withMetrics(new StepBuilder("reportGenerationWorker", jobRepository)
+              .<BillingData, ReportingData>chunk(chunkSizePolicy, transactionManager)
+              .listener((StepExecutionListener) chunkSizePolicy)
+              .listener((ChunkListener) chunkSizePolicy)
+              .reader(billingDataRangeTableReader)
+              .processor(billingDataProcessor)
+              .writer(billingDataPartFileWriter), stepMetricsListener)
+              .build();
+  }
+  
+  // Registra o StepMetricsListener em todos os pontos de extensão do step (step, chunk, leitura, processamento e gravação).
+  private static <B extends SimpleStepBuilder<?, ?>> B withMetrics(B builder, StepMetricsListener stepMetricsListener) {
+	  builder.listener((StepExecutionListener) stepMetricsListener);
+	  builder.listener((ChunkListener) stepMetricsListener);
+	  builder.listener((ItemReadListener<Object>) stepMetricsListener);
+	  builder.listener((ItemProcessListener<Object, Object>) stepMetricsListener);
+	  builder.listener((ItemWriteListener<Object>) stepMetricsListener);
+	  return builder;
+  }
+  
+  // Relatório por conta do mês (ver AccountReportTasklet). spring.cellular.accounts.memory-budget limita a memória
+  // usada pelos totais antes de gravá-los em disco.
+  @Bean
+  public Step accountReportStep(JobRepository jobRepository, JdbcTransactionManager transactionManager,
+		  AccountReportTasklet accountReportTasklet, StepMetricsListener stepMetricsListener) {
+	  return new StepBuilder("accountReport", jobRepository)
+			  .tasklet(accountReportTasklet, transactionManager)
+			  .listener((StepExecutionListener) accountReportTasklet)
+			  .listener((StepExecutionListener) stepMetricsListener)
+			  .listener((ChunkListener) stepMetricsListener)
+			  .build();
+  }
+  
+  @Bean
+  @StepScope
+  public AccountReportTasklet accountReportTasklet(ItemStreamReader<BillingData> billingDataTableReader,
+		  PricingService pricingService,
+		  @Value("#{jobParameters['data.year']}") int year,
+		  @Value("#{jobParameters['data.month']}") int month,
+		  @Value("#{jobParameters['output.file']}") String outputFile,
+		  @Value("${spring.cellular.accounts.memory-budget:64MB}") DataSize memoryBudget) {
+	  return new AccountReportTasklet(billingDataTableReader, pricingService, year, month, outputFile,
+			  memoryBudget.toBytes());
+  }
+  
+  // Concatena os arquivos parciais em output.file, na ordem das partições.
+  @Bean
+  public Step reportMergeStep(JobRepository jobRepository, JdbcTransactionManager transactionManager) {
+	  return new StepBuilder("reportMerge", jobRepository)
+			  .tasklet(new ReportMergeTasklet(), transactionManager)
+			  .build();
+  }
+  
   @Bean
   public JobParametersValidator parametersValidator() {
 	  return new ParametersValidator();
@@ -103,67 +485,295 @@ public class BillingJobConfiguration {
   // Permite que o bean seja criado uma vez por execução de Step e que seja isolado para essa execução
   @StepScope
   // Por meio de SpEL (Spring Expression Language) é possivel ler o parametro input.file em tempo de execução
-  public FlatFileItemReader<BillingData> billingDataFileReader(@Value("#{jobParameters['input.file']}") String inputFile) {
+  // Com ingestion.reader=mapped o arquivo é lido pelo MappedBillingDataItemReader, que mapeia o arquivo em memória.
+  // No modo delta (ingestion.delta=true), a ingestão lê o arquivo gerado pelo step1 (ingestion.file) no lugar de input.file.
+  public ItemStreamReader<BillingData> billingDataFileReader(
+		  @Value("#{jobExecutionContext['ingestion.file'] ?: jobParameters['input.file']}") String inputFile,
+		  @Value("#{jobParameters['ingestion.reader'] ?: 'flat'}") String reader) {
+	if ("mapped".equalsIgnoreCase(reader)) {
+		MappedBillingDataItemReader mappedReader = new MappedBillingDataItemReader(inputFile);
+		mappedReader.setName("billingDataFileReader");
+		return mappedReader;
+	}
 	// A principal função do FlatFileItemReader é ler dados linha a linha de um arquivo e convertê-los em objetos do tipo desejado.
-      return new FlatFileItemReaderBuilder<BillingData>()
+	// O arquivo é dividido em campos individuais pelo delimitador "," (ver billingDataFileReaderBuilder).
+	// Arquivos .gz e .zst são descompactados em fluxo (CompressedFileResource).
+      return billingDataFileReaderBuilder(CompressedFileResource.of(inputFile))
               .name("billingDataFileReader")
-              // Define a origem do arquivo que será lido.
-              .resource(new FileSystemResource(inputFile))
-              // Utilizado para dividir cada linha em campos individuais.
+              .build();
+  }
+  
+  @Bean
+  @StepScope
+  public LineRangePartitioner fileIngestionPartitioner(
+		  @Value("#{jobExecutionContext['ingestion.file'] ?: jobParameters['input.file']}") String inputFile,
+		  @Value("#{jobParameters['ingestion.partitions'] ?: '4'}") int partitions) {
+	  return new LineRangePartitioner(inputFile, partitions);
+  }
+  
+  @Bean
+  @StepScope
+  // O número de threads é limitado por ingestion.threads; por padrão, uma thread por partição.
+  public TaskExecutorPartitionHandler fileIngestionPartitionHandler(Step fileIngestionWorker,
+		  @Value("#{jobParameters['ingestion.partitions'] ?: '4'}") int partitions,
+		  @Value("#{jobParameters['ingestion.threads'] ?: '0'}") int threads) {
+	  SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor("fileIngestion-");
+	  taskExecutor.setConcurrencyLimit(threads > 0 ? threads : partitions);
+	  TaskExecutorPartitionHandler partitionHandler = new TaskExecutorPartitionHandler();
+	  partitionHandler.setStep(fileIngestionWorker);
+	  partitionHandler.setTaskExecutor(taskExecutor);
+	  partitionHandler.setGridSize(partitions);
+	  return partitionHandler;
+  }
+  
+  @Bean
+  @StepScope
+  // Lê apenas o intervalo de bytes atribuído à partição. Os números de linha dos erros de parsing são
+  // deslocados por start.line para continuarem globais no arquivo de skips.
+  public ItemStreamReader<BillingData> billingDataRangeReader(
+		  @Value("#{jobExecutionContext['ingestion.file'] ?: jobParameters['input.file']}") String inputFile,
+		  @Value("#{jobParameters['ingestion.reader'] ?: 'flat'}") String reader,
+		  @Value("#{stepExecutionContext['start.offset']}") long startOffset,
+		  @Value("#{stepExecutionContext['end.offset']}") long endOffset,
+		  @Value("#{stepExecutionContext['start.line']}") long startLine) {
+	  if ("mapped".equalsIgnoreCase(reader)) {
+		  MappedBillingDataItemReader mappedReader = new MappedBillingDataItemReader(inputFile, startOffset, endOffset, startLine);
+		  mappedReader.setName("billingDataRangeReader");
+		  return mappedReader;
+	  }
+	  FlatFileItemReader<BillingData> delegate = billingDataFileReaderBuilder(new ByteRangeResource(inputFile, startOffset, endOffset))
+			  .name("billingDataRangeReader")
+			  .build();
+	  return new LineRangeItemReader<>(delegate, startLine);
+  }
+  
+  private FlatFileItemReaderBuilder<BillingData> billingDataFileReaderBuilder(Resource resource) {
+	  return new FlatFileItemReaderBuilder<BillingData>()
+              .resource(resource)
               .delimited()
               .delimiter(",")
               .names("dataYear", "dataMonth", "accountId", "phoneNumber", "dataUsage", "callDuration", "smsCount")
-              .targetType(BillingData.class)
-              .build();
+              .targetType(BillingData.class);
   }
   
   @Bean
+  @StepScope
+  // ingestion.writer=copy grava os chunks com o COPY do PostgreSQL (BillingDataCopyItemWriter);
+  // por padrão (ingestion.writer=jdbc) é usado o JdbcBatchItemWriter.
+  public ItemWriter<BillingData> billingDataTableWriter(DataSource dataSource,
+		  @Value("#{jobParameters['ingestion.writer'] ?: 'jdbc'}") String writer) {
+	  return createBillingDataTableWriter(dataSource, writer);
+  }
+  
+  private ItemWriter<BillingData> createBillingDataTableWriter(DataSource dataSource, String writer) {
+	  if ("copy".equalsIgnoreCase(writer)) {
+		  return new BillingDataCopyItemWriter(dataSource);
+	  }
+	  return billingDataJdbcWriter(dataSource);
+  }
+  
+  @Bean
+  @StepScope
+  // Arquivo colunar do mês em staging/, relido pelo billingDataTableReader com report.reader=columnar.
+  public ColumnarBillingDataItemWriter billingDataColumnarWriter(
+		  @Value("#{jobParameters['ingestion.columnar'] ?: 'false'}") boolean enabled,
+		  @Value("#{jobParameters['data.year']}") int year,
+		  @Value("#{jobParameters['data.month']}") int month,
+		  @Value("#{jobExecutionContext['input.hash']}") String inputHash) {
+	  return new ColumnarBillingDataItemWriter(enabled, ColumnarBillingDataFormat.stagingFile(year, month).toString(),
+			  year, month, inputHash);
+  }
+  
+  @Bean
+  @StepScope
+  // O writer é criado diretamente (e não pelo bean billingDataTableWriter), pois é usado fora da thread do step.
+  public BillingDataTableTee billingDataTableTee(DataSource dataSource, JdbcTransactionManager transactionManager,
+		  @Value("#{jobParameters['streaming.tee'] ?: 'false'}") boolean enabled,
+		  @Value("#{jobParameters['ingestion.writer'] ?: 'jdbc'}") String writer) {
+	  return new BillingDataTableTee(enabled ? createBillingDataTableWriter(dataSource, writer) : null, transactionManager);
+  }
+  
   // Este writer de itens foi projetado para gravar itens em um banco de dados usando a API JDBC.
-  public JdbcBatchItemWriter<BillingData> billingDataTableWriter(DataSource dataSource) {
-      String sql = "insert into BILLING_DATA values (:dataYear, :dataMonth, :accountId, :phoneNumber, :dataUsage, :callDuration, :smsCount)";
-      return new JdbcBatchItemWriterBuilder<BillingData>()    		  
+  // Uma linha que já existe com os mesmos valores não é alterada pelo MERGE (0 linhas afetadas), por isso
+  // a verificação de linhas afetadas é desativada.
+  private JdbcBatchItemWriter<BillingData> billingDataJdbcWriter(DataSource dataSource) {
+      JdbcBatchItemWriter<BillingData> writer = new JdbcBatchItemWriterBuilder<BillingData>()    		  
               .dataSource(dataSource)
-              .sql(sql)
+              .sql(BILLING_DATA_UPSERT_SQL)
               .beanMapped()
+              .assertUpdates(false)
               .build();
+      writer.afterPropertiesSet();
+      return writer;
   }
   
   @Bean
   @StepScope
-  public JdbcCursorItemReader<BillingData> billingDataTableReader(DataSource dataSource,
-		  @Value("#{jobParameters['data.year']}") String year,
-		  @Value("#{jobParameters['data.month']}") String month) {
-      String sql = String.format("select * from BILLING_DATA where DATA_YEAR = %s and DATA_MONTH = %s", year, month);
+  // Com report.reader=columnar os registros do mês são lidos do arquivo colunar gravado na ingestão
+  // (ColumnarBillingDataItemReader), sem acesso ao banco de dados.
+  public ItemStreamReader<BillingData> billingDataTableReader(DataSource dataSource,
+		  @Value("#{jobParameters['data.year']}") int year,
+		  @Value("#{jobParameters['data.month']}") int month,
+		  @Value("#{jobParameters['report.reader'] ?: 'table'}") String reader,
+		  @Value("#{jobExecutionContext['input.hash']}") String inputHash) {
+	  if ("columnar".equalsIgnoreCase(reader)) {
+		  ColumnarBillingDataItemReader columnarReader = new ColumnarBillingDataItemReader(
+				  ColumnarBillingDataFormat.stagingFile(year, month).toString(), year, month, inputHash);
+		  columnarReader.setName("billingDataTableReader");
+		  return columnarReader;
+	  }
+      // A ordem por conta e telefone (a da chave BILLING_DATA_KEY) torna o relatório determinístico e igual ao
+      // relatório particionado, que concatena as partições lidas na mesma ordem (billingDataRangeTableReader).
+      String sql = "select * from BILLING_DATA where DATA_YEAR = ? and DATA_MONTH = ? order by ACCOUNT_ID, PHONE_NUMBER";
       // A classe JdbcCursorItemReaderBuilder permite ler dados de um banco de dados relacional por meio de consultas SQL, 
       // utilizando um cursor JDBC para recuperar os registros linha por linha.
       return new JdbcCursorItemReaderBuilder<BillingData>()
               .name("billingDataTableReader")
               .dataSource(dataSource)
               .sql(sql)
+              // Os parâmetros são vinculados ao PreparedStatement em vez de concatenados na consulta.
+              .queryArguments(year, month)
               // A classe DataClassRowMapper mapeia automaticamente os resultados de consultas SQL para objetos de domínio imutáveis, 
               // como records ou classes com construtores parametrizados.
               .rowMapper(new DataClassRowMapper<>(BillingData.class))
               .build();
   }
   
+  @Bean
+  @StepScope
+  // Calcula o billingTotal e aplica o limite de gastos na própria consulta, com os preços do PricingSnapshot vinculados
+  // como parâmetros. Os cálculos são feitos em REAL para reproduzir a aritmética em float do BillingDataProcessor.
+  public JdbcCursorItemReader<ReportingData> billingReportTableReader(DataSource dataSource, PricingService pricingService,
+		  @Value("#{jobParameters['data.year']}") int year,
+		  @Value("#{jobParameters['data.month']}") int month,
+		  @Value("${spring.cellular.spending.threshold:150}") float spendingThreshold) {
+      String sql = """
+              select DATA_YEAR, DATA_MONTH, ACCOUNT_ID, PHONE_NUMBER, DATA_USAGE, CALL_DURATION, SMS_COUNT, BILLING_TOTAL from (
+                  select B.*, cast(DATA_USAGE as real) * cast(? as real)
+                            + cast(CALL_DURATION as real) * cast(? as real)
+                            + cast(SMS_COUNT as real) * cast(? as real) as BILLING_TOTAL
+                  from BILLING_DATA B where DATA_YEAR = ? and DATA_MONTH = ?
+              ) R where BILLING_TOTAL >= cast(? as real)""";
+      PricingSnapshot pricing = pricingService.refresh();
+      return new JdbcCursorItemReaderBuilder<ReportingData>()
+              .name("billingReportTableReader")
+              .dataSource(dataSource)
+              .sql(sql)
+              .queryArguments(pricing.dataPricing(), pricing.callPricing(), pricing.smsPricing(), year, month, spendingThreshold)
+              .rowMapper(new ReportingDataRowMapper())
+              .build();
+  }
+  
+  @Bean
+  @StepScope
+  public AccountRangePartitioner reportGenerationPartitioner(DataSource dataSource,
+		  @Value("#{jobParameters['data.year']}") int year,
+		  @Value("#{jobParameters['data.month']}") int month,
+		  @Value("#{jobParameters['output.file']}") String outputFile,
+		  @Value("#{jobParameters['report.partitions'] ?: '4'}") int partitions) {
+	  return new AccountRangePartitioner(dataSource, year, month, outputFile, partitions);
+  }
+  
+  @Bean
+  @StepScope
+  public TaskExecutorPartitionHandler reportGenerationPartitionHandler(Step reportGenerationWorker,
+		  @Value("#{jobParameters['report.partitions'] ?: '4'}") int partitions,
+		  @Value("#{jobParameters['report.threads'] ?: '0'}") int threads) {
+	  SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor("reportGeneration-");
+	  taskExecutor.setConcurrencyLimit(threads > 0 ? threads : partitions);
+	  TaskExecutorPartitionHandler partitionHandler = new TaskExecutorPartitionHandler();
+	  partitionHandler.setStep(reportGenerationWorker);
+	  partitionHandler.setTaskExecutor(taskExecutor);
+	  partitionHandler.setGridSize(partitions);
+	  return partitionHandler;
+  }
+  
+  @Bean
+  @StepScope
+  // Lê apenas as contas da partição, ordenadas por ACCOUNT_ID, para que a concatenação dos arquivos parciais
+  // produza o relatório na mesma ordem de contas da execução sequencial.
+  public JdbcCursorItemReader<BillingData> billingDataRangeTableReader(DataSource dataSource,
+		  @Value("#{jobParameters['data.year']}") int year,
+		  @Value("#{jobParameters['data.month']}") int month,
+		  @Value("#{stepExecutionContext['minAccountId']}") int minAccountId,
+		  @Value("#{stepExecutionContext['maxAccountId']}") int maxAccountId) {
+      String sql = "select * from BILLING_DATA where DATA_YEAR = ? and DATA_MONTH = ? and ACCOUNT_ID between ? and ? order by ACCOUNT_ID, PHONE_NUMBER";
+      return new JdbcCursorItemReaderBuilder<BillingData>()
+              .name("billingDataRangeTableReader")
+              .dataSource(dataSource)
+              .sql(sql)
+              .queryArguments(year, month, minAccountId, maxAccountId)
+              .rowMapper(new DataClassRowMapper<>(BillingData.class))
+              .build();
+  }
+  
   @Bean
   public BillingDataProcessor billingDataProcessor(PricingService pricingService) {
       return new BillingDataProcessor(pricingService);
   }
   
+  // report.async.max-in-flight limita os itens em processamento; report.async.threads define o tamanho do pool
+  // quando virtual threads não estão disponíveis (Java 17). Uma PricingException repete apenas o item que falhou;
+  // as falhas são contadas em billing.pricing.retries, como no modo síncrono.
   @Bean
   @StepScope
-  public FlatFileItemWriter<ReportingData> billingDataFileWriter(@Value("#{jobParameters['output.file']}") String outputFile) {
-          return new FlatFileItemWriterBuilder<ReportingData>()
-        	   // arquivo de destino
-              .resource(new FileSystemResource(outputFile))
-              .name("billingDataFileWriter")
-              .delimited()
-              .delimiter(",")
-              .names("billingData.dataYear", "billingData.dataMonth", "billingData.accountId", "billingData.phoneNumber", "billingData.dataUsage", "billingData.callDuration", "billingData.smsCount", "billingTotal")
+  public OrderedAsyncItemProcessor<BillingData, ReportingData> asyncBillingDataProcessor(
+		  BillingDataProcessor billingDataProcessor, PricingService pricingService,
+		  @Value("#{jobParameters['report.async.threads'] ?: '16'}") int threads,
+		  @Value("#{jobParameters['report.async.max-in-flight'] ?: '256'}") int maxInFlight,
+		  @Value("${spring.cellular.pricing.item.max-attempts:3}") int maxAttempts) {
+	  RetryTemplate retryTemplate = RetryTemplate.builder()
+			  .maxAttempts(maxAttempts)
+			  .exponentialBackoff(10, 2, 1000)
+			  .retryOn(PricingException.class)
+			  .withListener(pricingService.retryListener())
+			  .build();
+	  return new OrderedAsyncItemProcessor<>(billingDataProcessor, retryTemplate, threads, maxInFlight);
+  }
+  
+  @Bean
+  @StepScope
+  public OrderedAsyncItemWriter<ReportingData> asyncBillingDataFileWriter(
+		  ItemStreamWriter<ReportingData> billingDataFileWriter) {
+	  return new OrderedAsyncItemWriter<>(billingDataFileWriter);
+  }
+  
+  @Bean
+  @StepScope
+  // Com output.file terminado em .gz ou .zst, o relatório é gravado compactado (CompressedFileItemWriter).
+  public ItemStreamWriter<ReportingData> billingDataFileWriter(@Value("#{jobParameters['output.file']}") String outputFile) {
+	  	  // arquivo de destino
+          return billingDataFileWriter(outputFile, "billingDataFileWriter");
+  }
+  
+  @Bean
+  @StepScope
+  public ItemStreamWriter<ReportingData> billingDataPartFileWriter(@Value("#{stepExecutionContext['part.file']}") String partFile) {
+          return billingDataFileWriter(partFile, "billingDataPartFileWriter");
+  }
+  
+  private ItemStreamWriter<ReportingData> billingDataFileWriter(String file, String name) {
+	  if (FileCompression.of(file) != FileCompression.NONE) {
+		  CompressedFileItemWriter<ReportingData> writer = new CompressedFileItemWriter<>(file, reportingDataLineAggregator());
+		  writer.setName(name);
+		  return writer;
+	  }
+	  return new FlatFileItemWriterBuilder<ReportingData>()
+              .name(name)
+              .resource(new FileSystemResource(file))
+              .lineAggregator(reportingDataLineAggregator())
               .build();
   }
   
+  private DelimitedLineAggregator<ReportingData> reportingDataLineAggregator() {
+	  BeanWrapperFieldExtractor<ReportingData> fieldExtractor = new BeanWrapperFieldExtractor<>();
+	  fieldExtractor.setNames(new String[] { "billingData.dataYear", "billingData.dataMonth", "billingData.accountId", "billingData.phoneNumber", "billingData.dataUsage", "billingData.callDuration", "billingData.smsCount", "billingTotal" });
+	  DelimitedLineAggregator<ReportingData> lineAggregator = new DelimitedLineAggregator<>();
+	  lineAggregator.setDelimiter(",");
+	  lineAggregator.setFieldExtractor(fieldExtractor);
+	  return lineAggregator;
+  }
+  
   @Bean
   @StepScope
   public BillingDataSkipListener skipListener(@Value("#{jobParameters['skip.file']}") String skippedFile) {
@@ -171,8 +781,74 @@ public class BillingJobConfiguration {
   }
   
   @Bean
-  public PricingService pricingService() {
-      return new PricingService();
+  public PricingService pricingService(MeterRegistry meterRegistry) {
+      return new PricingService(meterRegistry);
+  }
+  
+  // Limites e duração alvo da transação usados no ajuste do tamanho dos chunks; com min-size igual a max-size o
+  // tamanho fica fixo.
+  @Bean
+  @StepScope
+  public AdaptiveChunkSizePolicy chunkSizePolicy(JobExplorer jobExplorer,
+		  @Value("${spring.cellular.chunk.initial-size:100}") int initialSize,
+		  @Value("${spring.cellular.chunk.min-size:10}") int minSize,
+		  @Value("${spring.cellular.chunk.max-size:5000}") int maxSize,
+		  @Value("${spring.cellular.chunk.target-duration:500ms}") Duration targetDuration) {
+	  return new AdaptiveChunkSizePolicy(jobExplorer, initialSize, minSize, maxSize, targetDuration);
+  }
+  
+  @Bean
+  @StepScope
+  public StepMetricsListener stepMetricsListener(MeterRegistry meterRegistry) {
+	  return new StepMetricsListener(meterRegistry);
+  }
+  
+  // As métricas são publicadas em dois registries: o LoggingMeterRegistry registra no log, a cada
+  // spring.cellular.metrics.step, as taxas por segundo e as latências do intervalo; o metricsSnapshotRegistry
+  // acumula os valores de toda a execução para o arquivo metrics.file.
+  @Bean
+  @Primary
+  public CompositeMeterRegistry meterRegistry(LoggingMeterRegistry loggingMeterRegistry,
+		  SimpleMeterRegistry metricsSnapshotRegistry) {
+	  return new CompositeMeterRegistry(Clock.SYSTEM, List.of(loggingMeterRegistry, metricsSnapshotRegistry));
+  }
+  
+  @Bean
+  public LoggingMeterRegistry loggingMeterRegistry(@Value("${spring.cellular.metrics.step:30s}") Duration step) {
+	  LoggingRegistryConfig config = new LoggingRegistryConfig() {
+		  @Override
+		  public String get(String key) {
+			  return null;
+		  }
+		  
+		  @Override
+		  public Duration step() {
+			  return step;
+		  }
+	  };
+	  return new LoggingMeterRegistry(config, Clock.SYSTEM);
+  }
+  
+  // Os percentis do Micrometer são calculados em uma janela de tempo; aqui a janela cobre a execução inteira.
+  @Bean
+  public SimpleMeterRegistry metricsSnapshotRegistry() {
+	  SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	  registry.config().meterFilter(new MeterFilter() {
+		  @Override
+		  public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+			  return DistributionStatisticConfig.builder()
+					  .expiry(Duration.ofDays(1))
+					  .bufferLength(1)
+					  .build()
+					  .merge(config);
+		  }
+	  });
+	  return registry;
+  }
+  
+  @Bean
+  public MetricsFileWriter metricsFileWriter(SimpleMeterRegistry metricsSnapshotRegistry) {
+	  return new MetricsFileWriter(metricsSnapshotRegistry);
   }
 
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+package com.gustavo.billingjob.config;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.springframework.core.io.FileSystemResource;
+
+// Expõe apenas o intervalo [start, end) de um arquivo, permitindo que o FlatFileItemReader
+// leia uma partição como se fosse um arquivo completo.
+public class ByteRangeResource extends FileSystemResource {
+
+	private final long start;
+
+	private final long end;
+
+	public ByteRangeResource(String path, long start, long end) {
+		super(path);
+		this.start = start;
+		this.end = end;
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException {
+		FileChannel channel = FileChannel.open(getFile().toPath(), StandardOpenOption.READ);
+		channel.position(this.start);
+		return new BoundedInputStream(Channels.newInputStream(channel), this.end - this.start);
+	}
+
+	@Override
+	public long contentLength() {
+		return this.end - this.start;
+	}
+
+	@Override
+	public String getDescription() {
+		return "byte range [" + this.start + ", " + this.end + ") of " + super.getDescription();
+	}
+
+	// Interrompe a leitura ao atingir o fim do intervalo.
+	private static class BoundedInputStream extends FilterInputStream {
+
+		private long remaining;
+
+		BoundedInputStream(InputStream in, long length) {
+			super(in);
+			this.remaining = length;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (this.remaining <= 0) {
+				return -1;
+			}
+			int b = super.read();
+			if (b != -1) {
+				this.remaining--;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (this.remaining <= 0) {
+				return -1;
+			}
+			int n = super.read(b, off, (int) Math.min(len, this.remaining));
+			if (n > 0) {
+				this.remaining -= n;
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(Math.min(n, this.remaining));
+			this.remaining -= skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (int) Math.min(super.available(), this.remaining);
+		}
+
+	}
+
+}
@@ -0,0 +1,107 @@
+package com.gustavo.billingjob.config;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// Formato do arquivo colunar de um mês em staging/ (ver ColumnarBillingDataItemWriter e ColumnarBillingDataItemReader).
+// Todos os valores são little-endian:
+// - cabeçalho: MAGIC, VERSION, ano, mês, tamanho e bytes (UTF-8) do SHA-256 do arquivo de entrada;
+// - blocos, um por chunk da ingestão: tamanho do bloco (sem contar este int), quantidade de linhas, quantidade de
+//   telefones novos no dicionário, os telefones novos (tamanho em short e bytes UTF-8) e as colunas accountId,
+//   código do telefone, dataUsage (float), callDuration e smsCount, cada uma com um valor de 4 bytes por linha;
+// - as chaves repetidas: para cada chave (accountId e código do telefone, ver key) que aparece em mais de uma linha,
+//   a chave e o número da sua última linha (long), seguidos da quantidade de chaves repetidas (int);
+// - TRAILER; as chaves repetidas e o TRAILER são gravados apenas quando a ingestão termina com sucesso.
+// O código de um telefone é a sua posição no dicionário, que é a concatenação dos telefones novos de cada bloco.
+// As linhas são numeradas a partir de 0, na ordem em que aparecem nos blocos. Assim como o MERGE na tabela
+// BILLING_DATA, a última linha de cada chave prevalece: as linhas anteriores com a mesma chave são ignoradas na leitura.
+final class ColumnarBillingDataFormat {
+
+	static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	static final int MAGIC = 0x4C4F4342;
+
+	static final int VERSION = 2;
+
+	static final int TRAILER = 0x444E4542;
+
+	static final int COLUMN_COUNT = 5;
+
+	private ColumnarBillingDataFormat() {
+	}
+
+	record Header(int magic, int version, int year, int month, String inputHash, int length) {
+	}
+
+	static Path stagingFile(int year, int month) {
+		return Paths.get("staging", String.format("billing-data-%d-%02d.col", year, month));
+	}
+
+	// Chave de uma linha no arquivo do mês, equivalente à chave (ACCOUNT_ID, PHONE_NUMBER) da tabela.
+	static long key(int accountId, int phoneCode) {
+		return ((long) accountId << 32) | Integer.toUnsignedLong(phoneCode);
+	}
+
+	static ByteBuffer header(int year, int month, String inputHash) {
+		byte[] hash = inputHash.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer header = ByteBuffer.allocate(5 * Integer.BYTES + hash.length).order(BYTE_ORDER);
+		header.putInt(MAGIC).putInt(VERSION).putInt(year).putInt(month).putInt(hash.length).put(hash);
+		return header.flip();
+	}
+
+	// Indica se o arquivo existe, foi gerado a partir do arquivo de entrada com o SHA-256 inputHash e está completo.
+	static boolean isComplete(Path file, String inputHash) throws IOException {
+		if (!Files.isRegularFile(file)) {
+			return false;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size(), 4096)).order(BYTE_ORDER);
+			channel.read(buffer, 0);
+			Header header = readHeader(buffer.flip());
+			if (header == null || header.magic() != MAGIC || header.version() != VERSION
+					|| !header.inputHash().equals(inputHash) || channel.size() < header.length() + Integer.BYTES) {
+				return false;
+			}
+			ByteBuffer trailer = ByteBuffer.allocate(Integer.BYTES).order(BYTE_ORDER);
+			channel.read(trailer, channel.size() - Integer.BYTES);
+			return trailer.flip().remaining() == Integer.BYTES && trailer.getInt() == TRAILER;
+		}
+	}
+
+	// Lê o cabeçalho a partir da posição atual do buffer; retorna null se o buffer não contém um cabeçalho completo.
+	static Header readHeader(ByteBuffer buffer) {
+		if (buffer.remaining() < 5 * Integer.BYTES) {
+			return null;
+		}
+		int magic = buffer.getInt();
+		int version = buffer.getInt();
+		int year = buffer.getInt();
+		int month = buffer.getInt();
+		int hashLength = buffer.getInt();
+		if (hashLength < 0 || buffer.remaining() < hashLength) {
+			return null;
+		}
+		byte[] hash = new byte[hashLength];
+		buffer.get(hash);
+		return new Header(magic, version, year, month, new String(hash, StandardCharsets.UTF_8), 5 * Integer.BYTES + hashLength);
+	}
+
+	// Acrescenta ao dicionário os telefones novos de um bloco; o buffer deve estar posicionado após a quantidade
+	// de telefones novos e fica posicionado no início das colunas.
+	static void readDictionary(ByteBuffer block, int entries, List<String> dictionary) {
+		for (int i = 0; i < entries; i++) {
+			byte[] phone = new byte[Short.toUnsignedInt(block.getShort())];
+			block.get(phone);
+			dictionary.add(new String(phone, StandardCharsets.UTF_8));
+		}
+	}
+
+}
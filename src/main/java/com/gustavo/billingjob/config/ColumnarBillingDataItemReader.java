@@ -0,0 +1,261 @@
+package com.gustavo.billingjob.config;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+
+// Leitor do arquivo colunar gravado pelo ColumnarBillingDataItemWriter (report.reader=columnar): o relatório do mês
+// é gerado por uma leitura sequencial do arquivo mapeado em memória, sem acesso ao banco de dados.
+// As colunas de cada bloco são copiadas de uma vez para arrays primitivos, e o telefone de cada linha é obtido do
+// dicionário, sem criar uma String por linha.
+// O arquivo só é aceito se estiver completo (TRAILER) e se tiver sido gerado a partir do mesmo arquivo de entrada
+// (SHA-256 calculado pelo step1); caso contrário, o step falha e a ingestão deve ser executada com
+// ingestion.columnar=true.
+// Das linhas com a mesma chave (accountId e telefone), apenas a última é retornada, como na tabela.
+// O bloco e a linha corrente são salvos no ExecutionContext, permitindo o restart a partir do último chunk confirmado.
+public class ColumnarBillingDataItemReader implements ItemStreamReader<BillingData> {
+
+	private static final String OFFSET_KEY = "offset";
+	private static final String ROW_KEY = "row";
+
+	// Tamanho mínimo da janela mapeada; arquivos maiores são percorridos em várias janelas.
+	private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+	private final Path inputFile;
+
+	private final int year;
+
+	private final int month;
+
+	private final String inputHash;
+
+	private final List<String> dictionary = new ArrayList<>();
+
+	// Última linha de cada chave repetida, lida do fim do arquivo.
+	private final Map<Long, Long> lastRows = new HashMap<>();
+
+	private FileChannel channel;
+
+	private MappedByteBuffer window;
+
+	private long windowStart;
+
+	private long end;
+
+	private long blockOffset;
+
+	private long nextBlockOffset;
+
+	// Número da primeira linha do bloco corrente e do próximo bloco.
+	private long blockFirstRow;
+
+	private long nextBlockFirstRow;
+
+	private int rows;
+
+	private int row;
+
+	private int[] accountIds = new int[0];
+
+	private int[] phoneCodes = new int[0];
+
+	private float[] dataUsage = new float[0];
+
+	private int[] callDuration = new int[0];
+
+	private int[] smsCount = new int[0];
+
+	// Prefixo das chaves no ExecutionContext; deve ser único entre os streams do step.
+	private String name = "columnarBillingDataItemReader";
+
+	public ColumnarBillingDataItemReader(String inputFile, int year, int month, String inputHash) {
+		this.inputFile = Path.of(inputFile);
+		this.year = year;
+		this.month = month;
+		this.inputHash = inputHash;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public void open(ExecutionContext executionContext) throws ItemStreamException {
+		try {
+			this.channel = FileChannel.open(this.inputFile, StandardOpenOption.READ);
+			long size = this.channel.size();
+			map(0, 0);
+			ColumnarBillingDataFormat.Header header = ColumnarBillingDataFormat.readHeader(this.window.duplicate()
+				.order(ColumnarBillingDataFormat.BYTE_ORDER));
+			if (header == null || header.magic() != ColumnarBillingDataFormat.MAGIC) {
+				throw new ItemStreamException("Not a columnar billing data file: " + this.inputFile);
+			} else if (header.version() != ColumnarBillingDataFormat.VERSION) {
+				throw new ItemStreamException("Unsupported columnar file version " + header.version() + ": " + this.inputFile);
+			} else if (header.year() != this.year || header.month() != this.month) {
+				throw new ItemStreamException("The columnar file " + this.inputFile + " is for " + header.year() + "-"
+						+ header.month() + ", not " + this.year + "-" + this.month);
+			} else if (this.inputHash != null && !this.inputHash.equals(header.inputHash())) {
+				throw new ItemStreamException("The columnar file " + this.inputFile
+						+ " was not written from the current input file; run the ingestion with ingestion.columnar=true");
+			}
+			this.end = size - Integer.BYTES;
+			if (this.end < header.length() || intAt(this.end) != ColumnarBillingDataFormat.TRAILER) {
+				throw new ItemStreamException("The columnar file " + this.inputFile
+						+ " is incomplete; run the ingestion with ingestion.columnar=true");
+			}
+			loadLastRows(header.length());
+
+			this.dictionary.clear();
+			this.rows = 0;
+			this.row = 0;
+			this.nextBlockOffset = header.length();
+			this.blockOffset = header.length();
+			this.nextBlockFirstRow = 0;
+			if (executionContext.containsKey(getExecutionContextKey(OFFSET_KEY))) {
+				long offset = executionContext.getLong(getExecutionContextKey(OFFSET_KEY));
+				// O dicionário é a concatenação dos telefones novos de todos os blocos anteriores.
+				while (this.nextBlockOffset < offset) {
+					loadBlock(this.nextBlockOffset, false);
+				}
+				if (offset < this.end) {
+					loadBlock(offset, true);
+					this.row = executionContext.getInt(getExecutionContextKey(ROW_KEY));
+				}
+			}
+		} catch (IOException e) {
+			throw new ItemStreamException("Unable to open input file " + this.inputFile, e);
+		}
+	}
+
+	@Override
+	public void update(ExecutionContext executionContext) throws ItemStreamException {
+		executionContext.putLong(getExecutionContextKey(OFFSET_KEY), this.blockOffset);
+		executionContext.putInt(getExecutionContextKey(ROW_KEY), this.row);
+	}
+
+	@Override
+	public void close() throws ItemStreamException {
+		this.window = null;
+		if (this.channel != null) {
+			try {
+				this.channel.close();
+			} catch (IOException e) {
+				throw new ItemStreamException("Unable to close input file " + this.inputFile, e);
+			} finally {
+				this.channel = null;
+			}
+		}
+	}
+
+	private String getExecutionContextKey(String key) {
+		return this.name + "." + key;
+	}
+
+	@Override
+	public BillingData read() throws Exception {
+		int i;
+		do {
+			while (this.row == this.rows) {
+				if (this.nextBlockOffset >= this.end) {
+					return null;
+				}
+				loadBlock(this.nextBlockOffset, true);
+			}
+			i = this.row++;
+		} while (isReplaced(i));
+		return new BillingData(this.year, this.month, this.accountIds[i], this.dictionary.get(this.phoneCodes[i]),
+				this.dataUsage[i], this.callDuration[i], this.smsCount[i]);
+	}
+
+	// Indica se a linha i do bloco corrente tem uma chave repetida em uma linha posterior.
+	private boolean isReplaced(int i) {
+		if (this.lastRows.isEmpty()) {
+			return false;
+		}
+		Long lastRow = this.lastRows.get(ColumnarBillingDataFormat.key(this.accountIds[i], this.phoneCodes[i]));
+		return lastRow != null && lastRow != this.blockFirstRow + i;
+	}
+
+	// Lê as chaves repetidas gravadas antes do TRAILER; os blocos terminam onde elas começam.
+	private void loadLastRows(long blocksStart) throws IOException {
+		this.lastRows.clear();
+		int count = this.end >= blocksStart + Integer.BYTES ? intAt(this.end - Integer.BYTES) : -1;
+		long start = this.end - Integer.BYTES - (long) count * 2 * Long.BYTES;
+		if (count < 0 || start < blocksStart) {
+			throw new ItemStreamException("Corrupted trailer in " + this.inputFile);
+		}
+		for (long offset = start; offset < this.end - Integer.BYTES; offset += 2 * Long.BYTES) {
+			this.lastRows.put(longAt(offset), longAt(offset + Long.BYTES));
+		}
+		this.end = start;
+	}
+
+	// Lê o bloco iniciado em offset: acrescenta os telefones novos ao dicionário e, se columns for true, copia as
+	// colunas para os arrays do bloco corrente.
+	private void loadBlock(long offset, boolean columns) throws IOException {
+		int blockLength = intAt(offset);
+		if (blockLength < 2 * Integer.BYTES || offset + Integer.BYTES + blockLength > this.end) {
+			throw new ItemStreamException("Corrupted block at offset " + offset + " in " + this.inputFile);
+		}
+		map(offset, Integer.BYTES + blockLength);
+		ByteBuffer block = this.window.slice((int) (offset - this.windowStart) + Integer.BYTES, blockLength)
+			.order(ColumnarBillingDataFormat.BYTE_ORDER);
+		int rowCount = block.getInt();
+		ColumnarBillingDataFormat.readDictionary(block, block.getInt(), this.dictionary);
+		this.nextBlockOffset = offset + Integer.BYTES + blockLength;
+		this.blockFirstRow = this.nextBlockFirstRow;
+		this.nextBlockFirstRow += rowCount;
+		if (!columns) {
+			return;
+		}
+		if (this.accountIds.length < rowCount) {
+			this.accountIds = new int[rowCount];
+			this.phoneCodes = new int[rowCount];
+			this.dataUsage = new float[rowCount];
+			this.callDuration = new int[rowCount];
+			this.smsCount = new int[rowCount];
+		}
+		block.asIntBuffer().get(this.accountIds, 0, rowCount).get(this.phoneCodes, 0, rowCount);
+		block.position(block.position() + 2 * rowCount * Integer.BYTES);
+		block.asFloatBuffer().get(this.dataUsage, 0, rowCount);
+		block.position(block.position() + rowCount * Float.BYTES);
+		block.asIntBuffer().get(this.callDuration, 0, rowCount).get(this.smsCount, 0, rowCount);
+		this.blockOffset = offset;
+		this.rows = rowCount;
+		this.row = 0;
+	}
+
+	private int intAt(long offset) throws IOException {
+		map(offset, Integer.BYTES);
+		return this.window.getInt((int) (offset - this.windowStart));
+	}
+
+	private long longAt(long offset) throws IOException {
+		map(offset, Long.BYTES);
+		return this.window.getLong((int) (offset - this.windowStart));
+	}
+
+	// Garante que o intervalo [offset, offset + length) esteja na janela mapeada.
+	private void map(long offset, int length) throws IOException {
+		if (this.window != null && offset >= this.windowStart
+				&& offset + length <= this.windowStart + this.window.capacity()) {
+			return;
+		}
+		this.windowStart = offset;
+		long size = Math.min(Math.max(WINDOW_SIZE, length), this.channel.size() - offset);
+		this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+		this.window.order(ColumnarBillingDataFormat.BYTE_ORDER);
+	}
+
+}
@@ -0,0 +1,355 @@
+package com.gustavo.billingjob.config;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Com ingestion.columnar=true, grava durante a ingestão uma cópia colunar dos registros do mês em staging/
+// (ver ColumnarBillingDataFormat), lida pelo ColumnarBillingDataItemReader com report.reader=columnar.
+// Cada chunk é gravado como um bloco; linhas de outros meses são ignoradas, assim como na leitura da tabela.
+// Assim como o CompressedFileItemWriter, o bloco só é gravado no commit do chunk e a posição do fim do último
+// chunk confirmado é salva no ExecutionContext; no restart, o arquivo é truncado nessa posição e o dicionário de
+// telefones é recarregado dos blocos já gravados. O TRAILER é gravado ao final de um step concluído com sucesso.
+// Linhas com a mesma chave (accountId e telefone) são todas gravadas; o writer registra a última linha de cada chave
+// repetida, e o ColumnarBillingDataItemReader ignora as anteriores, como o MERGE na tabela. Para isso é mantido em
+// memória o conjunto das chaves gravadas (LongHashSet, de 16 a 32 bytes por linha).
+// Com ingestion.columnar=false (padrão) o writer não faz nada.
+public class ColumnarBillingDataItemWriter implements ItemStreamWriter<BillingData>, StepExecutionListener {
+
+	private static final String POSITION_KEY = "position";
+
+	private final boolean enabled;
+
+	private final Path outputFile;
+
+	private final int year;
+
+	private final int month;
+
+	private final String inputHash;
+
+	private final Map<String, Integer> codes = new HashMap<>();
+
+	private final List<String> dictionary = new ArrayList<>();
+
+	// Última linha de cada chave repetida.
+	private final Map<Long, Long> lastRows = new HashMap<>();
+
+	// Chaves novas e chaves repetidas dos chunks ainda não confirmados.
+	private final Set<Long> pendingKeys = new HashSet<>();
+
+	private final Map<Long, Long> pendingLastRows = new HashMap<>();
+
+	private LongHashSet keys = new LongHashSet();
+
+	private long rowCount;
+
+	private long pendingRowCount;
+
+	// Blocos do chunk corrente, gravados no commit.
+	private final List<ByteBuffer> pending = new ArrayList<>();
+
+	private int committedDictionarySize;
+
+	private FileChannel channel;
+
+	private long position;
+
+	private long pendingSize;
+
+	private boolean synchronizationRegistered;
+
+	// Prefixo das chaves no ExecutionContext; deve ser único entre os streams do step.
+	private String name = "columnarBillingDataItemWriter";
+
+	public ColumnarBillingDataItemWriter(boolean enabled, String outputFile, int year, int month, String inputHash) {
+		this.enabled = enabled;
+		this.outputFile = Path.of(outputFile);
+		this.year = year;
+		this.month = month;
+		this.inputHash = inputHash;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public void open(ExecutionContext executionContext) throws ItemStreamException {
+		if (!this.enabled) {
+			return;
+		}
+		this.codes.clear();
+		this.dictionary.clear();
+		this.keys = new LongHashSet();
+		this.lastRows.clear();
+		this.rowCount = 0;
+		discardRows();
+		try {
+			Path parent = this.outputFile.toAbsolutePath().getParent();
+			if (parent != null) {
+				Files.createDirectories(parent);
+			}
+			if (executionContext.containsKey(getExecutionContextKey(POSITION_KEY))) {
+				this.position = executionContext.getLong(getExecutionContextKey(POSITION_KEY));
+				this.channel = FileChannel.open(this.outputFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+				if (this.channel.size() < this.position) {
+					throw new ItemStreamException("Current file size is smaller than size at last commit: " + this.outputFile);
+				}
+				this.channel.truncate(this.position);
+				loadBlocks();
+				this.channel.position(this.position);
+			} else {
+				this.channel = FileChannel.open(this.outputFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING);
+				this.position = 0;
+				writeFully(ColumnarBillingDataFormat.header(this.year, this.month, this.inputHash));
+			}
+			this.committedDictionarySize = this.dictionary.size();
+		} catch (IOException e) {
+			throw new ItemStreamException("Unable to open output file " + this.outputFile, e);
+		}
+	}
+
+	@Override
+	public void write(Chunk<? extends BillingData> chunk) throws Exception {
+		if (!this.enabled || chunk.isEmpty()) {
+			return;
+		}
+		int[] accountIds = new int[chunk.size()];
+		int[] phoneCodes = new int[chunk.size()];
+		float[] dataUsage = new float[chunk.size()];
+		int[] callDuration = new int[chunk.size()];
+		int[] smsCount = new int[chunk.size()];
+		List<byte[]> newPhones = new ArrayList<>();
+		int newPhonesSize = 0;
+		int rows = 0;
+		for (BillingData item : chunk) {
+			if (item.dataYear() != this.year || item.dataMonth() != this.month) {
+				continue;
+			}
+			Integer code = this.codes.get(item.phoneNumber());
+			if (code == null) {
+				code = this.dictionary.size();
+				this.dictionary.add(item.phoneNumber());
+				this.codes.put(item.phoneNumber(), code);
+				byte[] phone = item.phoneNumber().getBytes(StandardCharsets.UTF_8);
+				newPhones.add(phone);
+				newPhonesSize += Short.BYTES + phone.length;
+			}
+			long key = ColumnarBillingDataFormat.key(item.accountId(), code);
+			if (this.keys.contains(key) || !this.pendingKeys.add(key)) {
+				this.pendingLastRows.put(key, this.rowCount + this.pendingRowCount + rows);
+			}
+			accountIds[rows] = item.accountId();
+			phoneCodes[rows] = code;
+			dataUsage[rows] = item.dataUsage();
+			callDuration[rows] = item.callDuration();
+			smsCount[rows] = item.smsCount();
+			rows++;
+		}
+		if (rows == 0) {
+			return;
+		}
+		int blockLength = 2 * Integer.BYTES + newPhonesSize + ColumnarBillingDataFormat.COLUMN_COUNT * rows * Integer.BYTES;
+		ByteBuffer block = ByteBuffer.allocate(Integer.BYTES + blockLength).order(ColumnarBillingDataFormat.BYTE_ORDER);
+		block.putInt(blockLength).putInt(rows).putInt(newPhones.size());
+		for (byte[] phone : newPhones) {
+			block.putShort((short) phone.length).put(phone);
+		}
+		block.asIntBuffer().put(accountIds, 0, rows).put(phoneCodes, 0, rows);
+		block.position(block.position() + 2 * rows * Integer.BYTES);
+		block.asFloatBuffer().put(dataUsage, 0, rows);
+		block.position(block.position() + rows * Float.BYTES);
+		block.asIntBuffer().put(callDuration, 0, rows).put(smsCount, 0, rows);
+		block.position(0);
+		this.pendingRowCount += rows;
+
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			writeFully(block);
+			this.committedDictionarySize = this.dictionary.size();
+			commitRows();
+			return;
+		}
+		this.pending.add(block);
+		this.pendingSize += block.remaining();
+		if (!this.synchronizationRegistered) {
+			TransactionSynchronizationManager.registerSynchronization(new PendingBlocksSynchronization());
+			this.synchronizationRegistered = true;
+		}
+	}
+
+	// O update é chamado antes do commit do chunk, por isso a posição inclui os blocos ainda não gravados.
+	@Override
+	public void update(ExecutionContext executionContext) throws ItemStreamException {
+		if (this.enabled) {
+			executionContext.putLong(getExecutionContextKey(POSITION_KEY), this.position + this.pendingSize);
+		}
+	}
+
+	@Override
+	public ExitStatus afterStep(StepExecution stepExecution) {
+		if (this.channel != null && stepExecution.getStatus() == BatchStatus.COMPLETED) {
+			try {
+				ByteBuffer trailer = ByteBuffer.allocate(this.lastRows.size() * 2 * Long.BYTES + 2 * Integer.BYTES)
+					.order(ColumnarBillingDataFormat.BYTE_ORDER);
+				this.lastRows.entrySet().stream().sorted(Map.Entry.comparingByValue())
+					.forEach(lastRow -> trailer.putLong(lastRow.getKey()).putLong(lastRow.getValue()));
+				writeFully(trailer.putInt(this.lastRows.size()).putInt(ColumnarBillingDataFormat.TRAILER).flip());
+				this.channel.force(false);
+			} catch (IOException e) {
+				throw new ItemStreamException("Unable to write to output file " + this.outputFile, e);
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void close() throws ItemStreamException {
+		if (this.channel == null) {
+			return;
+		}
+		try {
+			this.channel.close();
+		} catch (IOException e) {
+			throw new ItemStreamException("Unable to close output file " + this.outputFile, e);
+		} finally {
+			this.channel = null;
+		}
+	}
+
+	private String getExecutionContextKey(String key) {
+		return this.name + "." + key;
+	}
+
+	private void commitRows() {
+		for (Long key : this.pendingKeys) {
+			this.keys.add(key);
+		}
+		this.lastRows.putAll(this.pendingLastRows);
+		this.rowCount += this.pendingRowCount;
+		discardRows();
+	}
+
+	private void discardRows() {
+		this.pendingKeys.clear();
+		this.pendingLastRows.clear();
+		this.pendingRowCount = 0;
+	}
+
+	// Recarrega o dicionário e as chaves a partir dos blocos entre o cabeçalho e a posição do último commit.
+	private void loadBlocks() throws IOException {
+		ByteBuffer headerBuffer = ByteBuffer.allocate((int) Math.min(this.position, 4096)).order(ColumnarBillingDataFormat.BYTE_ORDER);
+		this.channel.read(headerBuffer, 0);
+		ColumnarBillingDataFormat.Header header = ColumnarBillingDataFormat.readHeader(headerBuffer.flip());
+		if (header == null || header.magic() != ColumnarBillingDataFormat.MAGIC) {
+			throw new ItemStreamException("Not a columnar billing data file: " + this.outputFile);
+		}
+		long offset = header.length();
+		ByteBuffer length = ByteBuffer.allocate(Integer.BYTES).order(ColumnarBillingDataFormat.BYTE_ORDER);
+		while (offset < this.position) {
+			readFully(length.clear(), offset);
+			ByteBuffer block = ByteBuffer.allocate(length.flip().getInt()).order(ColumnarBillingDataFormat.BYTE_ORDER);
+			readFully(block, offset + Integer.BYTES);
+			block.flip();
+			int rows = block.getInt();
+			ColumnarBillingDataFormat.readDictionary(block, block.getInt(), this.dictionary);
+			IntBuffer columns = block.asIntBuffer();
+			for (int row = 0; row < rows; row++) {
+				long key = ColumnarBillingDataFormat.key(columns.get(row), columns.get(rows + row));
+				if (!this.keys.add(key)) {
+					this.lastRows.put(key, this.rowCount + row);
+				}
+			}
+			this.rowCount += rows;
+			offset += Integer.BYTES + block.capacity();
+		}
+		for (int code = 0; code < this.dictionary.size(); code++) {
+			this.codes.put(this.dictionary.get(code), code);
+		}
+	}
+
+	private void readFully(ByteBuffer buffer, long offset) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (this.channel.read(buffer, offset + buffer.position()) < 0) {
+				throw new ItemStreamException("Unexpected end of output file " + this.outputFile);
+			}
+		}
+	}
+
+	private void writeFully(ByteBuffer buffer) throws IOException {
+		int length = buffer.remaining();
+		while (buffer.hasRemaining()) {
+			this.channel.write(buffer);
+		}
+		this.position += length;
+	}
+
+	private class PendingBlocksSynchronization implements TransactionSynchronization {
+
+		private long startPosition = -1;
+
+		@Override
+		public void beforeCommit(boolean readOnly) {
+			this.startPosition = position;
+			try {
+				for (ByteBuffer block : pending) {
+					writeFully(block);
+				}
+			} catch (IOException e) {
+				throw new ItemStreamException("Unable to write to output file " + outputFile, e);
+			}
+		}
+
+		// No rollback, os blocos gravados são removidos do arquivo e os telefones e chaves incluídos pelo chunk são
+		// descartados.
+		@Override
+		public void afterCompletion(int status) {
+			if (status == STATUS_COMMITTED) {
+				committedDictionarySize = dictionary.size();
+				commitRows();
+			} else {
+				if (this.startPosition >= 0 && channel != null) {
+					try {
+						channel.truncate(this.startPosition);
+						channel.position(this.startPosition);
+						position = this.startPosition;
+					} catch (IOException e) {
+						throw new ItemStreamException("Unable to restore output file " + outputFile, e);
+					}
+				}
+				while (dictionary.size() > committedDictionarySize) {
+					codes.remove(dictionary.remove(dictionary.size() - 1));
+				}
+				discardRows();
+			}
+			pending.clear();
+			pendingSize = 0;
+			synchronizationRegistered = false;
+		}
+
+	}
+
+}
@@ -0,0 +1,186 @@
+package com.gustavo.billingjob.config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.item.file.FlatFileItemWriter;
+import org.springframework.batch.item.file.transform.LineAggregator;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Grava as linhas em um arquivo .gz ou .zst, compactando cada chunk como um membro (frame) completo, que é
+// acrescentado ao arquivo. Como ambos os formatos aceitam membros concatenados, o arquivo é válido ao fim de cada
+// chunk confirmado.
+// Assim como o FlatFileItemWriter, os bytes só são gravados no commit do chunk (e descartados no rollback), e a
+// posição em bytes do fim do último chunk confirmado é salva no ExecutionContext. No restart, o arquivo é truncado
+// nessa posição, descartando um membro gravado parcialmente.
+public class CompressedFileItemWriter<T> implements ItemStreamWriter<T> {
+
+	private static final String POSITION_KEY = "position";
+
+	private final Path outputFile;
+
+	private final FileCompression compression;
+
+	private final LineAggregator<T> lineAggregator;
+
+	private final String lineSeparator = FlatFileItemWriter.DEFAULT_LINE_SEPARATOR;
+
+	// Membros compactados pelo chunk corrente, gravados no commit.
+	private final List<byte[]> pending = new ArrayList<>();
+
+	private FileChannel channel;
+
+	private long position;
+
+	private long pendingSize;
+
+	private boolean synchronizationRegistered;
+
+	// Prefixo das chaves no ExecutionContext; deve ser único entre os streams do step.
+	private String name = "compressedFileItemWriter";
+
+	public CompressedFileItemWriter(String outputFile, LineAggregator<T> lineAggregator) {
+		this.outputFile = Paths.get(outputFile);
+		this.compression = FileCompression.of(outputFile);
+		this.lineAggregator = lineAggregator;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public void open(ExecutionContext executionContext) throws ItemStreamException {
+		try {
+			Path parent = this.outputFile.toAbsolutePath().getParent();
+			if (parent != null) {
+				Files.createDirectories(parent);
+			}
+			if (executionContext.containsKey(getExecutionContextKey(POSITION_KEY))) {
+				this.position = executionContext.getLong(getExecutionContextKey(POSITION_KEY));
+				this.channel = FileChannel.open(this.outputFile, StandardOpenOption.WRITE);
+				if (this.channel.size() < this.position) {
+					throw new ItemStreamException("Current file size is smaller than size at last commit: " + this.outputFile);
+				}
+				this.channel.truncate(this.position);
+				this.channel.position(this.position);
+			} else {
+				this.position = 0;
+				this.channel = FileChannel.open(this.outputFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING);
+			}
+		} catch (IOException e) {
+			throw new ItemStreamException("Unable to open output file " + this.outputFile, e);
+		}
+	}
+
+	@Override
+	public void write(Chunk<? extends T> chunk) throws Exception {
+		if (chunk.isEmpty()) {
+			return;
+		}
+		StringBuilder lines = new StringBuilder(chunk.size() * 64);
+		for (T item : chunk) {
+			lines.append(this.lineAggregator.aggregate(item)).append(this.lineSeparator);
+		}
+		ByteArrayOutputStream member = new ByteArrayOutputStream(lines.length() / 4 + 64);
+		try (Writer writer = new OutputStreamWriter(this.compression.compress(member), StandardCharsets.UTF_8)) {
+			writer.append(lines);
+		}
+		byte[] bytes = member.toByteArray();
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			writeFully(bytes);
+			return;
+		}
+		this.pending.add(bytes);
+		this.pendingSize += bytes.length;
+		if (!this.synchronizationRegistered) {
+			TransactionSynchronizationManager.registerSynchronization(new PendingMembersSynchronization());
+			this.synchronizationRegistered = true;
+		}
+	}
+
+	// O update é chamado antes do commit do chunk, por isso a posição inclui os membros ainda não gravados.
+	@Override
+	public void update(ExecutionContext executionContext) throws ItemStreamException {
+		executionContext.putLong(getExecutionContextKey(POSITION_KEY), this.position + this.pendingSize);
+	}
+
+	@Override
+	public void close() throws ItemStreamException {
+		if (this.channel == null) {
+			return;
+		}
+		try {
+			this.channel.close();
+		} catch (IOException e) {
+			throw new ItemStreamException("Unable to close output file " + this.outputFile, e);
+		} finally {
+			this.channel = null;
+		}
+	}
+
+	private String getExecutionContextKey(String key) {
+		return this.name + "." + key;
+	}
+
+	private void writeFully(byte[] bytes) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		while (buffer.hasRemaining()) {
+			this.channel.write(buffer);
+		}
+		this.position += bytes.length;
+	}
+
+	private class PendingMembersSynchronization implements TransactionSynchronization {
+
+		private long startPosition = -1;
+
+		@Override
+		public void beforeCommit(boolean readOnly) {
+			this.startPosition = position;
+			try {
+				for (byte[] bytes : pending) {
+					writeFully(bytes);
+				}
+			} catch (IOException e) {
+				throw new ItemStreamException("Unable to write to output file " + outputFile, e);
+			}
+		}
+
+		// Se o commit falhar depois da gravação, os membros gravados são removidos do arquivo.
+		@Override
+		public void afterCompletion(int status) {
+			if (status != STATUS_COMMITTED && this.startPosition >= 0 && channel != null) {
+				try {
+					channel.truncate(this.startPosition);
+					channel.position(this.startPosition);
+					position = this.startPosition;
+				} catch (IOException e) {
+					throw new ItemStreamException("Unable to restore output file " + outputFile, e);
+				}
+			}
+			pending.clear();
+			pendingSize = 0;
+			synchronizationRegistered = false;
+		}
+
+	}
+
+}
@@ -0,0 +1,41 @@
+package com.gustavo.billingjob.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.core.io.FileSystemResource;
+
+// Expõe o conteúdo descompactado de um arquivo .gz ou .zst, permitindo que o FlatFileItemReader leia o arquivo
+// compactado em fluxo. No restart, o FlatFileItemReader relê o arquivo desde o início e descarta as linhas já
+// processadas (read.count), o que não depende de posições no arquivo compactado.
+public class CompressedFileResource extends FileSystemResource {
+
+	private final FileCompression compression;
+
+	public CompressedFileResource(String path) {
+		super(path);
+		this.compression = FileCompression.of(path);
+	}
+
+	// Retorna um FileSystemResource comum quando o arquivo não é compactado.
+	public static FileSystemResource of(String path) {
+		return FileCompression.of(path) == FileCompression.NONE ? new FileSystemResource(path) : new CompressedFileResource(path);
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException {
+		return this.compression.decompress(super.getInputStream());
+	}
+
+	@Override
+	public long contentLength() throws IOException {
+		// o tamanho descompactado só é conhecido após a leitura completa
+		return -1;
+	}
+
+	@Override
+	public String getDescription() {
+		return this.compression.name().toLowerCase() + " " + super.getDescription();
+	}
+
+}
@@ -0,0 +1,97 @@
+package com.gustavo.billingjob.config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+// Formato de compressão de um arquivo, identificado pela extensão (.gz ou .zst). Os dados são descompactados e
+// compactados em fluxo, sem arquivos intermediários.
+// Tanto o gzip quanto o zstd aceitam a concatenação de vários membros (frames) em um único arquivo, o que permite
+// gravar cada chunk como um membro completo e concatenar os arquivos parciais do relatório (ver
+// CompressedFileItemWriter e ReportMergeTasklet).
+public enum FileCompression {
+
+	NONE("") {
+		@Override
+		public InputStream decompress(InputStream in) {
+			return new BufferedInputStream(in, BUFFER_SIZE);
+		}
+
+		@Override
+		public OutputStream compress(OutputStream out) {
+			return new BufferedOutputStream(out, BUFFER_SIZE);
+		}
+	},
+
+	GZIP(".gz") {
+		@Override
+		public InputStream decompress(InputStream in) throws IOException {
+			return new GZIPInputStream(in, BUFFER_SIZE);
+		}
+
+		@Override
+		public OutputStream compress(OutputStream out) throws IOException {
+			return new GZIPOutputStream(new BufferedOutputStream(out, BUFFER_SIZE), BUFFER_SIZE);
+		}
+	},
+
+	ZSTD(".zst") {
+		@Override
+		public InputStream decompress(InputStream in) throws IOException {
+			return new BufferedInputStream(new ZstdInputStream(new BufferedInputStream(in, BUFFER_SIZE)), BUFFER_SIZE);
+		}
+
+		@Override
+		public OutputStream compress(OutputStream out) throws IOException {
+			return new BufferedOutputStream(new ZstdOutputStream(new BufferedOutputStream(out, BUFFER_SIZE)), BUFFER_SIZE);
+		}
+	};
+
+	// Buffers grandes reduzem as chamadas de sistema e as passagens pela JNI (zstd) por byte processado.
+	static final int BUFFER_SIZE = 256 * 1024;
+
+	private final String extension;
+
+	FileCompression(String extension) {
+		this.extension = extension;
+	}
+
+	public static FileCompression of(String fileName) {
+		String name = fileName.toLowerCase();
+		if (name.endsWith(GZIP.extension)) {
+			return GZIP;
+		}
+		if (name.endsWith(ZSTD.extension)) {
+			return ZSTD;
+		}
+		return NONE;
+	}
+
+	public String extension() {
+		return this.extension;
+	}
+
+	// Nome do arquivo sem a extensão de compressão (ex.: billing-2023-03.csv.gz -> billing-2023-03.csv).
+	public String strip(String fileName) {
+		return fileName.substring(0, fileName.length() - this.extension.length());
+	}
+
+	// Insere o sufixo antes da extensão de compressão (ex.: report.csv.gz + .part0 -> report.csv.part0.gz), para que
+	// o arquivo derivado seja reconhecido com o mesmo formato.
+	public String withSuffix(String fileName, String suffix) {
+		return strip(fileName) + suffix + this.extension;
+	}
+
+	public abstract InputStream decompress(InputStream in) throws IOException;
+
+	// Fechar o fluxo retornado encerra o membro (frame) compactado e fecha o fluxo de destino.
+	public abstract OutputStream compress(OutputStream out) throws IOException;
+
+}
@@ -0,0 +1,38 @@
+package com.gustavo.billingjob.config;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+// Identifica o conteúdo de um arquivo pelo tamanho e pelo hash SHA-256 (em hexadecimal).
+public record FileFingerprint(long size, String hash) {
+
+	private static final int BUFFER_SIZE = 1024 * 1024;
+
+	public static FileFingerprint of(Path file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		long size = 0;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			int read;
+			while ((read = channel.read(buffer)) != -1) {
+				size += read;
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+			}
+		}
+		return new FileFingerprint(size, HexFormat.of().formatHex(digest.digest()));
+	}
+
+}
@@ -1,19 +1,51 @@
 package com.gustavo.billingjob.config;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 
+import org.springframework.batch.core.ExitStatus;
 import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.StepContribution;
 import org.springframework.batch.core.scope.context.ChunkContext;
 import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
 import org.springframework.batch.repeat.RepeatStatus;
 
 public class FilePreparationTasklet implements Tasklet {
-	
+
+	// Status de saída do step quando o arquivo de entrada já foi carregado com o mesmo conteúdo:
+	// o job segue direto para a geração do relatório, sem a ingestão.
+	public static final String UNCHANGED = "UNCHANGED";
+
+	// Chaves gravadas no ExecutionContext do job.
+	public static final String INPUT_SIZE_KEY = "input.size";
+
+	public static final String INPUT_HASH_KEY = "input.hash";
+
+	// Arquivo lido pela ingestão no lugar de input.file (modo delta).
+	public static final String INGESTION_FILE_KEY = "ingestion.file";
+
+	private static final String COMMENT = "#";
+
+	private final BillingFileRegistry billingFileRegistry;
+
+	public FilePreparationTasklet(BillingFileRegistry billingFileRegistry) {
+		this.billingFileRegistry = billingFileRegistry;
+	}
+
 	// Copia o arquivo de entrada contendo dados de faturamento para um diretório de preparação.
+	// Antes da cópia, o fingerprint (tamanho e SHA-256) do arquivo é comparado com o da última ingestão concluída
+	// do mesmo arquivo para o mesmo mês (BillingFileRegistry); se for igual, a cópia e a ingestão são dispensadas.
+	// Com ingestion.delta=true, um arquivo corrigido é comparado com a cópia anterior em staging/ e a ingestão lê
+	// apenas as linhas novas ou alteradas (ver writeDelta).
 	@Override
 	// StepContribution representa a contribuição deste Tasklet para a step (por exemplo, quantos itens foram lidos, gravados ou processados ​​de outra forma).
 	// ChunkContext é um conjunto de pares de chave/valor que fornecem detalhes sobre o contexto de execução do Tasklet.
@@ -21,13 +53,86 @@ public class FilePreparationTasklet implements Tasklet {
 		// Acessar os JobParameters associados à execução do Job.
 		JobParameters jobParameters = contribution.getStepExecution().getJobParameters();
 		String inputFile = jobParameters.getString("input.file");
+		boolean streaming = "streaming".equalsIgnoreCase(jobParameters.getString("job.mode"));
+		boolean delta = Boolean.parseBoolean(jobParameters.getString("ingestion.delta"));
+		boolean columnar = Boolean.parseBoolean(jobParameters.getString("ingestion.columnar"));
+		int year = Integer.parseInt(jobParameters.getString("data.year"));
+		int month = Integer.parseInt(jobParameters.getString("data.month"));
 		Path source = Paths.get(inputFile);
 		Path target = Paths.get("staging", source.toFile().getName());
+		ExecutionContext jobContext = contribution.getStepExecution().getJobExecution().getExecutionContext();
+
+		FileFingerprint fingerprint = FileFingerprint.of(source);
+		FileFingerprint loaded = this.billingFileRegistry.find(target.toFile().getName(), year, month);
+		jobContext.putLong(INPUT_SIZE_KEY, fingerprint.size());
+		jobContext.putString(INPUT_HASH_KEY, fingerprint.hash());
+		// No modo streaming o relatório é gerado a partir do próprio arquivo, por isso ele é sempre preparado.
+		// Com ingestion.columnar=true, a ingestão só é dispensada se o arquivo colunar do mês já estiver completo.
+		if (!streaming && fingerprint.equals(loaded) && (!columnar || ColumnarBillingDataFormat.isComplete(
+				ColumnarBillingDataFormat.stagingFile(year, month), fingerprint.hash()))) {
+			contribution.setExitStatus(new ExitStatus(UNCHANGED));
+			return RepeatStatus.FINISHED;
+		}
+		// A cópia em staging/ só serve de base para o delta se for exatamente o arquivo da última ingestão concluída.
+		if (!streaming && delta && loaded != null && Files.exists(target) && FileFingerprint.of(target).equals(loaded)) {
+			String fileName = target.toFile().getName();
+			Path deltaFile = Paths.get("staging", FileCompression.of(fileName).withSuffix(fileName, ".delta"));
+			writeDelta(target, source, deltaFile);
+			jobContext.putString(INGESTION_FILE_KEY, deltaFile.toString());
+		}
 		// Ao copiar o arquivo para substituir qualquer arquivo existente.
-		// Isso é útil caso a etapa seja reexecutada e queiramos que ela tenha sucesso em vez de falhar 
-		// porque o arquivo já existe no diretório.		
+		// Isso é útil caso a etapa seja reexecutada e queiramos que ela tenha sucesso em vez de falhar
+		// porque o arquivo já existe no diretório.
+		// Arquivos .gz e .zst são copiados compactados: a ingestão os descompacta em fluxo (CompressedFileResource).
 		Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
 		return RepeatStatus.FINISHED;
 	}
 
+	// Grava em deltaFile as linhas de current que não existem em previous; as demais são substituídas por uma linha
+	// de comentário, que os readers ignoram. Assim o delta tem o mesmo número de linhas do arquivo corrigido e os
+	// números de linha no arquivo de skips continuam se referindo a ele.
+	// Linhas removidas do arquivo corrigido não são excluídas da tabela.
+	// Os arquivos são lidos e gravados no formato de compressão indicado pela extensão de cada um.
+	// Das linhas de previous é mantido em memória apenas um hash de 64 bits (LongHashSet: de 16 a 32 bytes por linha,
+	// em vez da String). Uma linha alterada cujo hash coincida com o de uma linha anterior seria tratada como
+	// inalterada; para n linhas a probabilidade é da ordem de n²/2^65 (cerca de 3 em 1 milhão para 10 milhões de linhas).
+	static void writeDelta(Path previous, Path current, Path deltaFile) throws IOException {
+		LongHashSet previousLines = new LongHashSet();
+		try (BufferedReader reader = newReader(previous)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				previousLines.add(hash(line));
+			}
+		}
+		try (BufferedReader reader = newReader(current); BufferedWriter writer = newWriter(deltaFile)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				writer.write(previousLines.contains(hash(line)) ? COMMENT : line);
+				writer.write('\n');
+			}
+		}
+	}
+
+	// FNV-1a de 64 bits sobre os caracteres da linha.
+	static long hash(String line) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < line.length(); i++) {
+			hash ^= line.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	private static BufferedReader newReader(Path file) throws IOException {
+		InputStreamReader reader = new InputStreamReader(
+				FileCompression.of(file.toString()).decompress(Files.newInputStream(file)), StandardCharsets.UTF_8);
+		return new BufferedReader(reader, FileCompression.BUFFER_SIZE);
+	}
+
+	private static BufferedWriter newWriter(Path file) throws IOException {
+		OutputStreamWriter writer = new OutputStreamWriter(
+				FileCompression.of(file.toString()).compress(Files.newOutputStream(file)), StandardCharsets.UTF_8);
+		return new BufferedWriter(writer, FileCompression.BUFFER_SIZE);
+	}
+
 }
@@ -0,0 +1,35 @@
+package com.gustavo.billingjob.config;
+
+import java.nio.file.Paths;
+
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+
+public class FileRegistrationTasklet implements Tasklet {
+
+	private final BillingFileRegistry billingFileRegistry;
+
+	public FileRegistrationTasklet(BillingFileRegistry billingFileRegistry) {
+		this.billingFileRegistry = billingFileRegistry;
+	}
+
+	// Registra o fingerprint calculado pelo FilePreparationTasklet depois que a ingestão foi concluída, assim uma nova
+	// execução com o mesmo arquivo dispensa a ingestão. Se a ingestão falhar, o registro anterior é mantido.
+	@Override
+	public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+		JobParameters jobParameters = contribution.getStepExecution().getJobParameters();
+		String inputFile = jobParameters.getString("input.file");
+		ExecutionContext jobContext = contribution.getStepExecution().getJobExecution().getExecutionContext();
+		FileFingerprint fingerprint = new FileFingerprint(jobContext.getLong(FilePreparationTasklet.INPUT_SIZE_KEY),
+				jobContext.getString(FilePreparationTasklet.INPUT_HASH_KEY));
+		this.billingFileRegistry.save(Paths.get(inputFile).toFile().getName(),
+				Integer.parseInt(jobParameters.getString("data.year")), Integer.parseInt(jobParameters.getString("data.month")),
+				fingerprint);
+		return RepeatStatus.FINISHED;
+	}
+
+}
@@ -0,0 +1,48 @@
+package com.gustavo.billingjob.config;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.file.FlatFileParseException;
+
+// Lê uma partição do arquivo de entrada delegando para um FlatFileItemReader.
+// O FlatFileItemReader numera as linhas a partir do início da partição, por isso os erros de parsing são
+// relançados com o número global da linha, que é o que o BillingDataSkipListener deve registrar.
+public class LineRangeItemReader<T> implements ItemStreamReader<T> {
+
+	private final ItemStreamReader<T> delegate;
+
+	private final long lineOffset;
+
+	public LineRangeItemReader(ItemStreamReader<T> delegate, long lineOffset) {
+		this.delegate = delegate;
+		this.lineOffset = lineOffset;
+	}
+
+	@Override
+	public T read() throws Exception {
+		try {
+			return this.delegate.read();
+		} catch (FlatFileParseException e) {
+			int lineNumber = (int) (e.getLineNumber() + this.lineOffset);
+			throw new FlatFileParseException("Parsing error at line: " + lineNumber + ", input=[" + e.getInput() + "]",
+					e.getCause(), e.getInput(), lineNumber);
+		}
+	}
+
+	@Override
+	public void open(ExecutionContext executionContext) throws ItemStreamException {
+		this.delegate.open(executionContext);
+	}
+
+	@Override
+	public void update(ExecutionContext executionContext) throws ItemStreamException {
+		this.delegate.update(executionContext);
+	}
+
+	@Override
+	public void close() throws ItemStreamException {
+		this.delegate.close();
+	}
+
+}
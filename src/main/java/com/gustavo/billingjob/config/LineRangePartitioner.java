@@ -0,0 +1,90 @@
+package com.gustavo.billingjob.config;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+
+// Divide o arquivo de entrada em intervalos de bytes alinhados ao início das linhas, para que cada
+// partição possa ser lida de forma independente por um step worker.
+// Cada ExecutionContext contém o intervalo [start.offset, end.offset) e a quantidade de linhas que
+// antecedem o intervalo (start.line), usada para manter a numeração global das linhas.
+public class LineRangePartitioner implements Partitioner {
+
+	public static final String START_OFFSET = "start.offset";
+	public static final String END_OFFSET = "end.offset";
+	public static final String START_LINE = "start.line";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final Path inputFile;
+
+	private final int partitions;
+
+	public LineRangePartitioner(String inputFile, int partitions) {
+		this.inputFile = Paths.get(inputFile);
+		this.partitions = Math.max(1, partitions);
+	}
+
+	// O gridSize fornecido pelo PartitionHandler é ignorado: o número de partições vem dos parâmetros do job.
+	@Override
+	public Map<String, ExecutionContext> partition(int gridSize) {
+		try (FileChannel channel = FileChannel.open(this.inputFile, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long[] starts = new long[this.partitions];
+			long[] lines = new long[this.partitions];
+			int next = 1;
+			long target = size / this.partitions;
+			long position = 0;
+			long lineCount = 0;
+			// Uma única leitura sequencial localiza os limites e conta as linhas que antecedem cada um deles.
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			while (next < this.partitions && channel.read(buffer) != -1) {
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					position++;
+					if (buffer.get() == '\n') {
+						lineCount++;
+						while (next < this.partitions && position >= target) {
+							starts[next] = position;
+							lines[next] = lineCount;
+							next++;
+							target = size * next / this.partitions;
+						}
+					}
+				}
+				buffer.clear();
+			}
+			// Limites não encontrados (arquivo com poucas linhas) resultam em intervalos vazios.
+			for (; next < this.partitions; next++) {
+				starts[next] = size;
+				lines[next] = lineCount;
+			}
+
+			Map<String, ExecutionContext> result = new LinkedHashMap<>();
+			for (int i = 0; i < this.partitions; i++) {
+				long end = i + 1 < this.partitions ? starts[i + 1] : size;
+				if (end <= starts[i] && !(i == 0 && size == 0)) {
+					continue;
+				}
+				ExecutionContext context = new ExecutionContext();
+				context.putLong(START_OFFSET, starts[i]);
+				context.putLong(END_OFFSET, end);
+				context.putLong(START_LINE, lines[i]);
+				result.put("partition" + result.size(), context);
+			}
+			return result;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to partition input file " + this.inputFile, e);
+		}
+	}
+
+}
@@ -0,0 +1,74 @@
+package com.gustavo.billingjob.config;
+
+// Conjunto de valores long em um array com endereçamento aberto (sondagem linear), mantido com no máximo metade
+// das posições ocupadas: de 16 a 32 bytes por valor, sem um objeto Long por valor. O valor 0 marca uma posição
+// livre, por isso o 0 é registrado à parte.
+final class LongHashSet {
+
+	private long[] table = new long[1024];
+
+	private int size;
+
+	private boolean containsZero;
+
+	// Retorna false se o valor já estava no conjunto.
+	boolean add(long value) {
+		if (value == 0) {
+			boolean added = !this.containsZero;
+			this.containsZero = true;
+			return added;
+		}
+		if (!insert(this.table, value)) {
+			return false;
+		}
+		this.size++;
+		if (this.size * 2 > this.table.length) {
+			long[] resized = new long[this.table.length * 2];
+			for (long current : this.table) {
+				if (current != 0) {
+					insert(resized, current);
+				}
+			}
+			this.table = resized;
+		}
+		return true;
+	}
+
+	boolean contains(long value) {
+		if (value == 0) {
+			return this.containsZero;
+		}
+		int mask = this.table.length - 1;
+		for (int i = index(value, mask); this.table[i] != 0; i = (i + 1) & mask) {
+			if (this.table[i] == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// Posição inicial do valor: função de mistura final do MurmurHash3, que espalha pelos bits baixos valores
+	// sequenciais ou que diferem apenas nos bits altos.
+	private static int index(long value, int mask) {
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		value *= 0xc4ceb9fe1a85ec53L;
+		value ^= value >>> 33;
+		return (int) value & mask;
+	}
+
+	private static boolean insert(long[] table, long value) {
+		int mask = table.length - 1;
+		int i = index(value, mask);
+		while (table[i] != 0) {
+			if (table[i] == value) {
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+		table[i] = value;
+		return true;
+	}
+
+}
@@ -0,0 +1,299 @@
+package com.gustavo.billingjob.config;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.batch.item.file.LineMapper;
+import org.springframework.batch.item.file.NonTransientFlatFileException;
+import org.springframework.batch.item.file.mapping.DefaultLineMapper;
+import org.springframework.batch.item.file.mapping.RecordFieldSetMapper;
+import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+
+// Leitor do arquivo de entrada que mapeia o arquivo em memória e extrai os sete campos de BillingData diretamente
+// dos bytes, sem criar uma String, um FieldSet e um BeanWrapper por linha. Apenas o phoneNumber é convertido em String.
+// Linhas fora do formato simples (aspas, números com expoente ou espaços, quantidade errada de campos etc.)
+// são tratadas pelo mesmo tokenizer e mapper do FlatFileItemReader, assim os itens produzidos e as exceções
+// (FlatFileParseException com a linha e o número da linha) são os mesmos do billingDataFileReader padrão.
+// Registros com quebras de linha dentro de aspas não são suportados.
+// A posição de leitura (offset em bytes) e o número da linha são salvos no ExecutionContext, permitindo o restart
+// diretamente a partir do último chunk confirmado.
+public class MappedBillingDataItemReader implements ItemStreamReader<BillingData> {
+
+	private static final String OFFSET_KEY = "offset";
+	private static final String LINE_KEY = "line";
+
+	private static final int FIELD_COUNT = 7;
+
+	// Tamanho da janela mapeada; arquivos maiores são percorridos em várias janelas.
+	private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+	// Quantidade máxima de dígitos cujo valor é representado exatamente em um double.
+	private static final int MAX_EXACT_DIGITS = 15;
+
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+			1e13, 1e14, 1e15 };
+
+	// Indica que o valor deve ser convertido pelo LineMapper de fallback.
+	private static final long NOT_PARSED = Long.MIN_VALUE;
+
+	private final Path inputFile;
+
+	private final long startOffset;
+
+	private final long endOffset;
+
+	private final long startLine;
+
+	private final LineMapper<BillingData> fallbackLineMapper;
+
+	private final int[] fieldStart = new int[FIELD_COUNT];
+
+	private final int[] fieldEnd = new int[FIELD_COUNT];
+
+	private FileChannel channel;
+
+	private MappedByteBuffer window;
+
+	private long windowStart;
+
+	private long end;
+
+	private long position;
+
+	private long lineNumber;
+
+	// Prefixo das chaves no ExecutionContext; deve ser único entre os streams do step.
+	private String name = "mappedBillingDataItemReader";
+
+	public MappedBillingDataItemReader(String inputFile) {
+		this(inputFile, 0, Long.MAX_VALUE, 0);
+	}
+
+	// Lê apenas o intervalo [startOffset, endOffset) do arquivo; startLine é a quantidade de linhas que antecedem
+	// o intervalo, usada para manter a numeração global das linhas (ver LineRangePartitioner).
+	public MappedBillingDataItemReader(String inputFile, long startOffset, long endOffset, long startLine) {
+		this.inputFile = Paths.get(inputFile);
+		this.startOffset = startOffset;
+		this.endOffset = endOffset;
+		this.startLine = startLine;
+		this.fallbackLineMapper = createFallbackLineMapper();
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	private static LineMapper<BillingData> createFallbackLineMapper() {
+		DelimitedLineTokenizer tokenizer = new DelimitedLineTokenizer(",");
+		tokenizer.setNames("dataYear", "dataMonth", "accountId", "phoneNumber", "dataUsage", "callDuration", "smsCount");
+		DefaultLineMapper<BillingData> lineMapper = new DefaultLineMapper<>();
+		lineMapper.setLineTokenizer(tokenizer);
+		lineMapper.setFieldSetMapper(new RecordFieldSetMapper<>(BillingData.class));
+		return lineMapper;
+	}
+
+	@Override
+	public void open(ExecutionContext executionContext) throws ItemStreamException {
+		try {
+			this.channel = FileChannel.open(this.inputFile, StandardOpenOption.READ);
+			this.end = Math.min(this.endOffset, this.channel.size());
+			if (executionContext.containsKey(getExecutionContextKey(OFFSET_KEY))) {
+				this.position = executionContext.getLong(getExecutionContextKey(OFFSET_KEY));
+				this.lineNumber = executionContext.getLong(getExecutionContextKey(LINE_KEY));
+			} else {
+				this.position = this.startOffset;
+				this.lineNumber = this.startLine;
+			}
+			map(this.position);
+		} catch (IOException e) {
+			throw new ItemStreamException("Unable to open input file " + this.inputFile, e);
+		}
+	}
+
+	@Override
+	public void update(ExecutionContext executionContext) throws ItemStreamException {
+		executionContext.putLong(getExecutionContextKey(OFFSET_KEY), this.position);
+		executionContext.putLong(getExecutionContextKey(LINE_KEY), this.lineNumber);
+	}
+
+	@Override
+	public void close() throws ItemStreamException {
+		this.window = null;
+		if (this.channel != null) {
+			try {
+				this.channel.close();
+			} catch (IOException e) {
+				throw new ItemStreamException("Unable to close input file " + this.inputFile, e);
+			} finally {
+				this.channel = null;
+			}
+		}
+	}
+
+	private String getExecutionContextKey(String key) {
+		return this.name + "." + key;
+	}
+
+	@Override
+	public BillingData read() throws Exception {
+		while (this.position < this.end) {
+			int lineStart = (int) (this.position - this.windowStart);
+			int limit = (int) (Math.min(this.end, this.windowStart + this.window.capacity()) - this.windowStart);
+			int newline = lineStart;
+			while (newline < limit && this.window.get(newline) != '\n') {
+				newline++;
+			}
+			if (newline == limit && this.windowStart + limit < this.end) {
+				// A linha continua após o fim da janela: mapeia uma nova janela a partir do início da linha.
+				if (lineStart == 0) {
+					throw new NonTransientFlatFileException("Line longer than the mapped window at line "
+							+ (this.lineNumber + 1) + " in " + this.inputFile, null, (int) (this.lineNumber + 1));
+				}
+				map(this.position);
+				continue;
+			}
+			int lineEnd = newline;
+			if (lineEnd > lineStart && this.window.get(lineEnd - 1) == '\r') {
+				lineEnd--;
+			}
+			this.position = this.windowStart + Math.min(newline + 1, limit);
+			this.lineNumber++;
+			// Linhas iniciadas por "#" são comentários, assim como no FlatFileItemReader.
+			if (lineEnd > lineStart && this.window.get(lineStart) == '#') {
+				continue;
+			}
+			return parse(lineStart, lineEnd);
+		}
+		return null;
+	}
+
+	private void map(long offset) throws IOException {
+		this.windowStart = offset;
+		long size = Math.min(WINDOW_SIZE, Math.max(0, this.channel.size() - offset));
+		this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+	}
+
+	private BillingData parse(int lineStart, int lineEnd) {
+		int field = 0;
+		this.fieldStart[0] = lineStart;
+		for (int i = lineStart; i < lineEnd; i++) {
+			byte b = this.window.get(i);
+			if (b == ',') {
+				if (field == FIELD_COUNT - 1) {
+					return fallback(lineStart, lineEnd);
+				}
+				this.fieldEnd[field++] = i;
+				this.fieldStart[field] = i + 1;
+			} else if (b == '"') {
+				return fallback(lineStart, lineEnd);
+			}
+		}
+		if (field != FIELD_COUNT - 1) {
+			return fallback(lineStart, lineEnd);
+		}
+		this.fieldEnd[field] = lineEnd;
+
+		long dataYear = parseInt(0);
+		long dataMonth = parseInt(1);
+		long accountId = parseInt(2);
+		double dataUsage = parseFloat(4);
+		long callDuration = parseInt(5);
+		long smsCount = parseInt(6);
+		if (dataYear == NOT_PARSED || dataMonth == NOT_PARSED || accountId == NOT_PARSED || Double.isNaN(dataUsage)
+				|| callDuration == NOT_PARSED || smsCount == NOT_PARSED) {
+			return fallback(lineStart, lineEnd);
+		}
+		return new BillingData((int) dataYear, (int) dataMonth, (int) accountId, decode(this.fieldStart[3], this.fieldEnd[3]),
+				(float) dataUsage, (int) callDuration, (int) smsCount);
+	}
+
+	// Converte um inteiro no formato [+-]dígitos com até 9 dígitos; qualquer outro formato retorna NOT_PARSED.
+	private long parseInt(int field) {
+		int i = this.fieldStart[field];
+		int limit = this.fieldEnd[field];
+		boolean negative = false;
+		if (i < limit && (this.window.get(i) == '-' || this.window.get(i) == '+')) {
+			negative = this.window.get(i) == '-';
+			i++;
+		}
+		if (i == limit || limit - i > 9) {
+			return NOT_PARSED;
+		}
+		long value = 0;
+		for (; i < limit; i++) {
+			int digit = this.window.get(i) - '0';
+			if (digit < 0 || digit > 9) {
+				return NOT_PARSED;
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	// Converte um decimal no formato [+-]dígitos[.dígitos] para o mesmo float que Float.parseFloat produziria.
+	// O valor é calculado em double (exato para até 15 dígitos) e retorna NaN quando o formato não é suportado ou
+	// quando o arredondamento de double para float pode divergir do arredondamento direto do decimal.
+	private double parseFloat(int field) {
+		int i = this.fieldStart[field];
+		int limit = this.fieldEnd[field];
+		boolean negative = false;
+		if (i < limit && (this.window.get(i) == '-' || this.window.get(i) == '+')) {
+			negative = this.window.get(i) == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int scale = -1;
+		for (; i < limit; i++) {
+			byte b = this.window.get(i);
+			if (b == '.' && scale < 0) {
+				scale = 0;
+				continue;
+			}
+			int digit = b - '0';
+			if (digit < 0 || digit > 9 || ++digits > MAX_EXACT_DIGITS) {
+				return Double.NaN;
+			}
+			mantissa = mantissa * 10 + digit;
+			if (scale >= 0) {
+				scale++;
+			}
+		}
+		if (digits == 0) {
+			return Double.NaN;
+		}
+		double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+		// Valores no meio do caminho entre dois floats (ou subnormais) sofreriam arredondamento duplo.
+		if ((Double.doubleToRawLongBits(value) & 0x1FFFFFFFL) == 0x10000000L
+				|| (value != 0 && value < Float.MIN_NORMAL)) {
+			return Float.parseFloat(decode(this.fieldStart[field], this.fieldEnd[field]));
+		}
+		return negative ? -value : value;
+	}
+
+	private String decode(int from, int to) {
+		byte[] bytes = new byte[to - from];
+		this.window.get(from, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private BillingData fallback(int lineStart, int lineEnd) {
+		String line = decode(lineStart, lineEnd);
+		try {
+			return this.fallbackLineMapper.mapLine(line, (int) this.lineNumber);
+		} catch (Exception ex) {
+			throw new FlatFileParseException("Parsing error at line: " + this.lineNumber + " in resource=["
+					+ this.inputFile + "], input=[" + line + "]", ex, line, (int) this.lineNumber);
+		}
+	}
+
+}
@@ -0,0 +1,150 @@
+package com.gustavo.billingjob.config;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.batch.core.StepExecution;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Measurement;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+
+// Grava ao final do job, no arquivo informado pelo parâmetro metrics.file (opcional), um JSON com:
+// - steps: duração, contadores e itens por segundo de cada step executado;
+// - meters: valores acumulados de todas as métricas do registry (os tempos em milissegundos).
+// O registry informado deve ser cumulativo (ex.: SimpleMeterRegistry), para que os valores cubram toda a execução.
+public class MetricsFileWriter implements JobExecutionListener {
+
+	private final MeterRegistry meterRegistry;
+
+	public MetricsFileWriter(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+
+	@Override
+	public void afterJob(JobExecution jobExecution) {
+		String metricsFile = jobExecution.getJobParameters().getString("metrics.file");
+		if (metricsFile == null || metricsFile.isBlank()) {
+			return;
+		}
+		StringBuilder json = new StringBuilder();
+		json.append("{\n  \"job\": ").append(quote(jobExecution.getJobInstance().getJobName()))
+			.append(",\n  \"status\": ").append(quote(jobExecution.getStatus().toString()))
+			.append(",\n  \"steps\": [");
+		Iterator<StepExecution> steps = jobExecution.getStepExecutions().iterator();
+		while (steps.hasNext()) {
+			appendStep(json, steps.next());
+			json.append(steps.hasNext() ? "," : "");
+		}
+		json.append("\n  ],\n  \"meters\": [");
+		// Os gauges de percentis (<timer>.percentile) são omitidos, pois os percentis já acompanham cada timer.
+		Iterator<Meter> meters = this.meterRegistry.getMeters().stream()
+			.filter(meter -> !meter.getId().getName().endsWith(".percentile"))
+			.sorted((a, b) -> a.getId().toString().compareTo(b.getId().toString()))
+			.iterator();
+		while (meters.hasNext()) {
+			appendMeter(json, meters.next());
+			json.append(meters.hasNext() ? "," : "");
+		}
+		json.append("\n  ]\n}\n");
+		try {
+			Files.writeString(Paths.get(metricsFile), json, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to write metrics to " + metricsFile, e);
+		}
+	}
+
+	private void appendStep(StringBuilder json, StepExecution stepExecution) {
+		long millis = stepExecution.getStartTime() == null || stepExecution.getEndTime() == null ? 0
+				: Duration.between(stepExecution.getStartTime(), stepExecution.getEndTime()).toMillis();
+		json.append("\n    {\"name\": ").append(quote(stepExecution.getStepName()))
+			.append(", \"status\": ").append(quote(stepExecution.getStatus().toString()))
+			.append(", \"durationMs\": ").append(millis)
+			.append(", \"read\": ").append(stepExecution.getReadCount())
+			.append(", \"written\": ").append(stepExecution.getWriteCount())
+			.append(", \"filtered\": ").append(stepExecution.getFilterCount())
+			.append(", \"skipped\": ").append(stepExecution.getSkipCount())
+			.append(", \"commits\": ").append(stepExecution.getCommitCount())
+			.append(", \"rollbacks\": ").append(stepExecution.getRollbackCount())
+			.append(", \"readPerSecond\": ").append(number(perSecond(stepExecution.getReadCount(), millis)))
+			.append(", \"writtenPerSecond\": ").append(number(perSecond(stepExecution.getWriteCount(), millis)))
+			.append(", \"filteredPerSecond\": ").append(number(perSecond(stepExecution.getFilterCount(), millis)))
+			.append(", \"skippedPerSecond\": ").append(number(perSecond(stepExecution.getSkipCount(), millis)))
+			.append('}');
+	}
+
+	private void appendMeter(StringBuilder json, Meter meter) {
+		json.append("\n    {\"name\": ").append(quote(meter.getId().getName())).append(", \"tags\": {");
+		Iterator<Tag> tags = meter.getId().getTags().iterator();
+		while (tags.hasNext()) {
+			Tag tag = tags.next();
+			json.append(quote(tag.getKey())).append(": ").append(quote(tag.getValue())).append(tags.hasNext() ? ", " : "");
+		}
+		json.append('}');
+		if (meter instanceof Timer timer) {
+			HistogramSnapshot snapshot = timer.takeSnapshot();
+			json.append(", \"count\": ").append(snapshot.count())
+				.append(", \"totalMs\": ").append(number(snapshot.total(TimeUnit.MILLISECONDS)))
+				.append(", \"meanMs\": ").append(number(snapshot.mean(TimeUnit.MILLISECONDS)))
+				.append(", \"maxMs\": ").append(number(snapshot.max(TimeUnit.MILLISECONDS)));
+			ValueAtPercentile[] percentiles = snapshot.percentileValues();
+			if (percentiles.length > 0) {
+				json.append(", \"percentilesMs\": {");
+				for (int i = 0; i < percentiles.length; i++) {
+					json.append(i > 0 ? ", " : "").append(quote(String.valueOf(percentiles[i].percentile())))
+						.append(": ").append(number(percentiles[i].value(TimeUnit.MILLISECONDS)));
+				}
+				json.append('}');
+			}
+		} else if (meter instanceof Counter counter) {
+			json.append(", \"count\": ").append(number(counter.count()));
+		} else if (meter instanceof FunctionCounter counter) {
+			json.append(", \"count\": ").append(number(counter.count()));
+		} else {
+			for (Measurement measurement : meter.measure()) {
+				json.append(", ").append(quote(measurement.getStatistic().getTagValueRepresentation()))
+					.append(": ").append(number(measurement.getValue()));
+			}
+		}
+		json.append('}');
+	}
+
+	private static double perSecond(long count, long millis) {
+		return millis == 0 ? 0 : count * 1000.0 / millis;
+	}
+
+	// NaN e infinito não são valores válidos em JSON.
+	private static String number(double value) {
+		return Double.isFinite(value) ? String.valueOf(value) : "null";
+	}
+
+	private static String quote(String value) {
+		StringBuilder quoted = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				quoted.append('\\').append(c);
+			} else if (c < 0x20) {
+				quoted.append(String.format("\\u%04x", (int) c));
+			} else {
+				quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+
+}
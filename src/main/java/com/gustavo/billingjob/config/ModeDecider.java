@@ -0,0 +1,30 @@
+package com.gustavo.billingjob.config;
+
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.job.flow.FlowExecutionStatus;
+import org.springframework.batch.core.job.flow.JobExecutionDecider;
+
+// Decide qual caminho do fluxo do job deve ser executado a partir de um parâmetro do job.
+// O status retornado é o valor do parâmetro em letras maiúsculas (ex.: ingestion.mode=partitioned -> PARTITIONED),
+// ou DEFAULT quando o parâmetro não é informado.
+public class ModeDecider implements JobExecutionDecider {
+
+	public static final String DEFAULT = "DEFAULT";
+
+	private final String parameterName;
+
+	public ModeDecider(String parameterName) {
+		this.parameterName = parameterName;
+	}
+
+	@Override
+	public FlowExecutionStatus decide(JobExecution jobExecution, StepExecution stepExecution) {
+		String mode = jobExecution.getJobParameters().getString(this.parameterName);
+		if (mode == null || mode.isBlank()) {
+			return new FlowExecutionStatus(DEFAULT);
+		}
+		return new FlowExecutionStatus(mode.trim().toUpperCase());
+	}
+
+}
@@ -0,0 +1,41 @@
+package com.gustavo.billingjob.config;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobParameter;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.step.job.JobParametersExtractor;
+import org.springframework.batch.item.ExecutionContext;
+
+// Monta os parâmetros do BillingJob de um mês: os parâmetros do MultiMonthBillingJob (ex.: ingestion.mode,
+// report.mode) são repassados, exceto os que só se aplicam ao job de vários meses, e os parâmetros do mês vêm do
+// ExecutionContext da partição (ver MonthPartitioner).
+// Cada mês é uma JobInstance própria do BillingJob. O JobStep guarda os parâmetros extraídos no ExecutionContext
+// do step, assim o restart de um mês com falha reinicia a mesma JobInstance a partir do step que falhou.
+public class MonthJobParametersExtractor implements JobParametersExtractor {
+
+	static final Set<String> MULTI_MONTH_PARAMETERS = Set.of("input.files", "output.dir", "months.threads", "metrics.file");
+
+	static final List<String> MONTH_PARAMETERS = List.of("input.file", "data.year", "data.month", "output.file", "skip.file");
+
+	@Override
+	public JobParameters getJobParameters(Job job, StepExecution stepExecution) {
+		JobParametersBuilder builder = new JobParametersBuilder();
+		for (Map.Entry<String, JobParameter<?>> parameter : stepExecution.getJobParameters().getParameters().entrySet()) {
+			if (!MULTI_MONTH_PARAMETERS.contains(parameter.getKey()) && !MONTH_PARAMETERS.contains(parameter.getKey())) {
+				builder.addJobParameter(parameter.getKey(), parameter.getValue());
+			}
+		}
+		ExecutionContext context = stepExecution.getExecutionContext();
+		for (String name : MONTH_PARAMETERS) {
+			builder.addString(name, context.getString(name));
+		}
+		return builder.toJobParameters();
+	}
+
+}
@@ -0,0 +1,108 @@
+package com.gustavo.billingjob.config;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+
+// Cria uma partição por arquivo de entrada do MultiMonthBillingJob. O ano e o mês de cada arquivo são obtidos do
+// nome (ex.: billing-2023-03.csv), e o relatório e o arquivo de skips do mês são gravados em output.dir com os
+// nomes billing-report-AAAA-MM.csv e billing-data-skip-AAAA-MM.psv. Um arquivo de entrada compactado gera um
+// relatório compactado no mesmo formato.
+// Cada ExecutionContext contém os parâmetros do BillingJob do mês (input.file, data.year, data.month,
+// output.file e skip.file), usados pelo MonthJobParametersExtractor.
+public class MonthPartitioner implements Partitioner {
+
+	private static final Pattern YEAR_MONTH = Pattern.compile("(\\d{4})-(\\d{2})");
+
+	private static final String GLOB_CHARACTERS = "*?[{";
+
+	private final List<Path> inputFiles;
+
+	private final Path outputDir;
+
+	public MonthPartitioner(String inputFiles, String outputDir) {
+		this.inputFiles = resolveInputFiles(inputFiles);
+		this.outputDir = Paths.get(outputDir);
+	}
+
+	// input.files é uma lista separada por vírgulas de arquivos ou padrões glob no nome do arquivo
+	// (ex.: input/billing-2023-*.csv). O resultado é ordenado e sem repetições.
+	public static List<Path> resolveInputFiles(String inputFiles) {
+		TreeSet<Path> files = new TreeSet<>();
+		for (String entry : inputFiles.split(",")) {
+			String pattern = entry.trim();
+			if (pattern.isEmpty()) {
+				continue;
+			}
+			Path path = Paths.get(pattern);
+			String fileName = path.getFileName().toString();
+			if (fileName.chars().noneMatch(c -> GLOB_CHARACTERS.indexOf(c) >= 0)) {
+				files.add(path);
+				continue;
+			}
+			Path dir = path.getParent() != null ? path.getParent() : Paths.get(".");
+			try (DirectoryStream<Path> matches = Files.newDirectoryStream(dir, fileName)) {
+				for (Path match : matches) {
+					if (Files.isRegularFile(match)) {
+						files.add(path.getParent() != null ? match : match.getFileName());
+					}
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return new ArrayList<>(files);
+	}
+
+	// Ano e mês indicados no nome do arquivo, ou null se o nome não contém AAAA-MM.
+	public static YearMonth yearMonth(Path inputFile) {
+		Matcher matcher = YEAR_MONTH.matcher(inputFile.getFileName().toString());
+		if (!matcher.find()) {
+			return null;
+		}
+		int month = Integer.parseInt(matcher.group(2));
+		if (month < 1 || month > 12) {
+			return null;
+		}
+		return YearMonth.of(Integer.parseInt(matcher.group(1)), month);
+	}
+
+	// O gridSize fornecido pelo PartitionHandler é ignorado: há uma partição por arquivo.
+	@Override
+	public Map<String, ExecutionContext> partition(int gridSize) {
+		Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+		for (Path inputFile : this.inputFiles) {
+			YearMonth month = yearMonth(inputFile);
+			if (month == null) {
+				throw new IllegalArgumentException("Unable to find year and month in input file name " + inputFile);
+			}
+			String reportName = "billing-report-" + month + ".csv" + FileCompression.of(inputFile.toString()).extension();
+			ExecutionContext context = new ExecutionContext();
+			context.putString("input.file", inputFile.toString());
+			context.putString("data.year", String.valueOf(month.getYear()));
+			context.putString("data.month", String.valueOf(month.getMonthValue()));
+			context.putString("output.file", this.outputDir.resolve(reportName).toString());
+			context.putString("skip.file", this.outputDir.resolve("billing-data-skip-" + month + ".psv").toString());
+			// a chave identifica a partição no nome da execução do step (monthlyBillingWorker:2023-03)
+			if (partitions.put(month.toString(), context) != null) {
+				throw new IllegalArgumentException("More than one input file for " + month);
+			}
+		}
+		return partitions;
+	}
+
+}
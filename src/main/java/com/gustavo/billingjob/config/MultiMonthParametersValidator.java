@@ -0,0 +1,59 @@
+package com.gustavo.billingjob.config;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersInvalidException;
+import org.springframework.batch.core.JobParametersValidator;
+
+// Valida os parâmetros do MultiMonthBillingJob. Os demais parâmetros (ex.: ingestion.mode) são repassados ao
+// BillingJob de cada mês e validados pelo ParametersValidator.
+public class MultiMonthParametersValidator implements JobParametersValidator {
+
+	@Override
+	public void validate(JobParameters jobParameters) throws JobParametersInvalidException {
+		String inputFiles = jobParameters.getString("input.files");
+		String outputDir = jobParameters.getString("output.dir");
+
+		if(inputFiles == null || inputFiles.isEmpty()) {
+			throw new JobParametersInvalidException("The 'input.files' parameter is required.");
+		} else if(outputDir == null || outputDir.isEmpty()) {
+			throw new JobParametersInvalidException("The 'output.dir' parameter is required.");
+		}
+
+		String threads = jobParameters.getString("months.threads");
+		if(threads != null && !threads.isEmpty()) {
+			boolean valid;
+			try {
+				valid = Integer.parseInt(threads) > 0;
+			} catch (NumberFormatException e) {
+				valid = false;
+			}
+			if(!valid) {
+				throw new JobParametersInvalidException("The 'months.threads' parameter is not a valid positive integer.");
+			}
+		}
+
+		List<Path> files = MonthPartitioner.resolveInputFiles(inputFiles);
+		if(files.isEmpty()) {
+			throw new JobParametersInvalidException("The 'input.files' parameter does not match any file.");
+		}
+		Set<YearMonth> months = new HashSet<>();
+		for(Path file : files) {
+			YearMonth month = MonthPartitioner.yearMonth(file);
+			if(!Files.isRegularFile(file)) {
+				throw new JobParametersInvalidException("The input file " + file + " does not exist.");
+			} else if(month == null) {
+				throw new JobParametersInvalidException("The input file name " + file + " does not contain the year and month (yyyy-MM).");
+			} else if(!months.add(month)) {
+				throw new JobParametersInvalidException("The 'input.files' parameter has more than one file for " + month + ".");
+			}
+		}
+	}
+
+}
@@ -0,0 +1,66 @@
+package com.gustavo.billingjob.config;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
+import org.springframework.batch.core.step.item.ChunkOrientedTasklet;
+import org.springframework.batch.core.step.item.SimpleChunkProcessor;
+import org.springframework.batch.core.step.item.SimpleChunkProvider;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemWriter;
+
+// Processador de chunks do report.mode=async: depois que todos os itens do chunk foram enviados ao
+// OrderedAsyncItemProcessor, aguarda os resultados e retira do chunk de saída os itens filtrados pelo delegate
+// (resultado nulo). Assim o SimpleChunkProcessor conta esses itens no filterCount, e não no writeCount, como no step3.
+// Os resultados com falha são mantidos no chunk, e a exceção é relançada pelo OrderedAsyncItemWriter.
+public class OrderedAsyncChunkProcessor<I, O> extends SimpleChunkProcessor<I, Future<O>> {
+
+	public OrderedAsyncChunkProcessor(ItemProcessor<? super I, ? extends Future<O>> itemProcessor,
+			ItemWriter<? super Future<O>> itemWriter) {
+		super(itemProcessor, itemWriter);
+	}
+
+	@Override
+	protected Chunk<Future<O>> transform(StepContribution contribution, Chunk<I> inputs) throws Exception {
+		Chunk<Future<O>> outputs = super.transform(contribution, inputs);
+		for (Chunk<Future<O>>.ChunkIterator iterator = outputs.iterator(); iterator.hasNext();) {
+			if (isFiltered(iterator.next())) {
+				iterator.remove();
+			}
+		}
+		return outputs;
+	}
+
+	private static boolean isFiltered(Future<?> result) throws InterruptedException {
+		try {
+			return result.get() == null;
+		} catch (ExecutionException e) {
+			return false;
+		}
+	}
+
+	// SimpleStepBuilder que monta o step com o OrderedAsyncChunkProcessor no lugar do SimpleChunkProcessor; reader,
+	// processor, writer, listeners e política de chunks são os configurados no builder de origem.
+	public static class OrderedAsyncStepBuilder<I, O> extends SimpleStepBuilder<I, Future<O>> {
+
+		public OrderedAsyncStepBuilder(SimpleStepBuilder<I, Future<O>> parent) {
+			super(parent);
+		}
+
+		@Override
+		protected Tasklet createTasklet() {
+			SimpleChunkProvider<I> chunkProvider = new SimpleChunkProvider<>(getReader(), createChunkOperations());
+			OrderedAsyncChunkProcessor<I, O> chunkProcessor = new OrderedAsyncChunkProcessor<>(getProcessor(), getWriter());
+			chunkProvider.setListeners(new ArrayList<>(getItemListeners()));
+			chunkProcessor.setListeners(new ArrayList<>(getItemListeners()));
+			return new ChunkOrientedTasklet<>(chunkProvider, chunkProcessor);
+		}
+
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.gustavo.billingjob.config;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+// Executa o processamento dos itens em segundo plano, no estilo do AsyncItemProcessor do Spring Batch Integration:
+// process devolve imediatamente um Future com o resultado, que é aguardado pelo OrderedAsyncItemWriter na ordem
+// de leitura dos itens.
+// - Em Java 21+ cada item é processado em uma virtual thread; em Java 17 é usado um pool fixo de threads.
+// - No máximo maxInFlight itens ficam em processamento ao mesmo tempo; acima disso a thread do step aguarda.
+// - O RetryTemplate é aplicado a cada item, assim uma falha repete apenas o item que falhou e não o chunk inteiro.
+// Se o delegate for um StepExecutionListener, os eventos do step são repassados a ele. Como no AsyncItemProcessor, a
+// execução do step é registrada no StepSynchronizationManager da thread que processa o item.
+// Deve ser criado por execução de step (@StepScope), pois o executor é criado em beforeStep e encerrado em afterStep.
+public class OrderedAsyncItemProcessor<I, O> implements ItemProcessor<I, Future<O>>, StepExecutionListener {
+
+	private final ItemProcessor<I, O> delegate;
+
+	private final RetryTemplate retryTemplate;
+
+	private final int threads;
+
+	private final Semaphore inFlight;
+
+	private ExecutorService executor;
+
+	private StepExecution stepExecution;
+
+	public OrderedAsyncItemProcessor(ItemProcessor<I, O> delegate, RetryTemplate retryTemplate, int threads,
+			int maxInFlight) {
+		this.delegate = delegate;
+		this.retryTemplate = retryTemplate;
+		this.threads = threads;
+		this.inFlight = new Semaphore(maxInFlight);
+	}
+
+	@Override
+	public void beforeStep(StepExecution stepExecution) {
+		this.stepExecution = stepExecution;
+		this.executor = newExecutor(this.threads, stepExecution.getStepName() + "-");
+		if (this.delegate instanceof StepExecutionListener listener) {
+			listener.beforeStep(stepExecution);
+		}
+	}
+
+	@Override
+	public ExitStatus afterStep(StepExecution stepExecution) {
+		this.executor.shutdownNow();
+		try {
+			this.executor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (this.delegate instanceof StepExecutionListener listener) {
+			return listener.afterStep(stepExecution);
+		}
+		return null;
+	}
+
+	@Override
+	public Future<O> process(I item) throws Exception {
+		this.inFlight.acquire();
+		CompletableFuture<O> result = new CompletableFuture<>();
+		try {
+			this.executor.execute(() -> {
+				StepSynchronizationManager.register(this.stepExecution);
+				try {
+					result.complete(this.retryTemplate.execute(context -> this.delegate.process(item)));
+				} catch (Throwable e) {
+					result.completeExceptionally(e);
+				} finally {
+					StepSynchronizationManager.close();
+					this.inFlight.release();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			this.inFlight.release();
+			throw e;
+		}
+		return result;
+	}
+
+	// Usa Executors.newVirtualThreadPerTaskExecutor quando disponível (Java 21+); o projeto é compilado para Java 17,
+	// por isso o método é obtido por reflexão.
+	private static ExecutorService newExecutor(int threads, String threadNamePrefix) {
+		try {
+			Method virtualExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) virtualExecutor.invoke(null);
+		} catch (NoSuchMethodException e) {
+			return Executors.newFixedThreadPool(threads, new CustomizableThreadFactory(threadNamePrefix));
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Unable to create virtual thread executor", e);
+		}
+	}
+
+}
@@ -0,0 +1,66 @@
+package com.gustavo.billingjob.config;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.item.ItemWriter;
+
+// Aguarda os resultados produzidos pelo OrderedAsyncItemProcessor na ordem do chunk e grava os itens no delegate,
+// preservando no arquivo a ordem de leitura. Resultados nulos (itens filtrados pelo processador) são descartados;
+// no asyncStep3 eles já foram retirados do chunk e contados no filterCount pelo OrderedAsyncChunkProcessor.
+// Uma falha no processamento de um item é relançada aqui e provoca o rollback do chunk.
+// Os eventos de ItemStream são repassados ao delegate, que não precisa ser registrado no step.
+public class OrderedAsyncItemWriter<T> implements ItemStreamWriter<Future<T>> {
+
+	private final ItemWriter<T> delegate;
+
+	public OrderedAsyncItemWriter(ItemWriter<T> delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void write(Chunk<? extends Future<T>> items) throws Exception {
+		Chunk<T> results = new Chunk<>();
+		for (Future<T> future : items) {
+			T result;
+			try {
+				result = future.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof Exception cause) {
+					throw cause;
+				}
+				throw e;
+			}
+			if (result != null) {
+				results.add(result);
+			}
+		}
+		this.delegate.write(results);
+	}
+
+	@Override
+	public void open(ExecutionContext executionContext) {
+		if (this.delegate instanceof ItemStream stream) {
+			stream.open(executionContext);
+		}
+	}
+
+	@Override
+	public void update(ExecutionContext executionContext) {
+		if (this.delegate instanceof ItemStream stream) {
+			stream.update(executionContext);
+		}
+	}
+
+	@Override
+	public void close() {
+		if (this.delegate instanceof ItemStream stream) {
+			stream.close();
+		}
+	}
+
+}
@@ -34,6 +34,85 @@ public class ParametersValidator implements JobParametersValidator {
 	     } catch (NumberFormatException e) {
 	    	 throw new JobParametersInvalidException("The 'data.month' parameter is not a valid integer.");
 	     }
+		 
+		 validateOptionalPositiveInteger(jobParameters, "ingestion.partitions");
+		 validateOptionalPositiveInteger(jobParameters, "ingestion.threads");
+		 validateOptionalPositiveInteger(jobParameters, "report.partitions");
+		 validateOptionalPositiveInteger(jobParameters, "report.threads");
+		 validateOptionalPositiveInteger(jobParameters, "report.async.threads");
+		 validateOptionalPositiveInteger(jobParameters, "report.async.max-in-flight");
+		 
+		 validateOptionalChoice(jobParameters, "job.mode", "staged", "streaming");
+		 validateOptionalChoice(jobParameters, "streaming.tee", "true", "false");
+		 validateOptionalChoice(jobParameters, "ingestion.mode", "default", "partitioned");
+		 validateOptionalChoice(jobParameters, "ingestion.reader", "flat", "mapped");
+		 validateOptionalChoice(jobParameters, "ingestion.writer", "jdbc", "copy");
+		 validateOptionalChoice(jobParameters, "ingestion.delta", "true", "false");
+		 validateOptionalChoice(jobParameters, "report.mode", "default", "partitioned", "sql", "async", "batch");
+		 validateOptionalChoice(jobParameters, "report.accounts", "true", "false");
+		 validateOptionalChoice(jobParameters, "ingestion.columnar", "true", "false");
+		 validateOptionalChoice(jobParameters, "report.reader", "table", "columnar");
+
+		 // O arquivo colunar do mês é gravado por um único step de ingestão, com todas as linhas do arquivo de entrada.
+		 if("true".equalsIgnoreCase(jobParameters.getString("ingestion.columnar"))) {
+			 if("partitioned".equalsIgnoreCase(jobParameters.getString("ingestion.mode"))) {
+				 throw new JobParametersInvalidException("The 'ingestion.columnar' parameter cannot be used with the partitioned 'ingestion.mode'.");
+			 } else if("true".equalsIgnoreCase(jobParameters.getString("ingestion.delta"))) {
+				 throw new JobParametersInvalidException("The 'ingestion.columnar' parameter cannot be used with 'ingestion.delta'.");
+			 }
+		 }
+		 // O arquivo colunar substitui apenas o billingDataTableReader, usado pelos modos default, async e batch.
+		 String reportMode = jobParameters.getString("report.mode");
+		 if("columnar".equalsIgnoreCase(jobParameters.getString("report.reader"))
+				 && ("partitioned".equalsIgnoreCase(reportMode) || "sql".equalsIgnoreCase(reportMode))) {
+			 throw new JobParametersInvalidException("The 'report.reader' parameter cannot be columnar with the '" + reportMode + "' 'report.mode'.");
+		 }
+
+		 // O relatório por conta é lido da tabela BILLING_DATA, que não é carregada com job.mode=streaming.
+		 if("streaming".equalsIgnoreCase(jobParameters.getString("job.mode"))
+				 && "true".equalsIgnoreCase(jobParameters.getString("report.accounts"))) {
+			 throw new JobParametersInvalidException("The 'report.accounts' parameter requires the staged 'job.mode'.");
+		 }
+
+		 // A leitura particionada e o MappedBillingDataItemReader acessam o arquivo por posições em bytes, o que não
+		 // é possível em um arquivo compactado.
+		 if(FileCompression.of(inputFile) != FileCompression.NONE) {
+			 if("partitioned".equalsIgnoreCase(jobParameters.getString("ingestion.mode"))) {
+				 throw new JobParametersInvalidException("The 'ingestion.mode' parameter cannot be partitioned for a compressed 'input.file'.");
+			 } else if("mapped".equalsIgnoreCase(jobParameters.getString("ingestion.reader"))) {
+				 throw new JobParametersInvalidException("The 'ingestion.reader' parameter cannot be mapped for a compressed 'input.file'.");
+			 }
+		 }
+	}
+	
+	// Parâmetros opcionais de seleção de modo devem conter um dos valores suportados (sem diferenciar maiúsculas).
+	private void validateOptionalChoice(JobParameters jobParameters, String name, String... choices) throws JobParametersInvalidException {
+		String value = jobParameters.getString(name);
+		if(value == null || value.isEmpty()) {
+			return;
+		}
+		for(String choice : choices) {
+			if(choice.equalsIgnoreCase(value.trim())) {
+				return;
+			}
+		}
+		throw new JobParametersInvalidException("The '" + name + "' parameter must be one of " + String.join(", ", choices) + ".");
+	}
+	
+	// Parâmetros opcionais de ajuste (ex.: número de partições e de threads) devem ser inteiros positivos quando informados.
+	private void validateOptionalPositiveInteger(JobParameters jobParameters, String name) throws JobParametersInvalidException {
+		String value = jobParameters.getString(name);
+		if(value == null || value.isEmpty()) {
+			return;
+		}
+		try {
+			if(Integer.parseInt(value) > 0) {
+				return;
+			}
+		} catch (NumberFormatException e) {
+			// tratado abaixo
+		}
+		throw new JobParametersInvalidException("The '" + name + "' parameter is not a valid positive integer.");
 	}
 
 }
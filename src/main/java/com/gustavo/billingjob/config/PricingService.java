@@ -1,8 +1,22 @@
 package com.gustavo.billingjob.config;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+import org.springframework.retry.support.RetryTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 
 public class PricingService {
 
@@ -15,8 +29,47 @@ public class PricingService {
 	@Value("${spring.cellular.pricing.sms:0.1}")
 	private float smsPricing;
 
+	// Tempo de validade do snapshot de preços; zero (padrão) mantém o snapshot até a próxima chamada de refresh().
+	@Value("${spring.cellular.pricing.ttl:0s}")
+	private Duration ttl = Duration.ZERO;
+
+	@Value("${spring.cellular.pricing.refresh.max-attempts:10}")
+	private int refreshMaxAttempts = 10;
+
 	private final Random random = new Random();
 
+	private final AtomicLong version = new AtomicLong();
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder refreshes = new LongAdder();
+
+	private final LongAdder failures = new LongAdder();
+
+	private volatile PricingSnapshot snapshot;
+
+	private RetryTemplate retryTemplate;
+
+	// Tempo gasto nas cargas do snapshot, incluindo as tentativas repetidas e o backoff.
+	private final Timer refreshTimer;
+
+	// Tentativas de carga que falharam com PricingException.
+	private final Counter retryCounter;
+
+	// Sem um MeterRegistry, as métricas são publicadas no registry global do Micrometer.
+	public PricingService() {
+		this(Metrics.globalRegistry);
+	}
+
+	public PricingService(MeterRegistry meterRegistry) {
+		this.refreshTimer = Timer.builder("billing.pricing.refresh")
+				.publishPercentiles(0.5, 0.95, 0.99)
+				.register(meterRegistry);
+		this.retryCounter = Counter.builder("billing.pricing.retries").register(meterRegistry);
+		FunctionCounter.builder("billing.pricing.hits", this.hits, LongAdder::sum).register(meterRegistry);
+	}
+
+	// Simula a consulta ao serviço remoto de tarifas, que falha em cerca de 1 a cada 7 chamadas.
 	public float getDataPricing() {
 		if (this.random.nextInt(1000) % 7 == 0) {
 			throw new PricingException("Error while retrieving data pricing");
@@ -31,4 +84,91 @@ public class PricingService {
 	public float getSmsPricing() {
 		return this.smsPricing;
 	}
+
+	// Retorna o snapshot de preços atual, carregando-o quando ainda não existe ou quando o TTL expirou.
+	// Os itens são precificados a partir do snapshot, sem chamadas ao serviço remoto.
+	public PricingSnapshot getSnapshot() {
+		PricingSnapshot current = this.snapshot;
+		if (current == null || isExpired(current)) {
+			synchronized (this) {
+				current = this.snapshot;
+				if (current == null || isExpired(current)) {
+					current = refresh();
+				}
+			}
+		}
+		this.hits.increment();
+		return current;
+	}
+
+	// RetryListener para RetryTemplates que repetem chamadas ao serviço de tarifas fora do PricingService (ex.: a
+	// repetição por item do OrderedAsyncItemProcessor): cada PricingException é contada em billing.pricing.retries,
+	// como as tentativas de carga do snapshot.
+	public RetryListener retryListener() {
+		return new RetryListener() {
+			@Override
+			public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback,
+					Throwable throwable) {
+				if (throwable instanceof PricingException) {
+					PricingService.this.retryCounter.increment();
+				}
+			}
+		};
+	}
+
+	// Registra um item precificado a partir de um snapshot obtido anteriormente (ver BillingDataProcessor).
+	public void recordHit() {
+		this.hits.increment();
+	}
+
+	// Carrega um novo snapshot do serviço remoto. As falhas (PricingException) são repetidas com backoff
+	// exponencial apenas aqui; se todas as tentativas falharem, a exceção é propagada.
+	// O version só é consumido por uma carga concluída, assim as versões dos snapshots são consecutivas.
+	public synchronized PricingSnapshot refresh() {
+		long nextVersion = this.version.get() + 1;
+		PricingSnapshot loaded = this.refreshTimer.record(() -> retryTemplate().execute(context -> new PricingSnapshot(
+				nextVersion, getDataPricing(), getCallPricing(), getSmsPricing(), Instant.now())));
+		this.version.set(nextVersion);
+		this.refreshes.increment();
+		this.snapshot = loaded;
+		return loaded;
+	}
+
+	private boolean isExpired(PricingSnapshot current) {
+		return !this.ttl.isZero() && current.loadedAt().plus(this.ttl).isBefore(Instant.now());
+	}
+
+	private RetryTemplate retryTemplate() {
+		if (this.retryTemplate == null) {
+			this.retryTemplate = RetryTemplate.builder()
+					.maxAttempts(this.refreshMaxAttempts)
+					.exponentialBackoff(100, 2, 5000)
+					.retryOn(PricingException.class)
+					.withListener(new RetryListener() {
+						@Override
+						public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback,
+								Throwable throwable) {
+							PricingService.this.failures.increment();
+							PricingService.this.retryCounter.increment();
+						}
+					})
+					.build();
+		}
+		return this.retryTemplate;
+	}
+
+	// Quantidade de itens precificados a partir do snapshot.
+	public long getHitCount() {
+		return this.hits.sum();
+	}
+
+	// Quantidade de snapshots carregados com sucesso.
+	public long getRefreshCount() {
+		return this.refreshes.sum();
+	}
+
+	// Quantidade de tentativas de carga que falharam (e foram repetidas ou propagadas).
+	public long getFailureCount() {
+		return this.failures.sum();
+	}
 }
@@ -0,0 +1,13 @@
+package com.gustavo.billingjob.config;
+
+import java.time.Instant;
+
+// Cópia imutável dos preços obtidos do serviço de tarifas. O version é incrementado a cada atualização,
+// permitindo identificar com quais preços um relatório foi gerado.
+public record PricingSnapshot(
+		long version,
+		float dataPricing,
+		float callPricing,
+		float smsPricing,
+		Instant loadedAt) {
+}
@@ -0,0 +1,45 @@
+package com.gustavo.billingjob.config;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+
+public class ReportMergeTasklet implements Tasklet {
+
+	// Concatena os arquivos parciais da geração de relatório particionada no arquivo output.file,
+	// na ordem das partições (ou seja, na ordem crescente de ACCOUNT_ID), e remove os arquivos parciais.
+	@Override
+	public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+		JobParameters jobParameters = contribution.getStepExecution().getJobParameters();
+		String outputFile = jobParameters.getString("output.file");
+		int partitions = Integer.parseInt(jobParameters.getString("report.partitions", "4"));
+		Path target = Paths.get(outputFile);
+		try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			for (int i = 0; i < partitions; i++) {
+				Path part = Paths.get(AccountRangePartitioner.partFile(outputFile, i));
+				try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ)) {
+					long position = 0;
+					long size = in.size();
+					// transferTo pode transferir menos bytes do que o solicitado
+					while (position < size) {
+						position += in.transferTo(position, size - position, out);
+					}
+				}
+			}
+		}
+		for (int i = 0; i < partitions; i++) {
+			Files.deleteIfExists(Paths.get(AccountRangePartitioner.partFile(outputFile, i)));
+		}
+		return RepeatStatus.FINISHED;
+	}
+
+}
@@ -0,0 +1,27 @@
+package com.gustavo.billingjob.config;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.springframework.jdbc.core.RowMapper;
+
+// Mapeia as linhas da consulta de relatório calculada no banco (report.mode=sql) diretamente para ReportingData,
+// acessando as colunas por posição, sem reflexão.
+// O BILLING_TOTAL é calculado como REAL e lido com getFloat, assim o valor gravado no relatório é o mesmo double
+// produzido pelo BillingDataProcessor (aritmética em float convertida para double).
+public class ReportingDataRowMapper implements RowMapper<ReportingData> {
+
+	@Override
+	public ReportingData mapRow(ResultSet rs, int rowNum) throws SQLException {
+		BillingData billingData = new BillingData(
+				rs.getInt(1),
+				rs.getInt(2),
+				rs.getInt(3),
+				rs.getString(4),
+				rs.getFloat(5),
+				rs.getInt(6),
+				rs.getInt(7));
+		return new ReportingData(billingData, rs.getFloat(8));
+	}
+
+}
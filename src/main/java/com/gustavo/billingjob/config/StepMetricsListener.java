@@ -0,0 +1,224 @@
+package com.gustavo.billingjob.config;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.ItemProcessListener;
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.Chunk;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+// Publica no Micrometer as métricas de throughput e latência de um step orientado a chunks:
+// - billing.step.items (tag type=read|written|filtered|skipped): itens por tipo, atualizados ao final de cada chunk
+//   a partir dos contadores do StepExecution (o registry de logging os apresenta como taxa por segundo);
+// - billing.chunk.duration (tag status=committed|rolledback): duração da transação de cada chunk, até o fim do commit;
+// - billing.chunk.commit: duração apenas do commit de cada chunk;
+// - billing.chunk.phase (tag phase=read|process|write): tempo gasto em cada fase dentro de cada chunk.
+// Todas as métricas recebem a tag step com o nome do step (sem o sufixo da partição).
+// Deve ser criado por execução de step (@StepScope), pois guarda o estado do chunk em andamento.
+public class StepMetricsListener implements StepExecutionListener, ChunkListener, ItemReadListener<Object>,
+		ItemProcessListener<Object, Object>, ItemWriteListener<Object> {
+
+	private static final double[] PERCENTILES = { 0.5, 0.95, 0.99 };
+
+	private final MeterRegistry meterRegistry;
+
+	private StepExecution stepExecution;
+
+	private Counter readCounter;
+
+	private Counter writtenCounter;
+
+	private Counter filteredCounter;
+
+	private Counter skippedCounter;
+
+	private Timer committedTimer;
+
+	private Timer rolledBackTimer;
+
+	private Timer commitTimer;
+
+	private Timer readTimer;
+
+	private Timer processTimer;
+
+	private Timer writeTimer;
+
+	private long lastRead;
+
+	private long lastWritten;
+
+	private long lastFiltered;
+
+	private long lastSkipped;
+
+	private long chunkStart;
+
+	private long commitStart;
+
+	private long phaseStart;
+
+	private long readNanos;
+
+	private long processNanos;
+
+	private long writeNanos;
+
+	public StepMetricsListener(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+
+	@Override
+	public void beforeStep(StepExecution stepExecution) {
+		this.stepExecution = stepExecution;
+		String stepName = stepExecution.getStepName();
+		int partition = stepName.indexOf(':');
+		Tags tags = Tags.of("step", partition < 0 ? stepName : stepName.substring(0, partition));
+		this.readCounter = itemCounter(tags, "read");
+		this.writtenCounter = itemCounter(tags, "written");
+		this.filteredCounter = itemCounter(tags, "filtered");
+		this.skippedCounter = itemCounter(tags, "skipped");
+		this.committedTimer = histogram("billing.chunk.duration", tags.and("status", "committed"));
+		this.rolledBackTimer = histogram("billing.chunk.duration", tags.and("status", "rolledback"));
+		this.commitTimer = histogram("billing.chunk.commit", tags);
+		this.readTimer = phaseTimer(tags, "read");
+		this.processTimer = phaseTimer(tags, "process");
+		this.writeTimer = phaseTimer(tags, "write");
+	}
+
+	@Override
+	public ExitStatus afterStep(StepExecution stepExecution) {
+		updateItemCounters();
+		return null;
+	}
+
+	// O chunk é medido pela própria transação: beforeCommit marca o início do commit e afterCompletion registra a
+	// duração e o status (commit ou rollback) do chunk.
+	@Override
+	public void beforeChunk(ChunkContext context) {
+		this.readNanos = 0;
+		this.processNanos = 0;
+		this.writeNanos = 0;
+		this.commitStart = 0;
+		this.chunkStart = System.nanoTime();
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void beforeCommit(boolean readOnly) {
+					StepMetricsListener.this.commitStart = System.nanoTime();
+				}
+
+				@Override
+				public void afterCompletion(int status) {
+					recordChunk(status == STATUS_COMMITTED);
+				}
+			});
+		}
+	}
+
+	@Override
+	public void beforeRead() {
+		this.phaseStart = System.nanoTime();
+	}
+
+	@Override
+	public void afterRead(Object item) {
+		this.readNanos += System.nanoTime() - this.phaseStart;
+	}
+
+	@Override
+	public void onReadError(Exception ex) {
+		this.readNanos += System.nanoTime() - this.phaseStart;
+	}
+
+	@Override
+	public void beforeProcess(Object item) {
+		this.phaseStart = System.nanoTime();
+	}
+
+	@Override
+	public void afterProcess(Object item, Object result) {
+		this.processNanos += System.nanoTime() - this.phaseStart;
+	}
+
+	@Override
+	public void onProcessError(Object item, Exception e) {
+		this.processNanos += System.nanoTime() - this.phaseStart;
+	}
+
+	@Override
+	public void beforeWrite(Chunk<? extends Object> items) {
+		this.phaseStart = System.nanoTime();
+	}
+
+	@Override
+	public void afterWrite(Chunk<? extends Object> items) {
+		this.writeNanos += System.nanoTime() - this.phaseStart;
+	}
+
+	@Override
+	public void onWriteError(Exception exception, Chunk<? extends Object> items) {
+		this.writeNanos += System.nanoTime() - this.phaseStart;
+	}
+
+	private void recordChunk(boolean committed) {
+		long end = System.nanoTime();
+		(committed ? this.committedTimer : this.rolledBackTimer).record(end - this.chunkStart, TimeUnit.NANOSECONDS);
+		if (committed && this.commitStart != 0) {
+			this.commitTimer.record(end - this.commitStart, TimeUnit.NANOSECONDS);
+		}
+		this.readTimer.record(this.readNanos, TimeUnit.NANOSECONDS);
+		this.processTimer.record(this.processNanos, TimeUnit.NANOSECONDS);
+		this.writeTimer.record(this.writeNanos, TimeUnit.NANOSECONDS);
+		updateItemCounters();
+	}
+
+	// Incrementa os contadores com a diferença desde a última atualização, assim os valores refletem exatamente
+	// os contadores do StepExecution (inclusive após rollbacks e reprocessamento de chunks).
+	private void updateItemCounters() {
+		long read = this.stepExecution.getReadCount();
+		long written = this.stepExecution.getWriteCount();
+		long filtered = this.stepExecution.getFilterCount();
+		long skipped = this.stepExecution.getSkipCount();
+		this.readCounter.increment(read - this.lastRead);
+		this.writtenCounter.increment(written - this.lastWritten);
+		this.filteredCounter.increment(filtered - this.lastFiltered);
+		this.skippedCounter.increment(skipped - this.lastSkipped);
+		this.lastRead = read;
+		this.lastWritten = written;
+		this.lastFiltered = filtered;
+		this.lastSkipped = skipped;
+	}
+
+	private Counter itemCounter(Tags tags, String type) {
+		return Counter.builder("billing.step.items").tags(tags).tag("type", type).register(this.meterRegistry);
+	}
+
+	private Timer histogram(String name, Tags tags) {
+		return Timer.builder(name)
+			.tags(tags)
+			.publishPercentiles(PERCENTILES)
+			.publishPercentileHistogram()
+			.register(this.meterRegistry);
+	}
+
+	private Timer phaseTimer(Tags tags, String phase) {
+		return Timer.builder("billing.chunk.phase")
+			.tags(tags).tag("phase", phase)
+			.publishPercentiles(PERCENTILES)
+			.register(this.meterRegistry);
+	}
+
+}
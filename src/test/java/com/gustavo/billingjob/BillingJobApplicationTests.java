@@ -51,8 +51,8 @@ class BillingJobApplicationTests {
    		// Limpa todas as execuções de trabalho (job executions) antes de cada teste, para que cada execução tenha um esquema novo 
    		// e não seja afetada pelos metadados de outros testes.
 		this.jobRepositoryTestUtils.removeJobExecutions();
-		// Exclui todas as linhas da tabela BILLING_DATA antes de cada teste
-		JdbcTestUtils.deleteFromTables(this.jdbcTemplate, "BILLING_DATA");
+		// Exclui todas as linhas das tabelas BILLING_DATA e BILLING_FILE antes de cada teste
+		JdbcTestUtils.deleteFromTables(this.jdbcTemplate, "BILLING_DATA", "BILLING_FILE");
 	}
 
 	@Test
@@ -0,0 +1,196 @@
+package com.gustavo.billingjob;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.batch.test.JobRepositoryTestUtils;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.jdbc.JdbcTestUtils;
+
+import com.gustavo.billingjob.config.BillingFileRegistry;
+import com.gustavo.billingjob.config.FileFingerprint;
+
+// Verifica as transições do fluxo do BillingJob (steps executados e status final) e o restart após falhas,
+// usando um banco H2 em memória no lugar do PostgreSQL (ver application-h2.properties).
+@SpringBatchTest
+@SpringBootTest
+@ActiveProfiles("h2")
+class BillingJobFlowTests {
+
+	@Autowired
+	private JobLauncherTestUtils jobLauncherTestUtils;
+
+	@Autowired
+	private JobRepositoryTestUtils jobRepositoryTestUtils;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@TempDir
+	Path tempDir;
+
+	private BatchStatus status;
+
+	private List<String> stepNames;
+
+	private BatchStatus stepStatus;
+
+	@BeforeEach
+	public void setUp() {
+		this.jobRepositoryTestUtils.removeJobExecutions();
+		JdbcTestUtils.deleteFromTables(this.jdbcTemplate, "BILLING_DATA", "BILLING_FILE");
+	}
+
+	@Test
+	void testFailedFilePreparationFailsJob() throws Exception {
+		// when
+		runJob(jobParameters(this.tempDir.resolve("billing-2023-01.csv").toString()));
+
+		// then
+		Assertions.assertEquals(BatchStatus.FAILED, this.status);
+		Assertions.assertEquals(List.of("filePreparation"), this.stepNames);
+	}
+
+	@Test
+	void testUnchangedInputSkipsIngestion() throws Exception {
+		// when
+		runJob(jobParameters("input/billing-2023-01.csv"));
+		BatchStatus firstStatus = this.status;
+		List<String> firstSteps = this.stepNames;
+		runJob(jobParameters("input/billing-2023-01.csv"));
+
+		// then
+		Assertions.assertEquals(BatchStatus.COMPLETED, firstStatus);
+		Assertions.assertTrue(firstSteps.contains("fileRegistration"), firstSteps.toString());
+		Assertions.assertEquals(FileFingerprint.of(Paths.get("input/billing-2023-01.csv")),
+				new BillingFileRegistry(this.jdbcTemplate.getDataSource()).find("billing-2023-01.csv", 2023, 1));
+		Assertions.assertEquals(BatchStatus.COMPLETED, this.status);
+		Assertions.assertEquals(List.of("filePreparation", "reportGeneration"), this.stepNames);
+		Assertions.assertEquals(1000, JdbcTestUtils.countRowsInTable(this.jdbcTemplate, "BILLING_DATA"));
+	}
+
+	@Test
+	void testFailedReportFailsJobWithoutAccountReport() throws Exception {
+		// given: o diretório do relatório não pode ser criado, pois é um arquivo
+		Path notADirectory = Files.createFile(this.tempDir.resolve("reports"));
+		JobParameters jobParameters = new JobParametersBuilder(jobParameters("input/billing-2023-01.csv"))
+				.addString("output.file", notADirectory.resolve("billing-report-2023-01.csv").toString())
+				.addString("report.accounts", "true")
+				.toJobParameters();
+
+		// when
+		runJob(jobParameters);
+
+		// then
+		Assertions.assertEquals(BatchStatus.FAILED, this.status);
+		Assertions.assertEquals("reportGeneration", this.stepNames.get(this.stepNames.size() - 1));
+		Assertions.assertFalse(this.stepNames.contains("accountReport"));
+	}
+
+	@Test
+	void testFailedTeeFailsStreamingStepAndRestartCopiesAllRows() throws Exception {
+		// given: a cópia para a tabela falha enquanto a constraint impede a gravação em BILLING_DATA
+		JobParameters jobParameters = new JobParametersBuilder(jobParameters("input/billing-2023-01.csv"))
+				.addString("job.mode", "streaming")
+				.addString("streaming.tee", "true")
+				.toJobParameters();
+		this.jdbcTemplate.execute("alter table BILLING_DATA add constraint TEE_BLOCKER check (ACCOUNT_ID < 0)");
+
+		// when
+		try {
+			runJob(jobParameters);
+		} finally {
+			this.jdbcTemplate.execute("alter table BILLING_DATA drop constraint TEE_BLOCKER");
+		}
+		BatchStatus firstStatus = this.status;
+		BatchStatus firstStepStatus = this.stepStatus;
+		List<String> partialReport = Files.readAllLines(this.tempDir.resolve("billing-report-2023-01.csv"));
+		runJob(jobParameters);
+		List<String> report = Files.readAllLines(this.tempDir.resolve("billing-report-2023-01.csv"));
+
+		// then
+		Assertions.assertEquals(BatchStatus.FAILED, firstStatus);
+		Assertions.assertEquals(BatchStatus.FAILED, firstStepStatus);
+		Assertions.assertEquals(BatchStatus.COMPLETED, this.status);
+		Assertions.assertEquals(List.of("streamingReportGeneration"), this.stepNames);
+		Assertions.assertEquals(1000, JdbcTestUtils.countRowsInTable(this.jdbcTemplate, "BILLING_DATA"));
+		// o restart gera o relatório desde o início do arquivo, sem repetir as linhas gravadas na primeira execução
+		Assertions.assertEquals(partialReport, report.subList(0, partialReport.size()));
+		Assertions.assertTrue(report.size() > partialReport.size());
+		Assertions.assertEquals(report.size(), Set.copyOf(report).size());
+	}
+
+	@Test
+	void testPartitionedIngestionRecordsGlobalLineNumbersOfSkippedLines() throws Exception {
+		// given: 40 linhas com linhas inválidas em partições diferentes (cerca de 10 linhas por partição)
+		List<String> lines = new ArrayList<>(Files.readAllLines(Paths.get("input/billing-2023-01.csv")).subList(0, 40));
+		for (int lineNumber : List.of(3, 17, 26, 38)) {
+			lines.set(lineNumber - 1, "invalid line " + lineNumber);
+		}
+		Path input = Files.write(this.tempDir.resolve("billing-partitioned-" + System.nanoTime() + ".csv"), lines);
+		Path skipFile = this.tempDir.resolve("billing-data-skip-2023-01.psv");
+		JobParameters jobParameters = new JobParametersBuilder(jobParameters(input.toString()))
+				.addString("ingestion.mode", "partitioned")
+				.addString("ingestion.partitions", "4")
+				.toJobParameters();
+
+		// when
+		try {
+			runJob(jobParameters);
+		} finally {
+			Files.deleteIfExists(Paths.get("staging", input.getFileName().toString()));
+		}
+
+		// then
+		Assertions.assertEquals(BatchStatus.COMPLETED, this.status);
+		Assertions.assertEquals(4, this.stepNames.stream().filter(name -> name.startsWith("fileIngestionWorker:")).count());
+		Assertions.assertEquals(36, JdbcTestUtils.countRowsInTable(this.jdbcTemplate, "BILLING_DATA"));
+		// as partições gravam no arquivo de skips ao mesmo tempo, por isso as linhas são ordenadas pelo número da linha
+		Assertions.assertEquals(List.of("3|invalid line 3", "17|invalid line 17", "26|invalid line 26", "38|invalid line 38"),
+				Files.readAllLines(skipFile).stream()
+						.sorted(Comparator.comparingInt(line -> Integer.parseInt(line.substring(0, line.indexOf('|')))))
+						.toList());
+	}
+
+	private JobParameters jobParameters(String inputFile) {
+		return this.jobLauncherTestUtils.getUniqueJobParametersBuilder()
+				.addString("input.file", inputFile)
+				.addString("output.file", this.tempDir.resolve("billing-report-2023-01.csv").toString())
+				.addString("skip.file", this.tempDir.resolve("billing-data-skip-2023-01.psv").toString())
+				.addString("data.year", "2023")
+				.addString("data.month", "1")
+				.toJobParameters();
+	}
+
+	// Guarda o status, os steps executados e o status do último step em vez de retornar o JobExecution ou o
+	// StepExecution: métodos (inclusive lambdas) que os retornam são tratados pelos listeners de teste do Spring Batch
+	// como fábricas do contexto do job ou do step.
+	private void runJob(JobParameters jobParameters) throws Exception {
+		JobExecution jobExecution = this.jobLauncherTestUtils.launchJob(jobParameters);
+		this.status = jobExecution.getStatus();
+		this.stepNames = jobExecution.getStepExecutions().stream().map(StepExecution::getStepName).toList();
+		this.stepStatus = jobExecution.getStepExecutions().stream().map(StepExecution::getStatus).toList()
+				.get(this.stepNames.size() - 1);
+	}
+
+}
@@ -0,0 +1,127 @@
+package com.gustavo.billingjob;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.test.JobRepositoryTestUtils;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.jdbc.JdbcTestUtils;
+
+// Executa o MultiMonthBillingJob com um mês que falha e verifica que o restart executa novamente apenas esse mês,
+// reiniciando a mesma JobInstance do BillingJob. Usa um banco H2 em memória no lugar do PostgreSQL
+// (ver application-h2.properties).
+@SpringBatchTest
+@SpringBootTest
+@ActiveProfiles("h2")
+class MultiMonthBillingJobTests {
+
+	@Autowired
+	private JobLauncher jobLauncher;
+
+	@Autowired
+	@Qualifier("multiMonthJob")
+	private Job multiMonthJob;
+
+	@Autowired
+	private JobExplorer jobExplorer;
+
+	@Autowired
+	private JobRepositoryTestUtils jobRepositoryTestUtils;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@TempDir
+	Path tempDir;
+
+	private BatchStatus status;
+
+	private List<String> stepNames;
+
+	@BeforeEach
+	public void setUp() {
+		this.jobRepositoryTestUtils.removeJobExecutions();
+		JdbcTestUtils.deleteFromTables(this.jdbcTemplate, "BILLING_DATA", "BILLING_FILE");
+	}
+
+	@Test
+	void testRestartRunsOnlyFailedMonth() throws Exception {
+		// given: o relatório de fevereiro não pode ser gravado, pois o seu caminho é um diretório (não vazio, para que o
+		// FlatFileItemWriter não consiga removê-lo)
+		Path februaryReport = Files.createDirectory(this.tempDir.resolve("billing-report-2023-02.csv"));
+		Path blocker = Files.createFile(februaryReport.resolve("blocker"));
+		JobParameters jobParameters = new JobParametersBuilder()
+				.addString("input.files", "input/billing-2023-01.csv,input/billing-2023-02.csv")
+				.addString("output.dir", this.tempDir.toString())
+				.toJobParameters();
+
+		// when
+		runJob(jobParameters);
+		BatchStatus firstStatus = this.status;
+		List<String> firstSteps = this.stepNames;
+		Map<String, List<BatchStatus>> firstMonthRuns = monthRuns();
+		Files.delete(blocker);
+		Files.delete(februaryReport);
+		runJob(jobParameters);
+
+		// then
+		Assertions.assertEquals(BatchStatus.FAILED, firstStatus);
+		Assertions.assertTrue(firstSteps.containsAll(List.of("monthlyBillingWorker:2023-01", "monthlyBillingWorker:2023-02")),
+				firstSteps.toString());
+		Assertions.assertEquals(Map.of("1", List.of(BatchStatus.COMPLETED), "2", List.of(BatchStatus.FAILED)), firstMonthRuns);
+		Assertions.assertEquals(BatchStatus.COMPLETED, this.status);
+		Assertions.assertEquals(List.of("monthlyBilling", "monthlyBillingWorker:2023-02"), this.stepNames.stream().sorted().toList());
+		// o BillingJob de fevereiro é reiniciado (mesma JobInstance) e o de janeiro não é executado outra vez
+		Assertions.assertEquals(Map.of("1", List.of(BatchStatus.COMPLETED), "2", List.of(BatchStatus.COMPLETED, BatchStatus.FAILED)),
+				monthRuns());
+		Assertions.assertEquals(Files.readAllLines(this.tempDir.resolve("billing-report-2023-01.csv")).size(),
+				Files.readAllLines(this.tempDir.resolve("billing-report-2023-02.csv")).size());
+	}
+
+	// Guarda o status e os steps executados em vez de retornar o JobExecution: métodos que retornam JobExecution são
+	// tratados pelo JobScopeTestExecutionListener como fábricas do contexto do job.
+	// No restart, o StepExecutionSplitter também cria (sem gravar) as execuções das partições já concluídas, por isso
+	// apenas as execuções gravadas no JobRepository são consideradas.
+	private void runJob(JobParameters jobParameters) throws Exception {
+		JobExecution jobExecution = this.jobLauncher.run(this.multiMonthJob, jobParameters);
+		this.status = jobExecution.getStatus();
+		this.stepNames = jobExecution.getStepExecutions().stream()
+				.filter(stepExecution -> stepExecution.getId() != null)
+				.map(StepExecution::getStepName)
+				.toList();
+	}
+
+	// Status das execuções do BillingJob de cada mês (data.month), da mais recente para a mais antiga.
+	private Map<String, List<BatchStatus>> monthRuns() {
+		Map<String, List<BatchStatus>> runs = new HashMap<>();
+		for (JobInstance jobInstance : this.jobExplorer.getJobInstances("BillingJob", 0, 100)) {
+			List<JobExecution> executions = this.jobExplorer.getJobExecutions(jobInstance);
+			String month = executions.get(0).getJobParameters().getString("data.month");
+			Assertions.assertNull(runs.put(month, executions.stream().map(JobExecution::getStatus).toList()), month);
+		}
+		return runs;
+	}
+
+}
@@ -0,0 +1,108 @@
+package com.gustavo.billingjob;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.batch.test.JobRepositoryTestUtils;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.jdbc.JdbcTestUtils;
+
+// Executa o BillingJob com os modos de geração do relatório sobre os mesmos dados, usando um banco H2 em memória
+// no lugar do PostgreSQL (ver application-h2.properties).
+@SpringBatchTest
+@SpringBootTest
+@ActiveProfiles("h2")
+class ReportGenerationModesTests {
+
+	@Autowired
+	private JobLauncherTestUtils jobLauncherTestUtils;
+
+	@Autowired
+	private JobRepositoryTestUtils jobRepositoryTestUtils;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@TempDir
+	Path tempDir;
+
+	private StepExecution lastStepExecution;
+
+	@BeforeEach
+	public void setUp() {
+		this.jobRepositoryTestUtils.removeJobExecutions();
+		JdbcTestUtils.deleteFromTables(this.jdbcTemplate, "BILLING_DATA", "BILLING_FILE");
+	}
+
+	@Test
+	void testPartitionedReportIsIdenticalToSequentialReport() throws Exception {
+		// given
+		Path sequentialReport = this.tempDir.resolve("billing-report-sequential.csv");
+		Path partitionedReport = this.tempDir.resolve("billing-report-partitioned.csv");
+
+		// when
+		ExitStatus sequentialStatus = runJob(sequentialReport, "default");
+		ExitStatus partitionedStatus = runJob(partitionedReport, "partitioned");
+
+		// then
+		Assertions.assertEquals(ExitStatus.COMPLETED, sequentialStatus);
+		Assertions.assertEquals(ExitStatus.COMPLETED, partitionedStatus);
+		Assertions.assertEquals(781, Files.readAllLines(sequentialReport).size());
+		Assertions.assertArrayEquals(Files.readAllBytes(sequentialReport), Files.readAllBytes(partitionedReport));
+	}
+
+	@Test
+	void testAsyncReportHasSameCountsAsSequentialReport() throws Exception {
+		// given
+		Path sequentialReport = this.tempDir.resolve("billing-report-sequential.csv");
+		Path asyncReport = this.tempDir.resolve("billing-report-async.csv");
+
+		// when
+		runJob(sequentialReport, "default");
+		StepExecution sequentialStep = this.lastStepExecution;
+		runJob(asyncReport, "async");
+		StepExecution asyncStep = this.lastStepExecution;
+
+		// then
+		Assertions.assertEquals("reportGeneration", sequentialStep.getStepName());
+		Assertions.assertEquals("asyncReportGeneration", asyncStep.getStepName());
+		Assertions.assertEquals(1000, asyncStep.getReadCount());
+		Assertions.assertEquals(sequentialStep.getReadCount(), asyncStep.getReadCount());
+		Assertions.assertEquals(sequentialStep.getFilterCount(), asyncStep.getFilterCount());
+		Assertions.assertEquals(sequentialStep.getWriteCount(), asyncStep.getWriteCount());
+		Assertions.assertEquals(Files.readAllLines(sequentialReport), Files.readAllLines(asyncReport));
+	}
+
+	// Retorna o ExitStatus (e não o JobExecution): métodos que retornam JobExecution são tratados pelo
+	// JobScopeTestExecutionListener como fábricas do contexto do job. O último step executado fica em lastStepExecution.
+	private ExitStatus runJob(Path outputFile, String reportMode) throws Exception {
+		JobParameters jobParameters = this.jobLauncherTestUtils.getUniqueJobParametersBuilder()
+				.addString("input.file", "input/billing-2023-01.csv")
+				.addString("output.file", outputFile.toString())
+				.addString("skip.file", this.tempDir.resolve("billing-data-skip-2023-01.psv").toString())
+				.addString("data.year", "2023")
+				.addString("data.month", "1")
+				.addString("report.mode", reportMode)
+				.toJobParameters();
+		JobExecution jobExecution = this.jobLauncherTestUtils.launchJob(jobParameters);
+		for (StepExecution stepExecution : jobExecution.getStepExecutions()) {
+			this.lastStepExecution = stepExecution;
+		}
+		return jobExecution.getExitStatus();
+	}
+
+}
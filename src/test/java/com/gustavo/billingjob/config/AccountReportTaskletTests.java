@@ -0,0 +1,147 @@
+package com.gustavo.billingjob.config;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.support.ListItemReader;
+import org.springframework.batch.repeat.RepeatStatus;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Verifica que o relatório por conta tem os mesmos totais com e sem a gravação de runs em disco.
+class AccountReportTaskletTests {
+
+	@TempDir
+	Path tempDir;
+
+	private final PricingService pricingService = new PricingService(new SimpleMeterRegistry()) {
+
+		@Override
+		public float getDataPricing() {
+			return 0.01f;
+		}
+
+		@Override
+		public float getCallPricing() {
+			return 0.5f;
+		}
+
+		@Override
+		public float getSmsPricing() {
+			return 0.1f;
+		}
+
+	};
+
+	@Test
+	void testSpilledRunsMatchInMemoryTotals() throws Exception {
+		// given
+		Random random = new Random(42);
+		List<BillingData> items = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			int accountId = 100 + random.nextInt(700);
+			items.add(new BillingData(2023, 3, accountId, "404-555-" + i, random.nextInt(10000) / 100f,
+					random.nextInt(500), random.nextInt(1000)));
+		}
+
+		// when
+		StepExecution inMemory = run(items, "in-memory.csv", 64 * 1024 * 1024);
+		StepExecution spilled = run(items, "spilled.csv", 50L * AccountTotals.BYTES_PER_ACCOUNT);
+
+		// then
+		Assertions.assertEquals(0, inMemory.getExecutionContext().getInt("accounts.runs"));
+		Assertions.assertTrue(spilled.getExecutionContext().getInt("accounts.runs") > 1);
+		Assertions.assertEquals(5000, spilled.getReadCount());
+		List<String> expected = Files.readAllLines(this.tempDir.resolve("in-memory-accounts.csv"));
+		Assertions.assertEquals(expected, Files.readAllLines(this.tempDir.resolve("spilled-accounts.csv")));
+		Assertions.assertTrue(expected.size() <= 700);
+		try (var files = Files.list(this.tempDir)) {
+			Assertions.assertTrue(files.noneMatch(file -> file.toString().endsWith(".run")));
+		}
+
+		int accountId = items.get(0).accountId();
+		int lineCount = 0;
+		long callDuration = 0;
+		long smsCount = 0;
+		for (BillingData item : items) {
+			if (item.accountId() == accountId) {
+				lineCount++;
+				callDuration += item.callDuration();
+				smsCount += item.smsCount();
+			}
+		}
+		String prefix = "2023,3," + accountId + "," + lineCount + ",";
+		String line = expected.stream().filter(l -> l.startsWith("2023,3," + accountId + ",")).findFirst().orElseThrow();
+		Assertions.assertTrue(line.startsWith(prefix));
+		String[] fields = line.split(",");
+		Assertions.assertEquals(callDuration, Long.parseLong(fields[5]));
+		Assertions.assertEquals(smsCount, Long.parseLong(fields[6]));
+	}
+
+	@Test
+	void testTotalsCapacityFitsMemoryBudget() {
+		for (long memoryBudget : new long[] { 1, 2400, 100_000, 64L * 1024 * 1024, 100L * 1024 * 1024 }) {
+			// given
+			int capacity = AccountTotals.capacityFor(memoryBudget);
+			AccountTotals totals = new AccountTotals(capacity);
+
+			// when
+			for (int accountId = 0; accountId < capacity; accountId++) {
+				totals.add(accountId, 1, 1, 1, 1, 1);
+			}
+			// contas já existentes continuam sendo somadas com os totais cheios
+			totals.add(0, 1, 1, 1, 1, 1);
+
+			// then
+			long tableLength = Math.max(2, Long.highestOneBit(2L * capacity - 1) << 1);
+			long bytes = capacity * (long) (AccountTotals.BYTES_PER_ACCOUNT - 2 * Integer.BYTES) + tableLength * Integer.BYTES;
+			Assertions.assertTrue(totals.isFull());
+			Assertions.assertEquals(2, totals.lineCount(0));
+			Assertions.assertThrows(IllegalStateException.class, () -> totals.add(-1, 1, 1, 1, 1, 1));
+			Assertions.assertTrue(memoryBudget < AccountTotals.BYTES_PER_ACCOUNT || bytes <= memoryBudget, "" + memoryBudget);
+			Assertions.assertTrue(capacity > memoryBudget / AccountTotals.BYTES_PER_ACCOUNT / 2, "" + memoryBudget);
+		}
+	}
+
+	@Test
+	void testAccountFileName() {
+		Assertions.assertEquals("staging/billing-report-2023-03-accounts.csv",
+				AccountReportTasklet.accountFile("staging/billing-report-2023-03.csv"));
+		Assertions.assertEquals("staging/billing-report-2023-03-accounts.csv.gz",
+				AccountReportTasklet.accountFile("staging/billing-report-2023-03.csv.gz"));
+		Assertions.assertEquals("staging/report-accounts.csv", AccountReportTasklet.accountFile("staging/report"));
+	}
+
+	private StepExecution run(List<BillingData> items, String outputFile, long memoryBudget) throws Exception {
+		ListItemReader<BillingData> listReader = new ListItemReader<>(items);
+		ItemStreamReader<BillingData> reader = listReader::read;
+		AccountReportTasklet tasklet = new AccountReportTasklet(reader, this.pricingService, 2023, 3,
+				this.tempDir.resolve(outputFile).toString(), memoryBudget);
+		StepExecution stepExecution = new JobExecution(new JobInstance(1L, "BillingJob"), 1L, new JobParameters())
+			.createStepExecution("accountReport");
+
+		tasklet.beforeStep(stepExecution);
+		RepeatStatus status;
+		do {
+			StepContribution contribution = stepExecution.createStepContribution();
+			status = tasklet.execute(contribution, null);
+			stepExecution.apply(contribution);
+		} while (status.isContinuable());
+		tasklet.afterStep(stepExecution);
+		return stepExecution;
+	}
+
+}
@@ -0,0 +1,121 @@
+package com.gustavo.billingjob.config;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+
+// Verifica os ajustes do AdaptiveChunkSizePolicy e a origem do tamanho inicial (restart, execução anterior ou padrão).
+class AdaptiveChunkSizePolicyTests {
+
+	private final JobExplorer jobExplorer = Mockito.mock(JobExplorer.class);
+
+	@Test
+	void testFastChunksGrowUpToMaxSize() {
+		// given
+		AdaptiveChunkSizePolicy policy = new AdaptiveChunkSizePolicy(this.jobExplorer, 100, 10, 1000, Duration.ofSeconds(10));
+		StepExecution stepExecution = stepExecution(1L, "fileIngestion");
+		policy.beforeStep(stepExecution);
+
+		// when
+		int first = runChunk(policy, stepExecution);
+		int second = runChunk(policy, stepExecution);
+		for (int i = 0; i < 5; i++) {
+			runChunk(policy, stepExecution);
+		}
+
+		// then
+		Assertions.assertEquals(200, first);
+		Assertions.assertEquals(400, second);
+		Assertions.assertEquals(1000, policy.getChunkSize());
+		Assertions.assertEquals(1000, stepExecution.getExecutionContext().getInt(AdaptiveChunkSizePolicy.CHUNK_SIZE_KEY));
+	}
+
+	@Test
+	void testRollbackHalvesDownToMinSize() {
+		// given
+		AdaptiveChunkSizePolicy policy = new AdaptiveChunkSizePolicy(this.jobExplorer, 100, 30, 1000, Duration.ofSeconds(10));
+		StepExecution stepExecution = stepExecution(1L, "reportGeneration");
+		policy.beforeStep(stepExecution);
+
+		// when
+		policy.beforeChunk(null);
+		policy.afterChunkError(null);
+		int afterFirstRollback = policy.getChunkSize();
+		policy.beforeChunk(null);
+		policy.afterChunkError(null);
+
+		// then
+		Assertions.assertEquals(50, afterFirstRollback);
+		Assertions.assertEquals(30, policy.getChunkSize());
+	}
+
+	@Test
+	void testRestartKeepsSavedSize() {
+		// given
+		AdaptiveChunkSizePolicy policy = new AdaptiveChunkSizePolicy(this.jobExplorer, 100, 10, 1000, Duration.ofSeconds(1));
+		StepExecution stepExecution = stepExecution(1L, "fileIngestion");
+		stepExecution.getExecutionContext().putInt(AdaptiveChunkSizePolicy.CHUNK_SIZE_KEY, 777);
+
+		// when
+		policy.beforeStep(stepExecution);
+
+		// then
+		Assertions.assertEquals(777, policy.getChunkSize());
+		Mockito.verifyNoInteractions(this.jobExplorer);
+	}
+
+	@Test
+	void testNewRunStartsFromPreviousRunSize() {
+		// given
+		StepExecution previous = stepExecution(1L, "fileIngestion");
+		previous.getExecutionContext().putInt(AdaptiveChunkSizePolicy.CHUNK_SIZE_KEY, 640);
+		StepExecution current = stepExecution(2L, "fileIngestion");
+		Mockito.when(this.jobExplorer.getJobInstances("BillingJob", 0, 10))
+			.thenReturn(List.of(current.getJobExecution().getJobInstance(), previous.getJobExecution().getJobInstance()));
+		Mockito.when(this.jobExplorer.getLastJobExecution(previous.getJobExecution().getJobInstance()))
+			.thenReturn(previous.getJobExecution());
+		AdaptiveChunkSizePolicy policy = new AdaptiveChunkSizePolicy(this.jobExplorer, 100, 10, 1000, Duration.ofSeconds(1));
+
+		// when
+		policy.beforeStep(current);
+
+		// then
+		Assertions.assertEquals(640, policy.getChunkSize());
+	}
+
+	@Test
+	void testFirstRunStartsFromInitialSize() {
+		// given
+		AdaptiveChunkSizePolicy policy = new AdaptiveChunkSizePolicy(this.jobExplorer, 100, 10, 1000, Duration.ofSeconds(1));
+
+		// when
+		policy.beforeStep(stepExecution(1L, "fileIngestion"));
+
+		// then
+		Assertions.assertEquals(100, policy.getChunkSize());
+	}
+
+	// Simula um chunk completo, bem mais rápido que a duração alvo, e retorna o tamanho escolhido para o próximo.
+	private int runChunk(AdaptiveChunkSizePolicy policy, StepExecution stepExecution) {
+		policy.beforeChunk(null);
+		stepExecution.setReadCount(stepExecution.getReadCount() + policy.getChunkSize());
+		policy.afterChunk(null);
+		return policy.getChunkSize();
+	}
+
+	private StepExecution stepExecution(long instanceId, String stepName) {
+		JobInstance jobInstance = new JobInstance(instanceId, "BillingJob");
+		JobExecution jobExecution = new JobExecution(jobInstance, instanceId, new JobParameters());
+		return jobExecution.createStepExecution(stepName);
+	}
+
+}
@@ -0,0 +1,216 @@
+package com.gustavo.billingjob.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.database.JdbcBatchItemWriter;
+import org.springframework.batch.item.database.builder.JdbcBatchItemWriterBuilder;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.jdbc.JdbcTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Compara o BillingDataCopyItemWriter com o JdbcBatchItemWriter usado pelo job, usando um banco H2 em memória
+// no lugar do PostgreSQL. Como o H2 não possui o comando COPY, o envio dos dados é substituído pela importação do
+// mesmo conteúdo CSV com a função CSVREAD; a codificação das linhas é a mesma enviada ao PostgreSQL.
+class BillingDataCopyItemWriterTests {
+
+	private static final String SELECT_ALL = "select * from BILLING_DATA order by ACCOUNT_ID, PHONE_NUMBER";
+
+	private EmbeddedDatabase dataSource;
+
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	public void setUp() {
+		this.dataSource = new EmbeddedDatabaseBuilder()
+				.setType(EmbeddedDatabaseType.H2)
+				.generateUniqueName(true)
+				.addScript("file:sql/schema-billing.sql")
+				.build();
+		this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		this.dataSource.shutdown();
+	}
+
+	@Test
+	void testCopyWriterLoadsSameRowsAsJdbcWriter() throws Exception {
+		// given
+		List<BillingData> items = readItems("input/billing-2023-01.csv");
+		items.add(new BillingData(2023, 1, 9999, "404-\"555\",1", 0.1f, 0, 0));
+		JdbcBatchItemWriter<BillingData> jdbcWriter = new JdbcBatchItemWriterBuilder<BillingData>()
+				.dataSource(this.dataSource)
+				.sql(BillingJobConfiguration.BILLING_DATA_UPSERT_SQL)
+				.beanMapped()
+				.assertUpdates(false)
+				.build();
+		jdbcWriter.afterPropertiesSet();
+		BillingDataCopyItemWriter copyWriter = new H2CopyItemWriter(this.dataSource);
+
+		// when
+		jdbcWriter.write(new Chunk<>(items));
+		List<Map<String, Object>> jdbcRows = this.jdbcTemplate.queryForList(SELECT_ALL);
+		JdbcTestUtils.deleteFromTables(this.jdbcTemplate, "BILLING_DATA");
+		copyWriter.write(new Chunk<>(items));
+		List<Map<String, Object>> copyRows = this.jdbcTemplate.queryForList(SELECT_ALL);
+
+		// then
+		Assertions.assertEquals(1001, jdbcRows.size());
+		Assertions.assertEquals(jdbcRows, copyRows);
+	}
+
+	@Test
+	void testWritersUpsertExistingRows() throws Exception {
+		// given
+		List<BillingData> items = readItems("input/billing-2023-01.csv");
+		BillingData first = items.get(0);
+		BillingData corrected = new BillingData(first.dataYear(), first.dataMonth(), first.accountId(),
+				first.phoneNumber(), first.dataUsage() + 1, first.callDuration(), first.smsCount());
+		JdbcBatchItemWriter<BillingData> jdbcWriter = new JdbcBatchItemWriterBuilder<BillingData>()
+				.dataSource(this.dataSource)
+				.sql(BillingJobConfiguration.BILLING_DATA_UPSERT_SQL)
+				.beanMapped()
+				.assertUpdates(false)
+				.build();
+		jdbcWriter.afterPropertiesSet();
+		BillingDataCopyItemWriter copyWriter = new H2CopyItemWriter(this.dataSource);
+
+		// when
+		jdbcWriter.write(new Chunk<>(items));
+		List<Map<String, Object>> loadedRows = this.jdbcTemplate.queryForList(SELECT_ALL);
+		jdbcWriter.write(new Chunk<>(items));
+		copyWriter.write(new Chunk<>(items));
+		List<Map<String, Object>> reloadedRows = this.jdbcTemplate.queryForList(SELECT_ALL);
+		// a chave repetida no mesmo chunk fica com a última linha
+		copyWriter.write(new Chunk<>(first, corrected));
+
+		// then
+		Assertions.assertEquals(loadedRows, reloadedRows);
+		Assertions.assertEquals(items.size(), JdbcTestUtils.countRowsInTable(this.jdbcTemplate, "BILLING_DATA"));
+		Float dataUsage = this.jdbcTemplate.queryForObject(
+				"select DATA_USAGE from BILLING_DATA where ACCOUNT_ID = ? and PHONE_NUMBER = ?", Float.class,
+				first.accountId(), first.phoneNumber());
+		Assertions.assertEquals(corrected.dataUsage(), dataUsage);
+	}
+
+	@Test
+	void testStageTableIsCreatedOncePerConnection() throws Exception {
+		// given
+		List<BillingData> items = readItems("input/billing-2023-01.csv");
+		SingleConnectionDataSource connectionDataSource = new SingleConnectionDataSource(this.dataSource.getConnection(), true);
+		TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(connectionDataSource));
+		H2CopyItemWriter copyWriter = new H2CopyItemWriter(connectionDataSource);
+		H2CopyItemWriter rolledBackWriter = new H2CopyItemWriter(connectionDataSource);
+
+		// when
+		try {
+			for (int i = 0; i < items.size(); i += 100) {
+				Chunk<BillingData> chunk = new Chunk<>(items.subList(i, i + 100));
+				transactionTemplate.executeWithoutResult(status -> write(copyWriter, chunk));
+			}
+			// o create desfeito com a transação (no PostgreSQL) é executado novamente no chunk seguinte
+			transactionTemplate.executeWithoutResult(status -> {
+				write(rolledBackWriter, new Chunk<>(items.subList(0, 10)));
+				status.setRollbackOnly();
+			});
+			transactionTemplate.executeWithoutResult(status -> write(rolledBackWriter, new Chunk<>(items.subList(0, 10))));
+		} finally {
+			connectionDataSource.destroy();
+		}
+
+		// then
+		Assertions.assertEquals(1, copyWriter.stageTables);
+		Assertions.assertEquals(2, rolledBackWriter.stageTables);
+		Assertions.assertEquals(items.size(), JdbcTestUtils.countRowsInTable(this.jdbcTemplate, "BILLING_DATA"));
+	}
+
+	private static void write(BillingDataCopyItemWriter writer, Chunk<BillingData> chunk) {
+		try {
+			writer.write(chunk);
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private List<BillingData> readItems(String file) throws Exception {
+		FlatFileItemReader<BillingData> reader = new FlatFileItemReaderBuilder<BillingData>()
+				.name("billingDataFileReader")
+				.resource(new FileSystemResource(file))
+				.delimited()
+				.delimiter(",")
+				.names("dataYear", "dataMonth", "accountId", "phoneNumber", "dataUsage", "callDuration", "smsCount")
+				.targetType(BillingData.class)
+				.build();
+		reader.open(new ExecutionContext());
+		try {
+			List<BillingData> items = new ArrayList<>();
+			BillingData item;
+			while ((item = reader.read()) != null) {
+				items.add(item);
+			}
+			return items;
+		} finally {
+			reader.close();
+		}
+	}
+
+	// Importa o fluxo CSV do COPY com a função CSVREAD do H2 e conta as criações da tabela temporária.
+	private static class H2CopyItemWriter extends BillingDataCopyItemWriter {
+
+		int stageTables;
+
+		H2CopyItemWriter(DataSource dataSource) {
+			super(dataSource);
+		}
+
+		@Override
+		protected void createStageTable(Statement statement) throws SQLException {
+			this.stageTables++;
+			super.createStageTable(statement);
+		}
+
+		@Override
+		protected void copyIn(Connection connection, String sql, InputStream data) throws SQLException, IOException {
+			Path csv = Files.createTempFile("billing-data-copy", ".csv");
+			try {
+				Files.copy(data, csv, StandardCopyOption.REPLACE_EXISTING);
+				try (Statement statement = connection.createStatement()) {
+					statement.execute("insert into BILLING_DATA_STAGE select * from CSVREAD('" + csv.toAbsolutePath()
+							+ "', 'DATA_YEAR,DATA_MONTH,ACCOUNT_ID,PHONE_NUMBER,DATA_USAGE,CALL_DURATION,SMS_COUNT')");
+				}
+			} finally {
+				Files.delete(csv);
+			}
+		}
+
+	}
+
+}
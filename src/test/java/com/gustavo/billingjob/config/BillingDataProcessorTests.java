@@ -0,0 +1,221 @@
+package com.gustavo.billingjob.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Verifica que a precificação por chunk produz os mesmos itens e os mesmos valores de billingTotal que o
+// processamento item a item, que os itens abaixo do limite são contados como filtrados (com uma amostra da fase
+// process por chunk nas métricas do step) e que cada step registra a versão dos preços e os contadores do
+// PricingService do próprio step.
+class BillingDataProcessorTests {
+
+	private final BillingDataProcessor processor = processor(150f);
+
+	@Test
+	void testBatchPricingMatchesPerItemProcessing() {
+		// given
+		Random random = new Random(42);
+		List<BillingData> items = new ArrayList<>();
+		for (int i = 0; i < 10_000; i++) {
+			items.add(new BillingData(2023, 3, 100 + i, "404-555-" + i, random.nextInt(10000) / 100f,
+					random.nextInt(1000), random.nextInt(1000)));
+		}
+		// valores extremos: sem consumo, Float.MAX_VALUE (total infinito) e NaN, mantido por process
+		items.add(new BillingData(2023, 3, 1, "404-555-0001", 0f, 0, 0));
+		items.add(new BillingData(2023, 3, 2, "404-555-0002", Float.MAX_VALUE, Integer.MAX_VALUE, 1));
+		items.add(new BillingData(2023, 3, 3, "404-555-0003", Float.NaN, 1, 1));
+		items.add(new BillingData(2023, 3, 4, "404-555-0004", 49.99f, 1, 2));
+
+		// when
+		List<ReportingData> expected = new ArrayList<>();
+		for (BillingData item : items) {
+			ReportingData output = this.processor.process(item);
+			if (output != null) {
+				expected.add(output);
+			}
+		}
+		List<ReportingData> actual = this.processor.process(items);
+
+		// then
+		Assertions.assertTrue(expected.size() > 0 && expected.size() < items.size());
+		Assertions.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assertions.assertSame(expected.get(i).billingData(), actual.get(i).billingData());
+			Assertions.assertEquals(Double.doubleToLongBits(expected.get(i).billingTotal()),
+					Double.doubleToLongBits(actual.get(i).billingTotal()));
+		}
+	}
+
+	@Test
+	void testChunkProcessorCountsFilteredItems() throws Exception {
+		// given
+		List<ReportingData> written = new ArrayList<>();
+		BatchPricingChunkProcessor chunkProcessor = new BatchPricingChunkProcessor(this.processor,
+				chunk -> written.addAll(chunk.getItems()));
+		StepContribution contribution = new JobExecution(new JobInstance(1L, "BillingJob"), 1L, new JobParameters())
+			.createStepExecution("batchReportGeneration")
+			.createStepContribution();
+		Chunk<BillingData> chunk = new Chunk<>(
+				new BillingData(2023, 3, 100, "404-555-1000", 50.00f, 400, 100),
+				new BillingData(2023, 3, 101, "404-555-1001", 1.00f, 10, 5),
+				new BillingData(2023, 3, 102, "404-555-1002", 69.87f, 289, 77));
+
+		// when
+		chunkProcessor.process(contribution, chunk);
+
+		// then
+		Assertions.assertEquals(2, written.size());
+		Assertions.assertEquals(100, written.get(0).billingData().accountId());
+		Assertions.assertEquals(102, written.get(1).billingData().accountId());
+		Assertions.assertEquals(1, contribution.getFilterCount());
+		Assertions.assertEquals(2, contribution.getWriteCount());
+	}
+
+	@Test
+	void testChunkProcessorRecordsOneProcessSamplePerChunk() throws Exception {
+		// given
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		StepMetricsListener metricsListener = new StepMetricsListener(meterRegistry);
+		BatchPricingChunkProcessor chunkProcessor = new BatchPricingChunkProcessor(this.processor, chunk -> { });
+		chunkProcessor.setMetricsListeners(List.of(metricsListener));
+		StepExecution stepExecution = new JobExecution(new JobInstance(1L, "BillingJob"), 1L, new JobParameters())
+			.createStepExecution("batchReportGeneration");
+		metricsListener.beforeStep(stepExecution);
+		Chunk<BillingData> chunk = new Chunk<>(
+				new BillingData(2023, 3, 100, "404-555-1000", 50.00f, 400, 100),
+				new BillingData(2023, 3, 101, "404-555-1001", 1.00f, 10, 5));
+
+		// when: o commit do chunk é simulado pelas sincronizações registradas na transação
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			metricsListener.beforeChunk(null);
+			chunkProcessor.process(stepExecution.createStepContribution(), chunk);
+			TransactionSynchronizationManager.getSynchronizations()
+				.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+
+		// then
+		Timer processTimer = meterRegistry.get("billing.chunk.phase").tag("phase", "process").timer();
+		Assertions.assertEquals(1, processTimer.count());
+		Assertions.assertTrue(processTimer.totalTime(TimeUnit.NANOSECONDS) > 0);
+	}
+
+	@Test
+	void testStepRecordsPricingVersionAndCountersOfTheStep() {
+		// given
+		// as duas primeiras consultas ao serviço de tarifas falham e são repetidas na carga do primeiro snapshot
+		AtomicInteger failures = new AtomicInteger(2);
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		PricingService pricingService = new PricingService(meterRegistry) {
+			@Override
+			public float getDataPricing() {
+				if (failures.getAndDecrement() > 0) {
+					throw new PricingException("Error while retrieving data pricing");
+				}
+				return 0.01f;
+			}
+		};
+		BillingDataProcessor processor = processor(pricingService, 150f);
+		JobExecution jobExecution = new JobExecution(new JobInstance(1L, "BillingJob"), 1L, new JobParameters());
+		StepExecution firstStep = jobExecution.createStepExecution("reportGeneration");
+		firstStep.setId(1L);
+		StepExecution secondStep = jobExecution.createStepExecution("accountReport");
+		secondStep.setId(2L);
+		BillingData item = new BillingData(2023, 3, 100, "404-555-1000", 50.00f, 400, 100);
+
+		// when
+		processor.beforeStep(firstStep);
+		processor.process(item);
+		processor.process(item);
+		processor.afterStep(firstStep);
+		processor.beforeStep(secondStep);
+		processor.process(List.of(item));
+		processor.afterStep(secondStep);
+
+		// then
+		ExecutionContext first = firstStep.getExecutionContext();
+		Assertions.assertEquals(1, first.getLong("pricing.version"));
+		Assertions.assertEquals(2, first.getLong("pricing.hits"));
+		Assertions.assertEquals(1, first.getLong("pricing.refreshes"));
+		Assertions.assertEquals(2, first.getLong("pricing.failures"));
+		ExecutionContext second = secondStep.getExecutionContext();
+		Assertions.assertEquals(2, second.getLong("pricing.version"));
+		Assertions.assertEquals(1, second.getLong("pricing.hits"));
+		Assertions.assertEquals(1, second.getLong("pricing.refreshes"));
+		Assertions.assertEquals(0, second.getLong("pricing.failures"));
+		Assertions.assertEquals(2, meterRegistry.get("billing.pricing.retries").counter().count());
+		Assertions.assertEquals(3, meterRegistry.get("billing.pricing.hits").functionCounter().count());
+	}
+
+	@Test
+	void testStepKeepsItsSnapshotWhenPricesAreRefreshedDuringTheStep() {
+		// given
+		PricingService pricingService = new PricingService(new SimpleMeterRegistry());
+		BillingDataProcessor processor = processor(pricingService, 0f);
+		StepExecution stepExecution = new JobExecution(new JobInstance(1L, "BillingJob"), 1L, new JobParameters())
+			.createStepExecution("reportGeneration:partition0");
+		stepExecution.setId(1L);
+		BillingData item = new BillingData(2023, 3, 100, "404-555-1000", 50.00f, 400, 100);
+
+		// when: outro step (ex.: outra partição) carrega preços novos no meio do step
+		StepSynchronizationManager.register(stepExecution);
+		ReportingData before;
+		ReportingData after;
+		List<ReportingData> chunkAfter;
+		try {
+			processor.beforeStep(stepExecution);
+			before = processor.process(item);
+			ReflectionTestUtils.setField(pricingService, "callPricing", 5f);
+			pricingService.refresh();
+			after = processor.process(item);
+			chunkAfter = processor.process(List.of(item));
+			processor.afterStep(stepExecution);
+		} finally {
+			StepSynchronizationManager.close();
+		}
+
+		// then
+		Assertions.assertEquals(1, stepExecution.getExecutionContext().getLong("pricing.version"));
+		Assertions.assertEquals(3, stepExecution.getExecutionContext().getLong("pricing.hits"));
+		Assertions.assertEquals(before.billingTotal(), after.billingTotal());
+		Assertions.assertEquals(before.billingTotal(), chunkAfter.get(0).billingTotal());
+		Assertions.assertNotEquals(before.billingTotal(), processor.process(item).billingTotal());
+	}
+
+	private static BillingDataProcessor processor(float spendingThreshold) {
+		return processor(new PricingService(new SimpleMeterRegistry()), spendingThreshold);
+	}
+
+	private static BillingDataProcessor processor(PricingService pricingService, float spendingThreshold) {
+		ReflectionTestUtils.setField(pricingService, "dataPricing", 0.01f);
+		ReflectionTestUtils.setField(pricingService, "callPricing", 0.5f);
+		ReflectionTestUtils.setField(pricingService, "smsPricing", 0.1f);
+		BillingDataProcessor processor = new BillingDataProcessor(pricingService);
+		ReflectionTestUtils.setField(processor, "spendingThreshold", spendingThreshold);
+		return processor;
+	}
+
+}
@@ -0,0 +1,116 @@
+package com.gustavo.billingjob.config;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.file.FlatFileParseException;
+
+// Verifica que as linhas puladas de um chunk chegam ao arquivo de skips no commit do chunk (e não apenas ao final do
+// step), que as linhas de um chunk desfeito são descartadas e que várias partições podem gravar no mesmo arquivo.
+class BillingDataSkipListenerTests {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testSkippedLinesAreWrittenWhenChunkIsCommitted() throws Exception {
+		// given
+		Path skipFile = this.tempDir.resolve("billing-data-skip-2023-03.psv");
+		BillingDataSkipListener listener = new BillingDataSkipListener(skipFile.toString());
+
+		// when
+		listener.onSkipInRead(parseException("2023,3,100,404-555-1000,x,1,1", 3));
+		listener.onSkipInRead(parseException("2023,3,101", 7));
+		boolean writtenBeforeCommit = Files.exists(skipFile);
+		listener.afterChunk(null);
+		List<String> afterCommit = Files.readAllLines(skipFile);
+		// chunk desfeito: os mesmos skips são notificados outra vez quando o chunk é repetido
+		listener.onSkipInRead(parseException("2023,3,102,404-555-1002,1,1", 12));
+		listener.afterChunkError(null);
+		listener.onSkipInRead(parseException("2023,3,102,404-555-1002,1,1", 12));
+		listener.afterChunk(null);
+		listener.afterStep(step("fileIngestion"));
+
+		// then
+		Assertions.assertFalse(writtenBeforeCommit);
+		Assertions.assertEquals(List.of("3|2023,3,100,404-555-1000,x,1,1", "7|2023,3,101"), afterCommit);
+		Assertions.assertEquals(List.of("3|2023,3,100,404-555-1000,x,1,1", "7|2023,3,101", "12|2023,3,102,404-555-1002,1,1"),
+				Files.readAllLines(skipFile));
+	}
+
+	@Test
+	void testConcurrentPartitionsAppendToSameFile() throws Exception {
+		// given
+		Path skipFile = this.tempDir.resolve("billing-data-skip-2023-03.psv");
+		int partitions = 4;
+		int chunks = 50;
+		int skipsPerChunk = 20;
+		String padding = "x".repeat(200);
+		ExecutorService executor = Executors.newFixedThreadPool(partitions);
+		CountDownLatch start = new CountDownLatch(1);
+
+		// when
+		List<Future<?>> results = new ArrayList<>();
+		for (int p = 0; p < partitions; p++) {
+			int partition = p;
+			// cada partição usa a sua instância do listener (bean @StepScope)
+			BillingDataSkipListener listener = new BillingDataSkipListener(skipFile.toString());
+			results.add(executor.submit(() -> {
+				start.await();
+				for (int c = 0; c < chunks; c++) {
+					for (int i = 0; i < skipsPerChunk; i++) {
+						int line = (c * skipsPerChunk + i) * partitions + partition;
+						listener.onSkipInRead(parseException(partition + "," + padding, line));
+					}
+					listener.afterChunk(null);
+				}
+				listener.afterStep(step("fileIngestionWorker:partition" + partition));
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> result : results) {
+			result.get();
+		}
+		executor.shutdown();
+
+		// then
+		List<String> lines = Files.readAllLines(skipFile);
+		Assertions.assertEquals(partitions * chunks * skipsPerChunk, lines.size());
+		int[] lastLine = { -1, -1, -1, -1 };
+		for (String line : lines) {
+			String[] fields = line.split("[|,]");
+			int lineNumber = Integer.parseInt(fields[0]);
+			int partition = Integer.parseInt(fields[1]);
+			Assertions.assertEquals(3, fields.length, line);
+			Assertions.assertEquals(padding, fields[2]);
+			Assertions.assertEquals(partition, lineNumber % partitions);
+			// as linhas de cada partição aparecem na ordem em que foram puladas
+			Assertions.assertTrue(lineNumber > lastLine[partition]);
+			lastLine[partition] = lineNumber;
+		}
+	}
+
+	private static FlatFileParseException parseException(String input, int lineNumber) {
+		return new FlatFileParseException("Parsing error at line: " + lineNumber, input, lineNumber);
+	}
+
+	private static StepExecution step(String stepName) {
+		return new JobExecution(new JobInstance(1L, "BillingJob"), 1L, new JobParameters()).createStepExecution(stepName);
+	}
+
+}
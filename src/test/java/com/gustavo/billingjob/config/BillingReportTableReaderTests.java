@@ -0,0 +1,112 @@
+package com.gustavo.billingjob.config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.database.JdbcBatchItemWriter;
+import org.springframework.batch.item.database.JdbcCursorItemReader;
+import org.springframework.batch.item.database.builder.JdbcBatchItemWriterBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Verifica, com um banco H2 em memória, que o billingReportTableReader (report.mode=sql) seleciona as mesmas linhas
+// que o BillingDataProcessor e calcula, com os casts para REAL, os mesmos valores de billingTotal.
+class BillingReportTableReaderTests {
+
+	private static final float SPENDING_THRESHOLD = 150f;
+
+	private EmbeddedDatabase dataSource;
+
+	@BeforeEach
+	public void setUp() {
+		this.dataSource = new EmbeddedDatabaseBuilder()
+				.setType(EmbeddedDatabaseType.H2)
+				.generateUniqueName(true)
+				.addScript("file:sql/schema-billing.sql")
+				.build();
+	}
+
+	@AfterEach
+	public void tearDown() {
+		this.dataSource.shutdown();
+	}
+
+	@Test
+	void testReportQueryMatchesProcessorBillingTotals() throws Exception {
+		// given
+		Random random = new Random(7);
+		List<BillingData> items = new ArrayList<>();
+		for (int i = 0; i < 20_000; i++) {
+			items.add(new BillingData(2023, 3, 100 + i / 2, String.format("404-55%05d", i), random.nextInt(100000) / 100f,
+					random.nextInt(500), random.nextInt(1000)));
+		}
+		// totais em torno do limite de gastos
+		items.add(new BillingData(2023, 3, 1, "404-555-0001", 0f, 300, 0));
+		items.add(new BillingData(2023, 3, 2, "404-555-0002", 9999.99f, 0, 0));
+		items.add(new BillingData(2023, 3, 3, "404-555-0003", 0.01f, 299, 9));
+		items.add(new BillingData(2023, 4, 4, "404-555-0004", 9999.99f, 999, 999));
+		JdbcBatchItemWriter<BillingData> writer = new JdbcBatchItemWriterBuilder<BillingData>()
+				.dataSource(this.dataSource)
+				.sql(BillingJobConfiguration.BILLING_DATA_UPSERT_SQL)
+				.beanMapped()
+				.assertUpdates(false)
+				.build();
+		writer.afterPropertiesSet();
+		writer.write(new Chunk<>(items));
+		PricingService pricingService = new PricingService(new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(pricingService, "dataPricing", 0.01f);
+		ReflectionTestUtils.setField(pricingService, "callPricing", 0.5f);
+		ReflectionTestUtils.setField(pricingService, "smsPricing", 0.1f);
+		BillingDataProcessor processor = new BillingDataProcessor(pricingService);
+		ReflectionTestUtils.setField(processor, "spendingThreshold", SPENDING_THRESHOLD);
+
+		// when
+		JdbcCursorItemReader<ReportingData> reader = new BillingJobConfiguration()
+				.billingReportTableReader(this.dataSource, pricingService, 2023, 3, SPENDING_THRESHOLD);
+		Map<String, Double> queryTotals = new HashMap<>();
+		reader.open(new ExecutionContext());
+		try {
+			ReportingData output;
+			while ((output = reader.read()) != null) {
+				queryTotals.put(key(output.billingData()), output.billingTotal());
+			}
+		} finally {
+			reader.close();
+		}
+		// o processor usa o snapshot carregado pelo reader
+		Map<String, Double> processorTotals = new HashMap<>();
+		for (BillingData item : items) {
+			ReportingData output = item.dataMonth() == 3 ? processor.process(item) : null;
+			if (output != null) {
+				processorTotals.put(key(item), output.billingTotal());
+			}
+		}
+
+		// then
+		Assertions.assertTrue(processorTotals.size() > 0 && processorTotals.size() < items.size());
+		Assertions.assertEquals(processorTotals.keySet(), queryTotals.keySet());
+		for (Map.Entry<String, Double> expected : processorTotals.entrySet()) {
+			Assertions.assertEquals(Double.doubleToLongBits(expected.getValue()),
+					Double.doubleToLongBits(queryTotals.get(expected.getKey())), expected.getKey());
+		}
+	}
+
+	private static String key(BillingData billingData) {
+		return billingData.accountId() + "|" + billingData.phoneNumber();
+	}
+
+}
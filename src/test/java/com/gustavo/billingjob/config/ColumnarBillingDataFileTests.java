@@ -0,0 +1,203 @@
+package com.gustavo.billingjob.config;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Verifica que o arquivo colunar gravado na ingestão é lido com os mesmos registros, inclusive após o restart do
+// writer e do reader, que a última linha de cada chave prevalece, como na tabela, e que arquivos incompletos ou de
+// outro arquivo de entrada são rejeitados.
+class ColumnarBillingDataFileTests {
+
+	private static final String HASH = "4f1c0a";
+
+	private final TransactionTemplate transactionTemplate = new TransactionTemplate(new ResourcelessTransactionManager());
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testReaderReturnsWrittenRecords() throws Exception {
+		// given
+		Path file = this.tempDir.resolve("billing-data-2023-03.col");
+		List<BillingData> items = items(0, 250);
+		items.add(new BillingData(2023, 4, 999, "404-555-9999", 1.5f, 10, 20));
+
+		// when
+		ColumnarBillingDataItemWriter writer = new ColumnarBillingDataItemWriter(true, file.toString(), 2023, 3, HASH);
+		writer.open(new ExecutionContext());
+		writer.write(new Chunk<>(items.subList(0, 100)));
+		writer.write(new Chunk<>(items.subList(100, items.size())));
+		writer.afterStep(completedStep());
+		writer.close();
+
+		// then
+		Assertions.assertTrue(ColumnarBillingDataFormat.isComplete(file, HASH));
+		Assertions.assertEquals(items.subList(0, 250), readAll(new ColumnarBillingDataItemReader(file.toString(), 2023, 3, HASH),
+				new ExecutionContext()));
+	}
+
+	@Test
+	void testRestartContinuesFromLastCommit() throws Exception {
+		// given
+		Path file = this.tempDir.resolve("billing-data-2023-03.col");
+		List<BillingData> items = items(0, 300);
+		ExecutionContext writerContext = new ExecutionContext();
+		ColumnarBillingDataItemWriter writer = new ColumnarBillingDataItemWriter(true, file.toString(), 2023, 3, HASH);
+		writer.open(writerContext);
+		writer.write(new Chunk<>(items.subList(0, 100)));
+		writer.update(writerContext);
+		// chunk gravado após o último update: descartado no restart
+		writer.write(new Chunk<>(items(500, 550)));
+		writer.close();
+
+		// when
+		writer = new ColumnarBillingDataItemWriter(true, file.toString(), 2023, 3, HASH);
+		writer.open(writerContext);
+		// telefones repetidos usam os códigos do dicionário recarregado, e as linhas repetidas substituem as anteriores
+		writer.write(new Chunk<>(items.subList(100, 300)));
+		writer.write(new Chunk<>(items.subList(0, 10)));
+		writer.afterStep(completedStep());
+		writer.close();
+
+		ExecutionContext readerContext = new ExecutionContext();
+		ColumnarBillingDataItemReader reader = new ColumnarBillingDataItemReader(file.toString(), 2023, 3, HASH);
+		reader.open(readerContext);
+		List<BillingData> read = new ArrayList<>();
+		for (int i = 0; i < 150; i++) {
+			read.add(reader.read());
+		}
+		reader.update(readerContext);
+		reader.close();
+		read.addAll(readAll(new ColumnarBillingDataItemReader(file.toString(), 2023, 3, HASH), readerContext));
+
+		// then
+		List<BillingData> expected = new ArrayList<>(items.subList(10, 300));
+		expected.addAll(items.subList(0, 10));
+		Assertions.assertEquals(expected, read);
+	}
+
+	@Test
+	void testLastRowOfEachKeyWins() throws Exception {
+		// given
+		Path file = this.tempDir.resolve("billing-data-2023-03.col");
+		BillingData a1 = new BillingData(2023, 3, 100, "404-555-1000", 1f, 1, 1);
+		BillingData b1 = new BillingData(2023, 3, 100, "404-555-1001", 2f, 2, 2);
+		BillingData a2 = new BillingData(2023, 3, 100, "404-555-1000", 3f, 3, 3);
+		// mesmo telefone em outra conta: outra chave
+		BillingData c1 = new BillingData(2023, 3, 101, "404-555-1000", 4f, 4, 4);
+		BillingData b2 = new BillingData(2023, 3, 100, "404-555-1001", 5f, 5, 5);
+		BillingData a3 = new BillingData(2023, 3, 100, "404-555-1000", 6f, 6, 6);
+		BillingData c2 = new BillingData(2023, 3, 101, "404-555-1000", 7f, 7, 7);
+		BillingData a4 = new BillingData(2023, 3, 100, "404-555-1000", 8f, 8, 8);
+		ExecutionContext writerContext = new ExecutionContext();
+		ColumnarBillingDataItemWriter writer = new ColumnarBillingDataItemWriter(true, file.toString(), 2023, 3, HASH);
+		writer.open(writerContext);
+
+		// when
+		writeChunk(writer, writerContext, a1, b1, a2);
+		writeChunk(writer, writerContext, c1, b2);
+		// chunk desfeito: a linha de c2 não substitui a de c1
+		Assertions.assertThrows(IllegalStateException.class, () -> this.transactionTemplate.executeWithoutResult(status -> {
+			write(writer, c2);
+			throw new IllegalStateException("rollback");
+		}));
+		writer.close();
+		// restart: as chaves são recarregadas dos blocos já gravados
+		ColumnarBillingDataItemWriter restarted = new ColumnarBillingDataItemWriter(true, file.toString(), 2023, 3, HASH);
+		restarted.open(writerContext);
+		writeChunk(restarted, writerContext, a3);
+		restarted.write(new Chunk<>(a4));
+		restarted.afterStep(completedStep());
+		restarted.close();
+
+		// then
+		Assertions.assertEquals(List.of(c1, b2, a4), readAll(new ColumnarBillingDataItemReader(file.toString(), 2023, 3, HASH),
+				new ExecutionContext()));
+	}
+
+	@Test
+	void testIncompleteOrStaleFileIsRejected() throws Exception {
+		// given
+		Path file = this.tempDir.resolve("billing-data-2023-03.col");
+		ColumnarBillingDataItemWriter writer = new ColumnarBillingDataItemWriter(true, file.toString(), 2023, 3, HASH);
+		writer.open(new ExecutionContext());
+		writer.write(new Chunk<>(items(0, 10)));
+		writer.close();
+
+		// then
+		Assertions.assertFalse(ColumnarBillingDataFormat.isComplete(file, HASH));
+		Assertions.assertThrows(ItemStreamException.class,
+				() -> new ColumnarBillingDataItemReader(file.toString(), 2023, 3, HASH).open(new ExecutionContext()));
+
+		// when
+		Files.write(file, new byte[] { 0x42, 0x45, 0x4E, 0x44 }, StandardOpenOption.APPEND);
+
+		// then
+		Assertions.assertTrue(ColumnarBillingDataFormat.isComplete(file, HASH));
+		Assertions.assertFalse(ColumnarBillingDataFormat.isComplete(file, "other"));
+		Assertions.assertThrows(ItemStreamException.class,
+				() -> new ColumnarBillingDataItemReader(file.toString(), 2023, 3, "other").open(new ExecutionContext()));
+	}
+
+	// Reproduz a ordem do TaskletStep: gravação, update do ExecutionContext e commit.
+	private void writeChunk(ColumnarBillingDataItemWriter writer, ExecutionContext executionContext, BillingData... items) {
+		this.transactionTemplate.executeWithoutResult(status -> {
+			write(writer, items);
+			writer.update(executionContext);
+		});
+	}
+
+	private static void write(ColumnarBillingDataItemWriter writer, BillingData... items) {
+		try {
+			writer.write(new Chunk<>(items));
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static List<BillingData> items(int from, int to) {
+		List<BillingData> items = new ArrayList<>();
+		for (int i = from; i < to; i++) {
+			items.add(new BillingData(2023, 3, 100 + i / 3, "404-555-" + (1000 + i), i * 0.37f, i % 500, (i * 7) % 1000));
+		}
+		return items;
+	}
+
+	private static List<BillingData> readAll(ColumnarBillingDataItemReader reader, ExecutionContext executionContext)
+			throws Exception {
+		List<BillingData> read = new ArrayList<>();
+		reader.open(executionContext);
+		BillingData item;
+		while ((item = reader.read()) != null) {
+			read.add(item);
+		}
+		reader.close();
+		return read;
+	}
+
+	private static StepExecution completedStep() {
+		StepExecution stepExecution = new JobExecution(new JobInstance(1L, "BillingJob"), 1L, new JobParameters())
+			.createStepExecution("fileIngestion");
+		stepExecution.setStatus(BatchStatus.COMPLETED);
+		return stepExecution;
+	}
+
+}
@@ -0,0 +1,146 @@
+package com.gustavo.billingjob.config;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
+import org.springframework.batch.item.file.transform.PassThroughLineAggregator;
+import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Verifica a gravação e a leitura de arquivos .gz e .zst, incluindo o restart a partir da posição salva no
+// ExecutionContext e o descarte dos chunks desfeitos.
+class CompressedFileItemWriterTests {
+
+	private final TransactionTemplate transactionTemplate = new TransactionTemplate(new ResourcelessTransactionManager());
+
+	@TempDir
+	Path tempDir;
+
+	@ParameterizedTest
+	@ValueSource(strings = { "report.csv.gz", "report.csv.zst" })
+	void testRestartTruncatesUncommittedMembers(String fileName) throws Exception {
+		// given
+		String outputFile = this.tempDir.resolve(fileName).toString();
+		ExecutionContext executionContext = new ExecutionContext();
+		CompressedFileItemWriter<String> writer = writer(outputFile);
+		writer.open(executionContext);
+		writeChunk(writer, executionContext, "a1", "a2");
+		writeChunk(writer, executionContext, "b1");
+		// o chunk c é gravado, mas a falha ocorre antes de a posição ser salva no ExecutionContext
+		writeChunk(writer, new ExecutionContext(), "c1", "c2");
+		writer.close();
+
+		// when
+		CompressedFileItemWriter<String> restarted = writer(outputFile);
+		restarted.open(executionContext);
+		writeChunk(restarted, executionContext, "c1", "c2", "c3");
+		restarted.close();
+
+		// then
+		Assertions.assertEquals("a1\na2\nb1\nc1\nc2\nc3\n", decompress(outputFile));
+	}
+
+	@Test
+	void testRollbackDiscardsChunk() throws Exception {
+		// given
+		String outputFile = this.tempDir.resolve("report.csv.gz").toString();
+		ExecutionContext executionContext = new ExecutionContext();
+		CompressedFileItemWriter<String> writer = writer(outputFile);
+		writer.open(executionContext);
+		writeChunk(writer, executionContext, "a1");
+
+		// when
+		this.transactionTemplate.executeWithoutResult(status -> {
+			try {
+				writer.write(new Chunk<>("b1"));
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			status.setRollbackOnly();
+		});
+		writeChunk(writer, executionContext, "c1");
+		writer.close();
+
+		// then
+		Assertions.assertEquals("a1\nc1\n", decompress(outputFile));
+	}
+
+	@Test
+	void testReaderRestartsOnCompressedFile() throws Exception {
+		// given
+		String outputFile = this.tempDir.resolve("billing.csv.gz").toString();
+		List<String> lines = Files.readAllLines(Path.of("input/billing-2023-01.csv"));
+		CompressedFileItemWriter<String> writer = writer(outputFile);
+		writer.open(new ExecutionContext());
+		writer.write(new Chunk<>(lines));
+		writer.close();
+		FlatFileItemReader<String> reader = reader(outputFile);
+		ExecutionContext executionContext = new ExecutionContext();
+		reader.open(executionContext);
+		List<String> read = new ArrayList<>();
+		for (int i = 0; i < 250; i++) {
+			read.add(reader.read());
+		}
+		reader.update(executionContext);
+		reader.close();
+
+		// when
+		FlatFileItemReader<String> restarted = reader(outputFile);
+		restarted.open(executionContext);
+		String line;
+		while ((line = restarted.read()) != null) {
+			read.add(line);
+		}
+		restarted.close();
+
+		// then
+		Assertions.assertEquals(lines, read);
+	}
+
+	private CompressedFileItemWriter<String> writer(String outputFile) {
+		CompressedFileItemWriter<String> writer = new CompressedFileItemWriter<>(outputFile, new PassThroughLineAggregator<>());
+		writer.setName("writer");
+		return writer;
+	}
+
+	private FlatFileItemReader<String> reader(String inputFile) {
+		return new FlatFileItemReaderBuilder<String>()
+				.name("reader")
+				.resource(CompressedFileResource.of(inputFile))
+				.lineMapper((line, lineNumber) -> line)
+				.build();
+	}
+
+	// Reproduz a ordem do TaskletStep: gravação, update do ExecutionContext e commit.
+	private void writeChunk(CompressedFileItemWriter<String> writer, ExecutionContext executionContext, String... items) {
+		this.transactionTemplate.executeWithoutResult(status -> {
+			try {
+				writer.write(new Chunk<>(items));
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			writer.update(executionContext);
+		});
+	}
+
+	private String decompress(String file) throws Exception {
+		try (InputStream in = FileCompression.of(file).decompress(Files.newInputStream(Path.of(file)))) {
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+}
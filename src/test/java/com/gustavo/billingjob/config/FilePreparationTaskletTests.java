@@ -0,0 +1,226 @@
+package com.gustavo.billingjob.config;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.jdbc.JdbcTestUtils;
+
+// Verifica, com um banco H2 em memória, o registro dos arquivos carregados (BillingFileRegistry e
+// FileRegistrationTasklet) e o uso desse registro pelo FilePreparationTasklet: a ingestão é dispensada quando o
+// arquivo não mudou, e no modo delta apenas as linhas novas ou alteradas são gravadas no arquivo da ingestão.
+class FilePreparationTaskletTests {
+
+	private EmbeddedDatabase dataSource;
+
+	private BillingFileRegistry billingFileRegistry;
+
+	@TempDir
+	Path tempDir;
+
+	// O FilePreparationTasklet copia o arquivo para staging/ com o mesmo nome, por isso cada teste usa um nome único.
+	private String fileName;
+
+	@BeforeEach
+	public void setUp() {
+		this.dataSource = new EmbeddedDatabaseBuilder()
+				.setType(EmbeddedDatabaseType.H2)
+				.generateUniqueName(true)
+				.addScript("file:sql/schema-billing.sql")
+				.build();
+		this.billingFileRegistry = new BillingFileRegistry(this.dataSource);
+		this.fileName = "billing-test-" + System.nanoTime() + ".csv";
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		this.dataSource.shutdown();
+		Files.deleteIfExists(Paths.get("staging", this.fileName));
+		Files.deleteIfExists(Paths.get("staging", this.fileName + ".delta"));
+	}
+
+	@Test
+	void testFingerprintHasSizeAndSha256OfContent() throws Exception {
+		// given
+		Path file = this.tempDir.resolve(this.fileName);
+		Files.writeString(file, "abc");
+
+		// when
+		FileFingerprint fingerprint = FileFingerprint.of(file);
+
+		// then
+		Assertions.assertEquals(
+				new FileFingerprint(3, "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad"), fingerprint);
+	}
+
+	@Test
+	void testRegistryKeepsLastFingerprintOfEachFile() {
+		// given
+		FileFingerprint first = new FileFingerprint(10, "a".repeat(64));
+		FileFingerprint second = new FileFingerprint(20, "b".repeat(64));
+
+		// when
+		this.billingFileRegistry.save(this.fileName, 2023, 1, first);
+		this.billingFileRegistry.save(this.fileName, 2023, 1, second);
+
+		// then
+		Assertions.assertEquals(second, this.billingFileRegistry.find(this.fileName, 2023, 1));
+		Assertions.assertNull(this.billingFileRegistry.find("billing-2023-12.csv", 2023, 1));
+		Assertions.assertEquals(1, JdbcTestUtils.countRowsInTable(new JdbcTemplate(this.dataSource), "BILLING_FILE"));
+	}
+
+	@Test
+	void testUnchangedFileIsNotIngestedAgain() throws Exception {
+		// given
+		Path input = this.tempDir.resolve(this.fileName);
+		Files.write(input, List.of("2023,1,100,404-555-1000,1.5,10,2", "2023,1,101,404-555-1001,2.5,20,4"));
+		FileFingerprint original = FileFingerprint.of(input);
+		JobParameters jobParameters = jobParameters(input, false);
+
+		// when
+		JobExecution firstRun = jobExecution(jobParameters);
+		ExitStatus firstStatus = prepare(firstRun);
+		register(firstRun);
+		ExitStatus secondStatus = prepare(jobExecution(jobParameters));
+		Files.write(input, List.of("2023,1,100,404-555-1000,1.5,10,2", "2023,1,101,404-555-1001,9.5,20,4"));
+		ExitStatus changedStatus = prepare(jobExecution(jobParameters));
+
+		// then
+		Assertions.assertNotEquals(FilePreparationTasklet.UNCHANGED, firstStatus.getExitCode());
+		Assertions.assertEquals(original, this.billingFileRegistry.find(this.fileName, 2023, 1));
+		Assertions.assertEquals(FilePreparationTasklet.UNCHANGED, secondStatus.getExitCode());
+		Assertions.assertNotEquals(FilePreparationTasklet.UNCHANGED, changedStatus.getExitCode());
+	}
+
+	@Test
+	void testSameFileNameForAnotherMonthIsRegisteredSeparately() throws Exception {
+		// given: um arquivo com o mesmo nome e o mesmo conteúdo, carregado para janeiro e depois para fevereiro
+		Path input = this.tempDir.resolve(this.fileName);
+		Files.write(input, List.of("2023,1,100,404-555-1000,1.5,10,2"));
+		FileFingerprint fingerprint = FileFingerprint.of(input);
+		JobExecution januaryRun = jobExecution(jobParameters(input, false));
+		prepare(januaryRun);
+		register(januaryRun);
+
+		// when
+		JobExecution februaryRun = jobExecution(jobParameters(input, false, 2));
+		ExitStatus februaryStatus = prepare(februaryRun);
+		register(februaryRun);
+
+		// then: o registro de janeiro não dispensa a ingestão de fevereiro
+		Assertions.assertNotEquals(FilePreparationTasklet.UNCHANGED, februaryStatus.getExitCode());
+		Assertions.assertEquals(fingerprint, this.billingFileRegistry.find(this.fileName, 2023, 1));
+		Assertions.assertEquals(fingerprint, this.billingFileRegistry.find(this.fileName, 2023, 2));
+		Assertions.assertEquals(2, JdbcTestUtils.countRowsInTable(new JdbcTemplate(this.dataSource), "BILLING_FILE"));
+	}
+
+	@Test
+	void testFailedIngestionKeepsFileUnregistered() throws Exception {
+		// given
+		Path input = this.tempDir.resolve(this.fileName);
+		Files.write(input, List.of("2023,1,100,404-555-1000,1.5,10,2"));
+		JobParameters jobParameters = jobParameters(input, false);
+
+		// when: a ingestão da primeira execução falhou, por isso o FileRegistrationTasklet não foi executado
+		prepare(jobExecution(jobParameters));
+		ExitStatus restartStatus = prepare(jobExecution(jobParameters));
+
+		// then
+		Assertions.assertNull(this.billingFileRegistry.find(this.fileName, 2023, 1));
+		Assertions.assertNotEquals(FilePreparationTasklet.UNCHANGED, restartStatus.getExitCode());
+	}
+
+	@Test
+	void testCorrectedFileIsIngestedAsDelta() throws Exception {
+		// given
+		Path input = this.tempDir.resolve(this.fileName);
+		Files.write(input, List.of("2023,1,100,404-555-1000,1.5,10,2", "2023,1,101,404-555-1001,2.5,20,4",
+				"2023,1,102,404-555-1002,3.5,30,6"));
+		JobParameters jobParameters = jobParameters(input, true);
+		JobExecution firstRun = jobExecution(jobParameters);
+		prepare(firstRun);
+		register(firstRun);
+
+		// when
+		Files.write(input, List.of("2023,1,100,404-555-1000,1.5,10,2", "2023,1,101,404-555-1001,9.5,20,4",
+				"2023,1,102,404-555-1002,3.5,30,6", "2023,1,103,404-555-1003,4.5,40,8"));
+		JobExecution correctionRun = jobExecution(jobParameters);
+		prepare(correctionRun);
+
+		// then
+		String ingestionFile = correctionRun.getExecutionContext().getString(FilePreparationTasklet.INGESTION_FILE_KEY);
+		Assertions.assertEquals(Paths.get("staging", this.fileName + ".delta").toString(), ingestionFile);
+		Assertions.assertEquals(List.of("#", "2023,1,101,404-555-1001,9.5,20,4", "#", "2023,1,103,404-555-1003,4.5,40,8"),
+				Files.readAllLines(Paths.get(ingestionFile)));
+		Assertions.assertEquals(Files.readAllLines(input), Files.readAllLines(Paths.get("staging", this.fileName)));
+	}
+
+	@Test
+	void testDeltaMarksUnchangedLinesAsComments() throws Exception {
+		// given
+		Path previous = this.tempDir.resolve("previous.csv");
+		Path current = this.tempDir.resolve("current.csv");
+		Path deltaFile = this.tempDir.resolve("current.csv.delta");
+		Files.write(previous, List.of("a", "b", "c", ""));
+		Files.write(current, List.of("c", "b2", "", "a", "d", "a"));
+
+		// when
+		FilePreparationTasklet.writeDelta(previous, current, deltaFile);
+
+		// then
+		Assertions.assertEquals(List.of("#", "b2", "#", "#", "d", "#"), Files.readAllLines(deltaFile));
+	}
+
+	private ExitStatus prepare(JobExecution jobExecution) throws Exception {
+		return execute(new FilePreparationTasklet(this.billingFileRegistry), jobExecution.createStepExecution("filePreparation"));
+	}
+
+	private void register(JobExecution jobExecution) throws Exception {
+		execute(new FileRegistrationTasklet(this.billingFileRegistry), jobExecution.createStepExecution("fileRegistration"));
+	}
+
+	private static ExitStatus execute(Tasklet tasklet, StepExecution stepExecution) throws Exception {
+		StepContribution contribution = stepExecution.createStepContribution();
+		tasklet.execute(contribution, new ChunkContext(new StepContext(stepExecution)));
+		return contribution.getExitStatus();
+	}
+
+	private static JobParameters jobParameters(Path input, boolean delta) {
+		return jobParameters(input, delta, 1);
+	}
+
+	private static JobParameters jobParameters(Path input, boolean delta, int month) {
+		return new JobParametersBuilder()
+				.addString("input.file", input.toString())
+				.addString("data.year", "2023")
+				.addString("data.month", String.valueOf(month))
+				.addString("ingestion.delta", String.valueOf(delta))
+				.toJobParameters();
+	}
+
+	private static JobExecution jobExecution(JobParameters jobParameters) {
+		return new JobExecution(new JobInstance(1L, "BillingJob"), jobParameters);
+	}
+
+}
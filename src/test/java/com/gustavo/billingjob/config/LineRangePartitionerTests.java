@@ -0,0 +1,180 @@
+package com.gustavo.billingjob.config;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.batch.item.file.LineMapper;
+import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
+
+// Verifica que os intervalos do LineRangePartitioner começam sempre no início de uma linha e cobrem o arquivo sem
+// perder ou repetir linhas, e que o LineRangeItemReader informa os erros de parsing com o número global da linha.
+class LineRangePartitionerTests {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testBoundaryExactlyOnLineFeed() throws Exception {
+		// given: 4 linhas de 4 bytes, o limite das 2 partições (byte 8) cai logo após o segundo \n
+		Path file = write("aaa\nbbb\nccc\nddd\n");
+
+		// when
+		Map<String, ExecutionContext> partitions = new LineRangePartitioner(file.toString(), 2).partition(0);
+
+		// then
+		Assertions.assertEquals(2, partitions.size());
+		assertRange(partitions.get("partition0"), 0, 8, 0);
+		assertRange(partitions.get("partition1"), 8, 16, 2);
+		assertCoversAllLines(file, partitions);
+	}
+
+	@Test
+	void testBoundaryAfterCarriageReturnLineFeed() throws Exception {
+		// given: o meio do arquivo (byte 8) cai entre o \r e o \n da segunda linha
+		Path file = write("a\r\nbbbb\r\ncc\r\ndd\r\n");
+
+		// when
+		Map<String, ExecutionContext> partitions = new LineRangePartitioner(file.toString(), 2).partition(0);
+
+		// then
+		Assertions.assertEquals(2, partitions.size());
+		assertRange(partitions.get("partition0"), 0, 9, 0);
+		assertRange(partitions.get("partition1"), 9, 17, 2);
+		assertCoversAllLines(file, partitions);
+	}
+
+	@Test
+	void testLastLineWithoutLineFeed() throws Exception {
+		// given
+		Path file = write("line1\nline2\nline3\nline4\nlast");
+
+		// when
+		Map<String, ExecutionContext> partitions = new LineRangePartitioner(file.toString(), 3).partition(0);
+
+		// then
+		Assertions.assertEquals(3, partitions.size());
+		Assertions.assertEquals(Files.size(file), partitions.get("partition2").getLong(LineRangePartitioner.END_OFFSET));
+		assertCoversAllLines(file, partitions);
+	}
+
+	@Test
+	void testMorePartitionsThanLines() throws Exception {
+		// given
+		Path file = write("first line\nsecond line\n");
+
+		// when
+		Map<String, ExecutionContext> partitions = new LineRangePartitioner(file.toString(), 5).partition(0);
+
+		// then: as partições vazias são descartadas
+		Assertions.assertEquals(2, partitions.size());
+		assertCoversAllLines(file, partitions);
+	}
+
+	@Test
+	void testEmptyFileHasOneEmptyPartition() throws Exception {
+		// given
+		Path file = write("");
+
+		// when
+		Map<String, ExecutionContext> partitions = new LineRangePartitioner(file.toString(), 4).partition(0);
+
+		// then
+		Assertions.assertEquals(1, partitions.size());
+		assertRange(partitions.get("partition0"), 0, 0, 0);
+	}
+
+	@Test
+	void testParseErrorsHaveGlobalLineNumbers() throws Exception {
+		// given: linhas inválidas (x) em partições diferentes
+		Path file = write("ok\nx\nok\nok\nok\nx\nok\nok\nx\nok\n");
+		Map<String, ExecutionContext> partitions = new LineRangePartitioner(file.toString(), 3).partition(0);
+
+		// when
+		List<Integer> errorLines = new ArrayList<>();
+		for (ExecutionContext partition : partitions.values()) {
+			LineRangeItemReader<String> reader = new LineRangeItemReader<>(reader(file, partition, (line, lineNumber) -> {
+				if (line.equals("x")) {
+					throw new IllegalArgumentException("invalid line");
+				}
+				return line;
+			}), partition.getLong(LineRangePartitioner.START_LINE));
+			reader.open(new ExecutionContext());
+			while (true) {
+				try {
+					if (reader.read() == null) {
+						break;
+					}
+				} catch (FlatFileParseException e) {
+					errorLines.add(e.getLineNumber());
+				}
+			}
+			reader.close();
+		}
+
+		// then
+		Assertions.assertEquals(3, partitions.size());
+		Assertions.assertEquals(List.of(2, 6, 9), errorLines);
+	}
+
+	private Path write(String content) throws Exception {
+		return Files.writeString(this.tempDir.resolve("billing.csv"), content, StandardCharsets.UTF_8);
+	}
+
+	private static void assertRange(ExecutionContext partition, long start, long end, long startLine) {
+		Assertions.assertEquals(start, partition.getLong(LineRangePartitioner.START_OFFSET));
+		Assertions.assertEquals(end, partition.getLong(LineRangePartitioner.END_OFFSET));
+		Assertions.assertEquals(startLine, partition.getLong(LineRangePartitioner.START_LINE));
+	}
+
+	// Os intervalos são contíguos, começam no início de uma linha, start.line é a quantidade de linhas anteriores e a
+	// leitura das partições em sequência produz exatamente as linhas do arquivo.
+	private static void assertCoversAllLines(Path file, Map<String, ExecutionContext> partitions) throws Exception {
+		byte[] content = Files.readAllBytes(file);
+		List<String> lines = new ArrayList<>();
+		long expectedStart = 0;
+		for (ExecutionContext partition : partitions.values()) {
+			long start = partition.getLong(LineRangePartitioner.START_OFFSET);
+			Assertions.assertEquals(expectedStart, start);
+			Assertions.assertTrue(start == 0 || content[(int) start - 1] == '\n');
+			long linesBefore = 0;
+			for (int i = 0; i < start; i++) {
+				if (content[i] == '\n') {
+					linesBefore++;
+				}
+			}
+			Assertions.assertEquals(linesBefore, partition.getLong(LineRangePartitioner.START_LINE));
+			FlatFileItemReader<String> reader = reader(file, partition, (line, lineNumber) -> line);
+			reader.open(new ExecutionContext());
+			for (String line = reader.read(); line != null; line = reader.read()) {
+				lines.add(line);
+			}
+			reader.close();
+			expectedStart = partition.getLong(LineRangePartitioner.END_OFFSET);
+		}
+		Assertions.assertEquals(content.length, expectedStart);
+		Assertions.assertEquals(Files.readAllLines(file), lines);
+	}
+
+	private static FlatFileItemReader<String> reader(Path file, ExecutionContext partition,
+			LineMapper<String> lineMapper) {
+		return new FlatFileItemReaderBuilder<String>()
+				.name("lineRangeReader")
+				.resource(new ByteRangeResource(file.toString(), partition.getLong(LineRangePartitioner.START_OFFSET),
+						partition.getLong(LineRangePartitioner.END_OFFSET)))
+				.lineMapper(lineMapper)
+				.saveState(false)
+				.build();
+	}
+
+}
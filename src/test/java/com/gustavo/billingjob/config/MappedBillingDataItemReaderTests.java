@@ -0,0 +1,121 @@
+package com.gustavo.billingjob.config;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
+import org.springframework.core.io.FileSystemResource;
+
+// Verifica que o MappedBillingDataItemReader produz os mesmos itens e as mesmas falhas de parsing que o
+// FlatFileItemReader usado pelo billingDataFileReader.
+class MappedBillingDataItemReaderTests {
+
+	@TempDir
+	Path tempDir;
+
+	@ParameterizedTest
+	@ValueSource(strings = { "input/billing-2023-01.csv", "input/billing-2023-03.csv", "input/billing-2023-04.csv" })
+	void testSameItemsAsFlatFileReader(String inputFile) throws Exception {
+		// given
+		ItemStreamReader<BillingData> flatReader = flatFileReader(inputFile);
+		ItemStreamReader<BillingData> mappedReader = new MappedBillingDataItemReader(inputFile);
+
+		// when
+		List<String> expected = readAll(flatReader);
+		List<String> actual = readAll(mappedReader);
+
+		// then
+		Assertions.assertEquals(expected, actual);
+	}
+
+	@Test
+	void testUnusualLinesFallBackToFlatFileParsing() throws Exception {
+		// given
+		Path inputFile = this.tempDir.resolve("billing.csv");
+		Files.writeString(inputFile, String.join("\r\n",
+				"2023,01,100,404-555-1000,24.40,115,323",
+				"# comentário",
+				"2023,01,101,\"404-555,1001\",69.87,289,77",
+				"2023,01,102,404-555-1002,1.5e1,110,827",
+				"2023,01,103,404-555-1003,-0.0,1,+2",
+				"2023,01,104,404-555-1004,16777217,1,2",
+				"2023,01,105,404-555-1005,.5,1",
+				"",
+				"2023,01,106,404-555-1006,92-94,375,544"));
+
+		// when
+		List<String> expected = readAll(flatFileReader(inputFile.toString()));
+		List<String> actual = readAll(new MappedBillingDataItemReader(inputFile.toString()));
+
+		// then
+		Assertions.assertEquals(expected, actual);
+		Assertions.assertTrue(actual.contains("error|8|"));
+	}
+
+	@Test
+	void testRestartFromSavedOffset() throws Exception {
+		// given
+		String inputFile = "input/billing-2023-01.csv";
+		MappedBillingDataItemReader reader = new MappedBillingDataItemReader(inputFile);
+		ExecutionContext executionContext = new ExecutionContext();
+		reader.open(executionContext);
+		for (int i = 0; i < 250; i++) {
+			reader.read();
+		}
+		reader.update(executionContext);
+		reader.close();
+
+		// when
+		MappedBillingDataItemReader restarted = new MappedBillingDataItemReader(inputFile);
+		restarted.open(executionContext);
+		BillingData item = restarted.read();
+		restarted.close();
+
+		// then
+		Assertions.assertEquals(readAll(flatFileReader(inputFile)).get(250), item.toString());
+	}
+
+	private ItemStreamReader<BillingData> flatFileReader(String inputFile) {
+		return new FlatFileItemReaderBuilder<BillingData>()
+				.name("billingDataFileReader")
+				.resource(new FileSystemResource(inputFile))
+				.delimited()
+				.delimiter(",")
+				.names("dataYear", "dataMonth", "accountId", "phoneNumber", "dataUsage", "callDuration", "smsCount")
+				.targetType(BillingData.class)
+				.build();
+	}
+
+	// Lê todos os itens, registrando as linhas que falharam como "error|<número da linha>|<linha>".
+	private List<String> readAll(ItemStreamReader<BillingData> reader) throws Exception {
+		List<String> items = new ArrayList<>();
+		reader.open(new ExecutionContext());
+		try {
+			while (true) {
+				try {
+					BillingData item = reader.read();
+					if (item == null) {
+						return items;
+					}
+					items.add(item.toString());
+				} catch (FlatFileParseException e) {
+					items.add("error|" + e.getLineNumber() + "|" + e.getInput());
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.gustavo.billingjob.config;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Verifica o JSON gravado pelo MetricsFileWriter: os contadores e a taxa por segundo de cada step, e os valores
+// acumulados das métricas do registry, sem os gauges de percentis.
+class MetricsFileWriterTests {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testMetricsFileHasStepsAndMeters() throws Exception {
+		// given
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		Counter.builder("billing.pricing.retries").register(meterRegistry).increment(3);
+		Timer timer = Timer.builder("billing.chunk.commit").tag("step", "fileIngestion")
+			.publishPercentiles(0.5)
+			.register(meterRegistry);
+		timer.record(20, TimeUnit.MILLISECONDS);
+		timer.record(40, TimeUnit.MILLISECONDS);
+		Path metricsFile = this.tempDir.resolve("metrics.json");
+		JobExecution jobExecution = new JobExecution(new JobInstance(1L, "BillingJob"), 1L,
+				new JobParametersBuilder().addString("metrics.file", metricsFile.toString()).toJobParameters());
+		jobExecution.setStatus(BatchStatus.COMPLETED);
+		StepExecution stepExecution = jobExecution.createStepExecution("fileIngestion");
+		stepExecution.setStatus(BatchStatus.COMPLETED);
+		LocalDateTime start = LocalDateTime.of(2023, 1, 1, 0, 0);
+		stepExecution.setStartTime(start);
+		stepExecution.setEndTime(start.plusSeconds(2));
+		stepExecution.setReadCount(1000);
+		stepExecution.setWriteCount(990);
+		stepExecution.setReadSkipCount(10);
+
+		// when
+		new MetricsFileWriter(meterRegistry).afterJob(jobExecution);
+
+		// then
+		String json = Files.readString(metricsFile);
+		Assertions.assertTrue(json.startsWith("{\n  \"job\": \"BillingJob\",\n  \"status\": \"COMPLETED\""), json);
+		Assertions.assertTrue(json.contains("{\"name\": \"fileIngestion\", \"status\": \"COMPLETED\", \"durationMs\": 2000, "
+				+ "\"read\": 1000, \"written\": 990, \"filtered\": 0, \"skipped\": 10, \"commits\": 0, \"rollbacks\": 0, "
+				+ "\"readPerSecond\": 500.0, \"writtenPerSecond\": 495.0, \"filteredPerSecond\": 0.0, \"skippedPerSecond\": 5.0}"),
+				json);
+		Assertions.assertTrue(json.contains("{\"name\": \"billing.pricing.retries\", \"tags\": {}, \"count\": 3.0}"), json);
+		Assertions.assertTrue(json.contains("{\"name\": \"billing.chunk.commit\", \"tags\": {\"step\": \"fileIngestion\"}, "
+				+ "\"count\": 2, \"totalMs\": 60.0, \"meanMs\": 30.0, \"maxMs\": 40.0, \"percentilesMs\": {\"0.5\": "), json);
+		Assertions.assertFalse(json.contains(".percentile\""), json);
+	}
+
+	@Test
+	void testNothingIsWrittenWithoutMetricsFile() {
+		// given
+		JobExecution jobExecution = new JobExecution(new JobInstance(1L, "BillingJob"), 1L,
+				new JobParametersBuilder().toJobParameters());
+
+		// when
+		new MetricsFileWriter(new SimpleMeterRegistry()).afterJob(jobExecution);
+
+		// then
+		Assertions.assertEquals(0, this.tempDir.toFile().list().length);
+	}
+
+}
@@ -0,0 +1,165 @@
+package com.gustavo.billingjob.config;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.JobParametersInvalidException;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.ExecutionContext;
+
+// Verifica a criação das partições por mês do MultiMonthBillingJob, a validação dos seus parâmetros e os parâmetros
+// repassados ao BillingJob de cada mês.
+class MonthPartitionerTests {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testOnePartitionPerMonth() throws Exception {
+		// given
+		Files.createFile(this.tempDir.resolve("billing-2023-02.csv"));
+		Files.createFile(this.tempDir.resolve("billing-2023-01.csv.gz"));
+		Files.createFile(this.tempDir.resolve("billing-2022-12.csv"));
+		String inputFiles = this.tempDir.resolve("billing-2023-*") + ", " + this.tempDir.resolve("billing-2022-12.csv");
+		MonthPartitioner partitioner = new MonthPartitioner(inputFiles, "out");
+
+		// when
+		Map<String, ExecutionContext> partitions = partitioner.partition(1);
+
+		// then
+		Assertions.assertEquals(List.of("2022-12", "2023-01", "2023-02"), List.copyOf(partitions.keySet()));
+		ExecutionContext january = partitions.get("2023-01");
+		Assertions.assertEquals(this.tempDir.resolve("billing-2023-01.csv.gz").toString(), january.getString("input.file"));
+		Assertions.assertEquals("2023", january.getString("data.year"));
+		Assertions.assertEquals("1", january.getString("data.month"));
+		Assertions.assertEquals(Path.of("out", "billing-report-2023-01.csv.gz").toString(), january.getString("output.file"));
+		Assertions.assertEquals(Path.of("out", "billing-data-skip-2023-01.psv").toString(), january.getString("skip.file"));
+	}
+
+	@Test
+	void testMonthJobParameters() {
+		// given
+		JobParameters parameters = new JobParametersBuilder()
+				.addString("input.files", "input/billing-2023-*.csv")
+				.addString("output.dir", "staging")
+				.addString("months.threads", "2")
+				.addString("report.mode", "sql")
+				.toJobParameters();
+		StepExecution stepExecution = new JobExecution(new JobInstance(1L, "MultiMonthBillingJob"), 1L, parameters)
+			.createStepExecution("monthlyBillingWorker:2023-03");
+		stepExecution.setExecutionContext(new MonthPartitioner("input/billing-2023-03.csv", "staging").partition(1).get("2023-03"));
+
+		// when
+		JobParameters monthParameters = new MonthJobParametersExtractor().getJobParameters(null, stepExecution);
+
+		// then
+		Assertions.assertEquals("input/billing-2023-03.csv", monthParameters.getString("input.file"));
+		Assertions.assertEquals("3", monthParameters.getString("data.month"));
+		Assertions.assertEquals("sql", monthParameters.getString("report.mode"));
+		Assertions.assertNull(monthParameters.getString("input.files"));
+		Assertions.assertNull(monthParameters.getString("months.threads"));
+		Assertions.assertDoesNotThrow(() -> new ParametersValidator().validate(monthParameters));
+	}
+
+	@Test
+	void testMonthJobParametersExcludeMultiMonthParameters() {
+		// given
+		JobParameters parameters = new JobParametersBuilder()
+				.addString("input.files", "input/billing-2023-*.csv")
+				.addString("output.dir", "staging")
+				.addString("months.threads", "2")
+				.addString("metrics.file", "staging/metrics.json")
+				// parâmetros do mês informados no job de vários meses são substituídos pelos da partição
+				.addString("input.file", "input/billing-2023-01.csv")
+				.addString("data.month", "1")
+				.addString("ingestion.mode", "partitioned")
+				.addString("report.mode", "async", false)
+				.toJobParameters();
+		StepExecution stepExecution = new JobExecution(new JobInstance(1L, "MultiMonthBillingJob"), 1L, parameters)
+			.createStepExecution("monthlyBillingWorker:2023-03");
+		stepExecution.setExecutionContext(new MonthPartitioner("input/billing-2023-03.csv", "out").partition(1).get("2023-03"));
+
+		// when
+		JobParameters monthParameters = new MonthJobParametersExtractor().getJobParameters(null, stepExecution);
+
+		// then
+		Assertions.assertEquals(Set.of("input.file", "data.year", "data.month", "output.file", "skip.file", "ingestion.mode",
+				"report.mode"), monthParameters.getParameters().keySet());
+		Assertions.assertEquals("input/billing-2023-03.csv", monthParameters.getString("input.file"));
+		Assertions.assertEquals("2023", monthParameters.getString("data.year"));
+		Assertions.assertEquals("3", monthParameters.getString("data.month"));
+		Assertions.assertEquals(Path.of("out", "billing-report-2023-03.csv").toString(), monthParameters.getString("output.file"));
+		Assertions.assertEquals("partitioned", monthParameters.getString("ingestion.mode"));
+		Assertions.assertTrue(monthParameters.getParameter("ingestion.mode").isIdentifying());
+		// o parâmetro é repassado como foi informado, inclusive se identifica ou não a JobInstance
+		Assertions.assertEquals("async", monthParameters.getString("report.mode"));
+		Assertions.assertFalse(monthParameters.getParameter("report.mode").isIdentifying());
+	}
+
+	@Test
+	void testValidatorRejectsInvalidParameters() throws Exception {
+		// given
+		Files.createFile(this.tempDir.resolve("billing-2023-01.csv"));
+		Files.createFile(this.tempDir.resolve("billing-january.csv"));
+		String inputFiles = this.tempDir.resolve("billing-2023-*").toString();
+		MultiMonthParametersValidator validator = new MultiMonthParametersValidator();
+
+		// then
+		Assertions.assertDoesNotThrow(() -> validator.validate(parameters(inputFiles, "staging", "2")));
+		Assertions.assertDoesNotThrow(() -> validator.validate(parameters(inputFiles, "staging", null)));
+		Assertions.assertThrows(JobParametersInvalidException.class,
+				() -> validator.validate(parameters(null, "staging", null)));
+		Assertions.assertThrows(JobParametersInvalidException.class,
+				() -> validator.validate(parameters(inputFiles, "", null)));
+		Assertions.assertThrows(JobParametersInvalidException.class,
+				() -> validator.validate(parameters(inputFiles, "staging", "0")));
+		Assertions.assertThrows(JobParametersInvalidException.class,
+				() -> validator.validate(parameters(inputFiles, "staging", "two")));
+		// padrão sem arquivos, arquivo inexistente e nome sem ano e mês
+		Assertions.assertThrows(JobParametersInvalidException.class,
+				() -> validator.validate(parameters(this.tempDir.resolve("billing-2024-*").toString(), "staging", null)));
+		Assertions.assertThrows(JobParametersInvalidException.class,
+				() -> validator.validate(parameters(this.tempDir.resolve("billing-2023-02.csv").toString(), "staging", null)));
+		Assertions.assertThrows(JobParametersInvalidException.class,
+				() -> validator.validate(parameters(this.tempDir.resolve("billing-january.csv").toString(), "staging", null)));
+	}
+
+	@Test
+	void testDuplicateMonthIsRejected() throws Exception {
+		// given
+		Files.createFile(this.tempDir.resolve("billing-2023-01.csv"));
+		Files.createFile(this.tempDir.resolve("billing-2023-01.csv.gz"));
+		JobParameters parameters = new JobParametersBuilder()
+				.addString("input.files", this.tempDir.resolve("billing-2023-*").toString())
+				.addString("output.dir", "staging")
+				.toJobParameters();
+
+		// then
+		Assertions.assertThrows(JobParametersInvalidException.class,
+				() -> new MultiMonthParametersValidator().validate(parameters));
+	}
+
+	private static JobParameters parameters(String inputFiles, String outputDir, String threads) {
+		JobParametersBuilder builder = new JobParametersBuilder();
+		if (inputFiles != null) {
+			builder.addString("input.files", inputFiles);
+		}
+		builder.addString("output.dir", outputDir);
+		if (threads != null) {
+			builder.addString("months.threads", threads);
+		}
+		return builder.toJobParameters();
+	}
+
+}
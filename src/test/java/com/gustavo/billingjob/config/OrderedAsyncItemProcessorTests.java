@@ -0,0 +1,151 @@
+package com.gustavo.billingjob.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.retry.support.RetryTemplate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Verifica que o processamento assíncrono preserva a ordem dos itens, respeita o limite de itens em processamento,
+// repete apenas os itens que falharam com PricingException (contando as falhas em billing.pricing.retries) e conta os itens filtrados como no processamento síncrono.
+class OrderedAsyncItemProcessorTests {
+
+	private final StepExecution stepExecution = new JobExecution(new JobInstance(1L, "BillingJob"), 1L, new JobParameters())
+		.createStepExecution("asyncReportGeneration");
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Test
+	void testOutputKeepsInputOrder() throws Exception {
+		// given
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		ItemProcessor<Integer, String> slowProcessor = item -> {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			Thread.sleep(ThreadLocalRandom.current().nextInt(5));
+			running.decrementAndGet();
+			// itens ímpares são filtrados
+			return item % 2 == 0 ? "item-" + item : null;
+		};
+		OrderedAsyncItemProcessor<Integer, String> processor = new OrderedAsyncItemProcessor<>(slowProcessor,
+				RetryTemplate.builder().maxAttempts(1).build(), 8, 4);
+		List<String> written = new ArrayList<>();
+		OrderedAsyncItemWriter<String> writer = new OrderedAsyncItemWriter<>(chunk -> written.addAll(chunk.getItems()));
+
+		// when
+		processor.beforeStep(this.stepExecution);
+		Chunk<Future<String>> futures = new Chunk<>();
+		for (int i = 0; i < 200; i++) {
+			futures.add(processor.process(i));
+		}
+		writer.write(futures);
+		processor.afterStep(this.stepExecution);
+
+		// then
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < 200; i += 2) {
+			expected.add("item-" + i);
+		}
+		Assertions.assertEquals(expected, written);
+		Assertions.assertTrue(maxRunning.get() <= 4, "in-flight items: " + maxRunning.get());
+	}
+
+	@Test
+	void testPricingExceptionRetriesOnlyFailedItem() throws Exception {
+		// given
+		Map<Integer, AtomicInteger> attempts = new ConcurrentHashMap<>();
+		ItemProcessor<Integer, String> flakyProcessor = item -> {
+			int attempt = attempts.computeIfAbsent(item, key -> new AtomicInteger()).incrementAndGet();
+			if (item % 10 == 0 && attempt == 1) {
+				throw new PricingException("Error while retrieving data pricing");
+			}
+			return "item-" + item;
+		};
+		PricingService pricingService = new PricingService(this.meterRegistry);
+		OrderedAsyncItemProcessor<Integer, String> processor = new OrderedAsyncItemProcessor<>(flakyProcessor,
+				RetryTemplate.builder().maxAttempts(3).retryOn(PricingException.class)
+					.withListener(pricingService.retryListener())
+					.build(), 4, 16);
+		List<String> written = new ArrayList<>();
+		OrderedAsyncItemWriter<String> writer = new OrderedAsyncItemWriter<>(chunk -> written.addAll(chunk.getItems()));
+
+		// when
+		processor.beforeStep(this.stepExecution);
+		Chunk<Future<String>> futures = new Chunk<>();
+		for (int i = 0; i < 50; i++) {
+			futures.add(processor.process(i));
+		}
+		writer.write(futures);
+		processor.afterStep(this.stepExecution);
+
+		// then
+		Assertions.assertEquals(50, written.size());
+		for (int i = 0; i < 50; i++) {
+			Assertions.assertEquals(i % 10 == 0 ? 2 : 1, attempts.get(i).get(), "attempts for item " + i);
+		}
+		Assertions.assertEquals(5, this.meterRegistry.get("billing.pricing.retries").counter().count());
+	}
+
+	@Test
+	void testChunkProcessorCountsFilteredItems() throws Exception {
+		// given
+		ItemProcessor<Integer, String> filteringProcessor = item -> item % 2 == 0 ? "item-" + item : null;
+		OrderedAsyncItemProcessor<Integer, String> processor = new OrderedAsyncItemProcessor<>(filteringProcessor,
+				RetryTemplate.builder().maxAttempts(1).build(), 4, 8);
+		List<String> written = new ArrayList<>();
+		OrderedAsyncChunkProcessor<Integer, String> chunkProcessor = new OrderedAsyncChunkProcessor<>(processor,
+				new OrderedAsyncItemWriter<>(chunk -> written.addAll(chunk.getItems())));
+		StepContribution contribution = this.stepExecution.createStepContribution();
+		Chunk<Integer> inputs = new Chunk<>();
+		for (int i = 0; i < 100; i++) {
+			inputs.add(i);
+		}
+
+		// when
+		processor.beforeStep(this.stepExecution);
+		chunkProcessor.process(contribution, inputs);
+		processor.afterStep(this.stepExecution);
+
+		// then
+		Assertions.assertEquals(50, written.size());
+		Assertions.assertEquals("item-98", written.get(49));
+		Assertions.assertEquals(50, contribution.getFilterCount());
+		Assertions.assertEquals(50, contribution.getWriteCount());
+	}
+
+	@Test
+	void testExhaustedRetriesFailTheChunk() throws Exception {
+		// given
+		ItemProcessor<Integer, String> failingProcessor = item -> {
+			throw new PricingException("Error while retrieving data pricing");
+		};
+		OrderedAsyncItemProcessor<Integer, String> processor = new OrderedAsyncItemProcessor<>(failingProcessor,
+				RetryTemplate.builder().maxAttempts(2).noBackoff().retryOn(PricingException.class).build(), 2, 2);
+		OrderedAsyncItemWriter<String> writer = new OrderedAsyncItemWriter<>(chunk -> { });
+
+		// when
+		processor.beforeStep(this.stepExecution);
+		Chunk<Future<String>> futures = new Chunk<>(processor.process(1));
+
+		// then
+		Assertions.assertThrows(PricingException.class, () -> writer.write(futures));
+		processor.afterStep(this.stepExecution);
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.gustavo.billingjob.config;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Verifica que o StepMetricsListener publica os contadores de itens com os valores do StepExecution e mede cada
+// chunk pela transação (commit ou rollback), com a tag step sem o sufixo da partição.
+class StepMetricsListenerTests {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private final StepMetricsListener listener = new StepMetricsListener(this.meterRegistry);
+
+	private final StepExecution stepExecution = new JobExecution(new JobInstance(1L, "BillingJob"), 1L, new JobParameters())
+		.createStepExecution("fileIngestionWorker:partition0");
+
+	@Test
+	void testItemCountersFollowStepExecution() {
+		// given
+		this.listener.beforeStep(this.stepExecution);
+
+		// when
+		this.stepExecution.setReadCount(10);
+		this.stepExecution.setWriteCount(7);
+		this.stepExecution.setFilterCount(2);
+		this.stepExecution.setReadSkipCount(1);
+		chunk(TransactionSynchronization.STATUS_COMMITTED);
+		// um chunk desfeito não altera os contadores do StepExecution
+		chunk(TransactionSynchronization.STATUS_ROLLED_BACK);
+		this.stepExecution.setReadCount(12);
+		this.stepExecution.setWriteCount(9);
+		this.listener.afterStep(this.stepExecution);
+
+		// then
+		Assertions.assertEquals(12, itemCount("read"));
+		Assertions.assertEquals(9, itemCount("written"));
+		Assertions.assertEquals(2, itemCount("filtered"));
+		Assertions.assertEquals(1, itemCount("skipped"));
+	}
+
+	@Test
+	void testChunksAreTimedByTransactionOutcome() {
+		// given
+		this.listener.beforeStep(this.stepExecution);
+
+		// when
+		chunk(TransactionSynchronization.STATUS_COMMITTED);
+		chunk(TransactionSynchronization.STATUS_COMMITTED);
+		chunk(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+		// then
+		Assertions.assertEquals(2, this.meterRegistry.get("billing.chunk.duration")
+			.tag("step", "fileIngestionWorker").tag("status", "committed").timer().count());
+		Assertions.assertEquals(1, this.meterRegistry.get("billing.chunk.duration")
+			.tag("step", "fileIngestionWorker").tag("status", "rolledback").timer().count());
+		Assertions.assertEquals(2, this.meterRegistry.get("billing.chunk.commit").tag("step", "fileIngestionWorker")
+			.timer().count());
+		for (String phase : new String[] { "read", "process", "write" }) {
+			Assertions.assertEquals(3, this.meterRegistry.get("billing.chunk.phase").tag("step", "fileIngestionWorker")
+				.tag("phase", phase).timer().count(), phase);
+		}
+	}
+
+	// Simula um chunk com uma leitura, um processamento e uma gravação, concluído pelas sincronizações da transação.
+	private void chunk(int status) {
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			this.listener.beforeChunk(null);
+			this.listener.beforeRead();
+			this.listener.afterRead("item");
+			this.listener.beforeProcess("item");
+			this.listener.afterProcess("item", "result");
+			this.listener.beforeWrite(null);
+			this.listener.afterWrite(null);
+			for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+				if (status == TransactionSynchronization.STATUS_COMMITTED) {
+					synchronization.beforeCommit(false);
+				}
+				synchronization.afterCompletion(status);
+			}
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	private double itemCount(String type) {
+		return this.meterRegistry.get("billing.step.items").tag("step", "fileIngestionWorker").tag("type", type)
+			.counter().count();
+	}
+
+}